@@ -0,0 +1,35 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+
+/**
+ * A CountCallback is used to do something after counting objects in a background thread.
+ */
+public abstract class CountCallback {
+
+	/**
+	 * {@.en Override this method according desired functions after the counting.
+	 * 		This method is done in the main (UI) thread.}
+	 * {@.ja 件数取得後にメインスレッドで実行したいコードで上書きしてください。}
+	 * 
+	 * @param count the total number of the found objects
+	 * 		{@.ja 見つかったオブジェクトの総数}
+	 * @param e an exception occurred in the counting, or null if it succeeded.
+	 * 		{@.ja 件数取得中に例外が発生した場合のみセットされ、それ以外はnull}
+	 */
+	public abstract void done(int count, ECHOException e);
+}
@@ -17,6 +17,8 @@
 package com.echopf;
 
 import java.lang.String;
+import java.util.ArrayList;
+import java.util.List;
 
 import android.content.Context;
 
@@ -25,16 +27,28 @@ import android.content.Context;
  */
 public class ECHO {
 
-    public static String secureDomain = null;
-    public static String appId = null;
-    public static String appKey = null;
-    public static String accessToken = null;
+    /** @deprecated a read-only mirror of the default client. Use {@link ECHOClient#getSecureDomain()}. */
+    @Deprecated public static String secureDomain = null;
+    /** @deprecated a read-only mirror of the default client. Use {@link ECHOClient#getAppId()}. */
+    @Deprecated public static String appId = null;
+    /** @deprecated a read-only mirror of the default client. Use {@link ECHOClient#getAppKey()}. */
+    @Deprecated public static String appKey = null;
+    /** @deprecated a mirror of the default client. A value written here is still taken by the default client. Use {@link ECHOClient#setAccessToken(String)}. */
+    @Deprecated public static String accessToken = null;
     public static Context context = null;
+
+    private static volatile boolean compactFieldStore = false;
+    private static volatile boolean lazyContents = false;
+
+    private static final Object interceptorsLock = new Object();
+    private static volatile ECHOInterceptor[] interceptors = new ECHOInterceptor[0];
     
     /**
-     * {@.en Initializes the configuration.
-     * 			This method must be called before using the SDK.}
-     * {@.ja SDKを初期化します。 SDKを使用する前に必ず呼び出してください。}
+     * {@.en Initializes the configuration by creating the default {@link ECHOClient}.
+     * 			This method must be called before using the SDK. Calling it again with the same credentials
+     * 			keeps the default client and only replaces its context.}
+     * {@.ja デフォルトの{@link ECHOClient}を生成し、SDKを初期化します。 SDKを使用する前に必ず呼び出してください。
+     * 			同じ認証情報で再度呼び出した場合は、デフォルトのクライアントを維持してコンテキストのみを置き換えます。}
      * 
      * @param context
      * 		{@.en the context of the Android Activity}
@@ -49,18 +63,130 @@ public class ECHO {
      * 		{@.en application key.}
      * 		{@.ja アプリケーションキー}
      */
-    public static void initialize(Context context, String secureDomain, String appId, String appKey) {
-        if(context == null) throw new IllegalArgumentException("argument `context` must not be null.");
-        if(secureDomain == null) throw new IllegalArgumentException("argument `secureDomain` must not be null.");
-        if(appId == null) throw new IllegalArgumentException("argument `appId` must not be null.");
-        if(appKey == null) throw new IllegalArgumentException("argument `appKey` must not be null.");
+    @SuppressWarnings("deprecation")
+    public static synchronized void initialize(Context context, String secureDomain, String appId, String appKey) {
+        ECHOClient previous = ECHOClient.getDefault();
+
+        // re-initialization for the same app (e.g. on re-creation of the Activity) keeps the client and its state
+        if(previous != null && context != null && previous.getSecureDomain().equals(secureDomain)
+                && previous.getAppId().equals(appId) && previous.getAppKey().equals(appKey)) {
+            previous.setContext(context);
+            ECHO.context = context;
+            return;
+        }
+
+        ECHOClient client = new ECHOClient(context, secureDomain, appId, appKey);
+
+        // keep the logged-in session on re-initialization for the same site
+        String accessToken = null;
+        if(previous != null && previous.getSecureDomain().equals(secureDomain)) accessToken = previous.getAccessToken();
 
         ECHO.context = context;
         ECHO.secureDomain = secureDomain;
         ECHO.appId = appId;
         ECHO.appKey = appKey;
+        ECHOClient.setDefault(client);
+        client.setAccessToken(accessToken); // mirrored to ECHO.accessToken
     }
-}
 
 
+    /**
+     * {@.en Adds an interceptor to the end of the request pipeline shared by all clients.}
+     * {@.ja すべてのクライアントで共有するリクエストの処理経路の末尾にインターセプタを追加します。}
+     *
+     * @param interceptor
+     * 		{@.en the adding interceptor}
+     * 		{@.ja 追加するインターセプタ}
+     */
+    public static void addInterceptor(ECHOInterceptor interceptor) {
+        if(interceptor == null) throw new IllegalArgumentException("argument `interceptor` must not be null.");
+
+        synchronized (interceptorsLock) {
+            List<ECHOInterceptor> list = new ArrayList<ECHOInterceptor>(interceptors.length + 1);
+            for (ECHOInterceptor i : interceptors) list.add(i);
+            list.add(interceptor);
+            interceptors = list.toArray(new ECHOInterceptor[list.size()]);
+        }
+    }
+
+
+    /**
+     * {@.en Removes an interceptor from the request pipeline shared by all clients.}
+     * {@.ja すべてのクライアントで共有するリクエストの処理経路からインターセプタを取り除きます。}
+     *
+     * @param interceptor
+     * 		{@.en the removing interceptor}
+     * 		{@.ja 取り除くインターセプタ}
+     */
+    public static void removeInterceptor(ECHOInterceptor interceptor) {
+        synchronized (interceptorsLock) {
+            List<ECHOInterceptor> list = new ArrayList<ECHOInterceptor>(interceptors.length);
+            for (ECHOInterceptor i : interceptors) list.add(i);
+            if(!list.remove(interceptor)) return;
+            interceptors = list.toArray(new ECHOInterceptor[list.size()]);
+        }
+    }
+
+
+    /**
+     * Gets the registered interceptors in order.
+     * The returned array is an immutable snapshot and must not be modified.
+     */
+    static ECHOInterceptor[] getInterceptors() {
+        return interceptors;
+    }
+
+
+    /**
+     * {@.en Sets whether data objects keep their fields in a memory-compact store
+     * 			instead of a JSONObject. The setting applies to data objects created or refreshed afterwards.
+     * 			Only the top-level fields are compacted; nested values such as `contents` stay JSONObjects.
+     * 			While the compact store is used, the protected `data` field of a data object is null.}
+     * {@.ja データオブジェクトのフィールドを、JSONObjectの代わりに省メモリな形式で保持するかどうかを設定します。
+     * 			設定は以降に生成・更新されるオブジェクトに適用されます。
+     * 			省メモリ化されるのはトップレベルのフィールドのみで、`contents`などの入れ子の値はJSONObjectのままです。
+     * 			省メモリ形式を使用している間、データオブジェクトのprotectedフィールド`data`はnullになります。}
+     *
+     * @param enabled
+     * 		{@.en true to use the compact store}
+     * 		{@.ja 省メモリ形式を使用する場合はtrue}
+     */
+    public static void setCompactFieldStoreEnabled(boolean enabled) {
+        compactFieldStore = enabled;
+    }
+
+
+    /**
+     * {@.en Returns whether data objects keep their fields in a memory-compact store.}
+     * {@.ja データオブジェクトが省メモリな形式でフィールドを保持するかどうかを返します。}
+     */
+    public static boolean isCompactFieldStoreEnabled() {
+        return compactFieldStore;
+    }
+
+
+    /**
+     * {@.en Sets whether the `contents` fields of fetched data objects are converted
+     * 			into ECHOFile, ECHODataObject or ECHODate on their first access instead of on receipt.
+     * 			The setting applies to data objects refreshed afterwards.}
+     * {@.ja 取得したデータオブジェクトの`contents`フィールドを、受信時ではなく最初のアクセス時に
+     * 			ECHOFile・ECHODataObject・ECHODateへ変換するかどうかを設定します。
+     * 			設定は以降に更新されるオブジェクトに適用されます。}
+     *
+     * @param enabled
+     * 		{@.en true to convert the fields lazily}
+     * 		{@.ja 遅延変換する場合はtrue}
+     */
+    public static void setLazyContentsEnabled(boolean enabled) {
+        lazyContents = enabled;
+    }
+
 
+    /**
+     * {@.en Returns whether the `contents` fields are converted on their first access.}
+     * {@.ja `contents`フィールドを最初のアクセス時に変換するかどうかを返します。}
+     */
+    public static boolean isLazyContentsEnabled() {
+        return lazyContents;
+    }
+}
@@ -24,6 +24,15 @@ import org.json.JSONObject;
  * An ECHOACLEntry expresses an ACL entry composing an ECHOACLObject.
  */
 public class ECHOACLEntry {
+
+	/** A flag of the permission to get. */
+	public static final int GET = 1;
+	/** A flag of the permission to list. */
+	public static final int LIST = 2;
+	/** A flag of the permission to edit. */
+	public static final int EDIT = 4;
+	/** A flag of the permission to delete. */
+	public static final int DELETE = 8;
 	
 	public boolean get = false;
 	public boolean list = false;
@@ -46,6 +55,26 @@ public class ECHOACLEntry {
 		this.delete = delete;
 	}
 
+
+	/**
+	 * Constructs a new ECHOACLEntry from permission flags.
+	 *
+	 * @param flags a combination of {@link #GET}, {@link #LIST}, {@link #EDIT} and {@link #DELETE}
+	 */
+	public ECHOACLEntry(int flags) {
+		this((flags & GET) != 0, (flags & LIST) != 0, (flags & EDIT) != 0, (flags & DELETE) != 0);
+	}
+
+
+	/**
+	 * Packs this entry into permission flags.
+	 *
+	 * @return a combination of {@link #GET}, {@link #LIST}, {@link #EDIT} and {@link #DELETE}
+	 */
+	public int toFlags() {
+		return (get ? GET : 0) | (list ? LIST : 0) | (edit ? EDIT : 0) | (delete ? DELETE : 0);
+	}
+
 	
 	/**
 	 * Converts this object into an acceptable JSONObject for the API.
@@ -16,6 +16,7 @@
 
 package com.echopf;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -24,6 +25,8 @@ import java.util.Map.Entry;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import android.os.Parcel;
+
 import com.echopf.members.ECHOMemberObject;
 import com.echopf.members.ECHOMembersGroupObject;
 
@@ -37,6 +40,11 @@ public class ECHOACLObject {
 	private Map<ECHOMembersGroupObject, ECHOACLEntry> specificGroups = new HashMap<ECHOMembersGroupObject, ECHOACLEntry>();
 	private Map<ECHOMemberObject, ECHOACLEntry> specificMembers = new HashMap<ECHOMemberObject, ECHOACLEntry>();
 
+	// caches invalidated by put*/reset*, and by changes of the entries (checked with the snapshot of their flags)
+	private JSONObject serialized = null;
+	private ECHOCompiledACL compiled = null;
+	private int[] snapshot = null;
+
 	/* Begin constructors */
 
 	/**
@@ -56,6 +64,35 @@ public class ECHOACLObject {
 		copyData(source);
 	}
 
+	/**
+	 * Constructs a new ECHOACLObject from a Parcel written by {@link #writeToParcel(Parcel)}.
+	 *
+	 * @param in the source Parcel
+	 */
+	ECHOACLObject(Parcel in) {
+		super();
+
+		this.all = readEntry(in);
+
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			String memberInstanceId = in.readString();
+			allMembers.put(memberInstanceId, readEntry(in));
+		}
+
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			ECHOMembersGroupObject group = new ECHOMembersGroupObject(in.readString(), in.readString());
+			specificGroups.put(group, readEntry(in));
+		}
+
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			ECHOMemberObject member = new ECHOMemberObject(in.readString(), in.readString());
+			specificMembers.put(member, readEntry(in));
+		}
+	}
+
 	/* End constructors */
 
 	
@@ -78,6 +115,7 @@ public class ECHOACLObject {
 	 * @param entry
 	 */
 	public void putEntryForAll(ECHOACLEntry entry) {
+		invalidate();
 		this.all = entry;
 	}
 
@@ -86,6 +124,7 @@ public class ECHOACLObject {
 	 * {@.ja すべての訪問者に対するACLをリセット。}
 	 */
 	public void resetEntryForAll() {
+		invalidate();
 		this.all = null;
 	}
 
@@ -115,6 +154,7 @@ public class ECHOACLObject {
 	 * @param entry
 	 */
 	public void putEntryForAllMembers(String memberInstanceId, ECHOACLEntry entry) {
+		invalidate();
 		allMembers.put(memberInstanceId, entry);
 	}
 
@@ -127,6 +167,7 @@ public class ECHOACLObject {
 	 * 		{@.ja メンバーインスタンスID}
 	 */
 	public void resetEntryForAllMembers(String memberInstanceId) {
+		invalidate();
 		allMembers.remove(memberInstanceId);
 	}
 
@@ -161,6 +202,7 @@ public class ECHOACLObject {
 		if(group == null || group.instanceId.isEmpty() ||  group.refid.isEmpty()) 
 			throw new IllegalArgumentException("Invalid data type for argument `group`.");
 
+		invalidate();
 		specificGroups.put(group, entry);
 	}
 
@@ -176,6 +218,7 @@ public class ECHOACLObject {
 		if(group == null || group.instanceId.isEmpty() ||  group.refid.isEmpty()) 
 			throw new IllegalArgumentException("Invalid data type for argument `group`.");
 		
+		invalidate();
 		specificGroups.remove(group);
 	}
 
@@ -210,6 +253,7 @@ public class ECHOACLObject {
 		if(member == null || member.instanceId.isEmpty() ||  member.refid.isEmpty()) 
 			throw new IllegalArgumentException("Invalid data type for argument `member`.");
 		
+		invalidate();
 		specificMembers.put(member, entry);
 	}
 
@@ -225,10 +269,22 @@ public class ECHOACLObject {
 		if(member == null || member.instanceId.isEmpty() ||  member.refid.isEmpty()) 
 			throw new IllegalArgumentException("Invalid data type for argument `member`.");
 		
+		invalidate();
 		specificMembers.remove(member);
 	}
 	
 	
+	/**
+	 * Gets the cached JSONObject for the API, building it if necessary.
+	 * The returned object is shared by all requests pushing this ACL, so it must not be modified.
+	 */
+	synchronized JSONObject toSharedJSONObject() {
+		validateCache();
+		if(this.serialized == null) this.serialized = toJSONObject();
+		return this.serialized;
+	}
+
+
 	/**
 	 * Converts this object into an acceptable JSONObject for the API.
 	 * 
@@ -305,13 +361,56 @@ public class ECHOACLObject {
 	}
 
 	
+	/**
+	 * {@.en Compiles this object for evaluating permissions locally.
+	 * 		The compiled ACL does not reflect later changes of this object.}
+	 * {@.ja ローカルで権限を判定するためにコンパイルします。コンパイル後の変更は反映されません。}
+	 */
+	public synchronized ECHOCompiledACL compile() {
+		validateCache();
+		if(this.compiled == null) this.compiled = ECHOCompiledACL.compile(all, allMembers, specificGroups, specificMembers);
+		return this.compiled;
+	}
+
+
+	private synchronized void invalidate() {
+		this.serialized = null;
+		this.compiled = null;
+		this.snapshot = null;
+	}
+
+
+	private void validateCache() {
+		int[] current = snapshot();
+		if(!Arrays.equals(this.snapshot, current)) {
+			this.serialized = null;
+			this.compiled = null;
+			this.snapshot = current;
+		}
+	}
+
+
+	/**
+	 * Takes the flags of all entries, since ECHOACLEntry is mutable.
+	 */
+	private int[] snapshot() {
+		int[] flags = new int[1 + allMembers.size() + specificGroups.size() + specificMembers.size()];
+		int i = 0;
+		flags[i++] = (all != null) ? all.toFlags() : -1;
+		for (ECHOACLEntry entry : allMembers.values()) flags[i++] = (entry != null) ? entry.toFlags() : -1;
+		for (ECHOACLEntry entry : specificGroups.values()) flags[i++] = (entry != null) ? entry.toFlags() : -1;
+		for (ECHOACLEntry entry : specificMembers.values()) flags[i++] = (entry != null) ? entry.toFlags() : -1;
+		return flags;
+	}
+
+
 	/**
 	 * Encodes this object as a compact JSON string.
 	 *
 	 * @return the formatted JSON string
 	 */
 	public String toString() {
-		return toJSONObject().toString();
+		return toSharedJSONObject().toString();
 	}
 
 
@@ -363,6 +462,55 @@ public class ECHOACLObject {
 	}
 
 	
+	/**
+	 * Writes this object into a Parcel.
+	 * Each entry is packed into a byte.
+	 *
+	 * @param out the destination Parcel
+	 */
+	void writeToParcel(Parcel out) {
+		writeEntry(out, all);
+
+		out.writeInt(allMembers.size());
+		for (Map.Entry<String, ECHOACLEntry> e : allMembers.entrySet()) {
+			out.writeString(e.getKey());
+			writeEntry(out, e.getValue());
+		}
+
+		out.writeInt(specificGroups.size());
+		for (Entry<ECHOMembersGroupObject, ECHOACLEntry> e : specificGroups.entrySet()) {
+			out.writeString(e.getKey().instanceId);
+			out.writeString(e.getKey().refid);
+			writeEntry(out, e.getValue());
+		}
+
+		out.writeInt(specificMembers.size());
+		for (Entry<ECHOMemberObject, ECHOACLEntry> e : specificMembers.entrySet()) {
+			out.writeString(e.getKey().instanceId);
+			out.writeString(e.getKey().refid);
+			writeEntry(out, e.getValue());
+		}
+	}
+
+
+	private static void writeEntry(Parcel out, ECHOACLEntry entry) {
+		if(entry == null) {
+			out.writeByte((byte) -1);
+			return;
+		}
+
+		out.writeByte((byte) entry.toFlags());
+	}
+
+
+	private static ECHOACLEntry readEntry(Parcel in) {
+		int flags = in.readByte();
+		if(flags < 0) return null;
+
+		return new ECHOACLEntry(flags);
+	}
+
+	
 	/**
 	 * Convert from an ECHOACLEntry to a JSONObject
 	 * 
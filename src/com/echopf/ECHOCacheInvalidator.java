@@ -0,0 +1,198 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.os.Handler;
+import android.os.Looper;
+
+
+/**
+ * An ECHOCacheInvalidator applies the cache invalidations pushed by FCM data messages.
+ *
+ * A data message without `message` and `title` which carries `instance_id` invalidates
+ * the caches of the instance in the default client:
+ * <ul>
+ * <li>with `refid`, the object is reloaded in the local store and the cached trees containing it are dropped;</li>
+ * <li>with `subtree`, or with `refid` and `resource_type` of "category" or "group",
+ * 		the cached trees containing the category/group are dropped;</li>
+ * <li>with neither, all caches of the instance are dropped.</li>
+ * </ul>
+ * Invalidations received within a short window are merged and applied in one pass in a background thread.
+ */
+final class ECHOCacheInvalidator {
+
+	static final String INSTANCE_ID_KEY = "instance_id";
+	static final String RESOURCE_TYPE_KEY = "resource_type";
+	static final String REFID_KEY = "refid";
+	static final String SUBTREE_KEY = "subtree";
+
+	private static final long BATCH_WINDOW = 500; // in milliseconds
+
+	private static final Object lock = new Object();
+	private static Map<String, Batch> pending = new LinkedHashMap<String, Batch>();
+	private static boolean scheduled = false;
+	private static Handler handler = null;
+
+
+	/**
+	 * Disable constructor since this is an utility class.
+	 */
+	private ECHOCacheInvalidator() {}
+
+
+	/**
+	 * Queues the invalidation carried by a data message.
+	 *
+	 * @param data the data of the message
+	 * @return false if the message is not an invalidation
+	 */
+	static boolean offer(Map<String, String> data) {
+		String instanceId = data.get(INSTANCE_ID_KEY);
+		if(instanceId == null || instanceId.isEmpty()) return false;
+
+		String refid = data.get(REFID_KEY);
+		String subtree = data.get(SUBTREE_KEY);
+
+		String resourceType = data.get(RESOURCE_TYPE_KEY);
+		if("category".equals(resourceType) || "group".equals(resourceType)) { // a tree node
+			if(subtree == null || subtree.isEmpty()) subtree = refid;
+			refid = null;
+		}
+
+		synchronized (lock) {
+			Batch batch = pending.get(instanceId);
+			if(batch == null) {
+				batch = new Batch();
+				pending.put(instanceId, batch);
+			}
+
+			if(refid != null && !refid.isEmpty()) {
+				batch.refids.add(refid);
+			}else if(subtree != null && !subtree.isEmpty()) {
+				batch.subtrees.add(subtree);
+			}else{
+				batch.all = true;
+			}
+
+			if(!scheduled) {
+				scheduled = true;
+				schedule();
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Schedules the flush at the end of the window started by the first invalidation.
+	 */
+	private static void schedule() {
+		if(handler == null) handler = new Handler(Looper.getMainLooper());
+		handler.postDelayed(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, BATCH_WINDOW);
+	}
+
+
+	/**
+	 * Takes the pending invalidations and applies them in a background thread of the default client.
+	 */
+	static void flush() {
+		final Map<String, Batch> batches;
+		synchronized (lock) {
+			scheduled = false;
+			if(pending.isEmpty()) return;
+			batches = pending;
+			pending = new LinkedHashMap<String, Batch>();
+		}
+
+		final ECHOClient client = ECHOClient.getDefault();
+		if(client == null) return; // nothing is cached
+
+		client.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				for (Map.Entry<String, Batch> entry : batches.entrySet()) {
+					revalidate(client, entry.getKey(), entry.getValue());
+				}
+			}
+		});
+	}
+
+
+	/**
+	 * Applies the invalidations of an instance.
+	 */
+	static void revalidate(ECHOClient client, String instanceId, Batch batch) {
+		ECHOLocalStore store = ECHOLocalStore.peek(client, instanceId);
+
+		if(batch.all) {
+			ECHOTreeCache.invalidateInstance(client.getSecureDomain(), instanceId);
+			if(store != null) store.clear();
+			return;
+		}
+
+		for (String subtree : batch.subtrees) {
+			ECHOTreeCache.invalidate(client.getSecureDomain(), instanceId, subtree);
+		}
+
+		for (String refid : batch.refids) {
+			ECHOTreeCache.invalidate(client.getSecureDomain(), instanceId, refid);
+			if(store == null) continue;
+
+			ECHODataObject<?> obj = store.get(refid);
+			if(obj == null) {
+				store.setComplete(false); // it may be a new object
+				continue;
+			}
+
+			try {
+				if(obj.refresh()) store.put(obj); // re-index
+			} catch (ECHOException e) {
+				if(isNotFound(e)) store.remove(refid); // deleted, or no longer readable
+				// otherwise keep the stored object; a later invalidation or sync refreshes it
+			}
+		}
+	}
+
+
+	/**
+	 * Returns whether an error tells that the object no longer exists for the client.
+	 */
+	private static boolean isNotFound(ECHOException e) {
+		return e.getCode() == ECHOException.RESOURCE_NOT_FOUND
+				|| e.getCode() == ECHOException.NOTFOUND_OR_FORBIDDEN;
+	}
+
+
+	/**
+	 * A Batch holds the merged invalidations of an instance.
+	 */
+	static final class Batch {
+		boolean all = false;
+		final Set<String> refids = new LinkedHashSet<String>();
+		final Set<String> subtrees = new LinkedHashSet<String>();
+	}
+}
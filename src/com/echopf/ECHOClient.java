@@ -0,0 +1,678 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+import android.content.Context;
+
+
+/**
+ * {@.en An ECHOClient connects to an ECHO site with its own credentials, access token,
+ * 		interceptors, background threads and caches.
+ * 		{@link ECHO#initialize(Context, String, String, String)} creates the default client.
+ * 		Objects are bound to the current client of the thread on which they are constructed
+ * 		(see {@link #setCurrent(ECHOClient)} and {@link ECHOObject#setClient(ECHOClient)}).}
+ * {@.ja 独自の認証情報・アクセストークン・インターセプタ・スレッド・キャッシュを持ち、ECHOサイトへ接続するクライアント。
+ * 		{@link ECHO#initialize(Context, String, String, String)}はデフォルトのクライアントを生成します。
+ * 		オブジェクトは、生成されたスレッドのカレントクライアントに紐付けられます。}
+ */
+public final class ECHOClient {
+
+	private static volatile ECHOClient defaultClient = null;
+	private static final ThreadLocal<ECHOClient> currentClient = new ThreadLocal<ECHOClient>();
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final ECHOClient parent; // the client from which a session client is derived, or null
+	private volatile Context context; // null in the derived clients
+	private final String secureDomain;
+	private final String appId;
+	private final String appKey;
+	private volatile String accessToken = null;
+	private String mirroredAccessToken = null; // the value last written to the legacy ECHO.accessToken
+
+	private final Object interceptorsLock = new Object();
+	private volatile ECHOInterceptor[] interceptors = new ECHOInterceptor[0];
+
+	private volatile ECHOReauthenticator reauthenticator = null;
+	private final Object refreshLock = new Object();
+	private FutureTask<String> refreshing = null; // the running renewal of the access token
+	private Thread refreshingThread = null;
+	private final AtomicLong refreshCount = new AtomicLong();
+	private final AtomicLong refreshNanos = new AtomicLong();
+	private volatile long lastRefreshNanos = 0;
+	private final AtomicLong replayCount = new AtomicLong();
+
+	private final ExecutorService pool; // shared with the derived clients
+	private final ExecutorService executor;
+	final Map<String, ECHOLocalStore> localStores = new ConcurrentHashMap<String, ECHOLocalStore>();
+
+
+	/**
+	 * {@.en Constructs a new ECHOClient.}
+	 * {@.ja クライアントを生成します。}
+	 *
+	 * @param context
+	 * 		{@.en the context of the Android application}
+	 * 		{@.ja アプリケーションのコンテキスト}
+	 * @param secureDomain
+	 * 		{@.en ECHO account ID (e.g. hogehoge.echopf.com)}
+	 * 		{@.ja アカウントID（セキュアドメイン）}
+	 * @param appId
+	 * 		{@.en application ID.}
+	 * 		{@.ja アプリケーションID}
+	 * @param appKey
+	 * 		{@.en application key.}
+	 * 		{@.ja アプリケーションキー}
+	 */
+	public ECHOClient(Context context, String secureDomain, String appId, String appKey) {
+		if(context == null) throw new IllegalArgumentException("argument `context` must not be null.");
+		if(secureDomain == null) throw new IllegalArgumentException("argument `secureDomain` must not be null.");
+		if(appId == null) throw new IllegalArgumentException("argument `appId` must not be null.");
+		if(appKey == null) throw new IllegalArgumentException("argument `appKey` must not be null.");
+
+		this.parent = null;
+		this.context = context;
+		this.secureDomain = secureDomain;
+		this.appId = appId;
+		this.appKey = appKey;
+
+		this.pool = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ECHOClient-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor = new BoundExecutor();
+	}
+
+
+	/**
+	 * Constructs a client derived from another one, which has its own access token and local stores
+	 * and shares the credentials, the interceptors and the threads with it.
+	 */
+	private ECHOClient(ECHOClient parent, String accessToken) {
+		this.parent = parent;
+		this.context = null;
+		this.secureDomain = parent.secureDomain;
+		this.appId = parent.appId;
+		this.appKey = parent.appKey;
+		this.accessToken = accessToken;
+
+		this.pool = parent.pool;
+		this.executor = new BoundExecutor();
+	}
+
+
+	/**
+	 * Derives a client for a session.
+	 * @param accessToken the access token of the session
+	 */
+	ECHOClient derive(String accessToken) {
+		return new ECHOClient((this.parent != null) ? this.parent : this, accessToken);
+	}
+
+
+	/* Begin default/current client */
+
+	/**
+	 * {@.en Gets the default client, or null if the SDK is not initialized.}
+	 * {@.ja デフォルトのクライアントを取得します。SDKが初期化されていない場合はnullを返します。}
+	 */
+	public static ECHOClient getDefault() {
+		return defaultClient;
+	}
+
+
+	/**
+	 * Sets the default client (by {@link ECHO#initialize(Context, String, String, String)}).
+	 */
+	static void setDefault(ECHOClient client) {
+		defaultClient = client;
+	}
+
+
+	/**
+	 * {@.en Binds a client to the current thread. Objects and queries used on the thread
+	 * 		are bound to the client instead of the default one.}
+	 * {@.ja カレントスレッドにクライアントを紐付けます。スレッド上で使用するオブジェクト・クエリは、
+	 * 		デフォルトの代わりにこのクライアントに紐付けられます。}
+	 *
+	 * @param client
+	 * 		{@.en the client, or null to unbind}
+	 * 		{@.ja クライアント（nullの場合は紐付けを解除）}
+	 */
+	public static void setCurrent(ECHOClient client) {
+		if(client == null) {
+			currentClient.remove();
+		}else{
+			currentClient.set(client);
+		}
+	}
+
+
+	/**
+	 * {@.en Gets the client bound to the current thread, or the default client.}
+	 * {@.ja カレントスレッドに紐付けられたクライアント、またはデフォルトのクライアントを取得します。}
+	 *
+	 * @throws IllegalStateException
+	 * 		{@.en if no client is available}
+	 * 		{@.ja 利用できるクライアントがない場合}
+	 */
+	public static ECHOClient current() {
+		ECHOClient client = peekCurrent();
+		if(client == null) throw new IllegalStateException("The SDK is not initialized.　Please call `ECHO.initialize()`.");
+		return client;
+	}
+
+
+	/**
+	 * Gets the client bound to the current thread, or null.
+	 */
+	static ECHOClient bound() {
+		return currentClient.get();
+	}
+
+
+	/**
+	 * Gets the client bound to the current thread, the default client, or null.
+	 */
+	static ECHOClient peekCurrent() {
+		ECHOClient client = currentClient.get();
+		return (client != null) ? client : defaultClient;
+	}
+
+	/* End default/current client */
+
+
+	/* Begin credentials */
+
+	/**
+	 * {@.en Gets the context of the Android application.}
+	 * {@.ja アプリケーションのコンテキストを取得します。}
+	 */
+	public Context getContext() {
+		return (this.parent != null) ? this.parent.getContext() : this.context;
+	}
+
+	/**
+	 * Replaces the context (by {@link ECHO#initialize(Context, String, String, String)} on re-initialization).
+	 */
+	void setContext(Context context) {
+		if(context == null) throw new IllegalArgumentException("argument `context` must not be null.");
+		if(this.parent != null) throw new IllegalStateException("A derived client shares the context of its parent.");
+		this.context = context;
+	}
+
+	/**
+	 * {@.en Gets the ECHO account ID.}
+	 * {@.ja アカウントID（セキュアドメイン）を取得します。}
+	 */
+	public String getSecureDomain() {
+		return this.secureDomain;
+	}
+
+	/**
+	 * {@.en Gets the application ID.}
+	 * {@.ja アプリケーションIDを取得します。}
+	 */
+	public String getAppId() {
+		return this.appId;
+	}
+
+	/**
+	 * {@.en Gets the application key.}
+	 * {@.ja アプリケーションキーを取得します。}
+	 */
+	public String getAppKey() {
+		return this.appKey;
+	}
+
+	/**
+	 * {@.en Gets the access token of the logged-in member, or null.}
+	 * {@.ja ログイン中のメンバーのアクセストークンを取得します。}
+	 */
+	public String getAccessToken() {
+		if(this == defaultClient) adoptLegacyAccessToken();
+		return this.accessToken;
+	}
+
+	/**
+	 * {@.en Sets the access token sent with the requests of this client.}
+	 * {@.ja このクライアントのリクエストに付与するアクセストークンをセットします。}
+	 *
+	 * @param accessToken
+	 * 		{@.en the access token, or null to clear it}
+	 * 		{@.ja アクセストークン（nullの場合はクリア）}
+	 */
+	@SuppressWarnings("deprecation")
+	public synchronized void setAccessToken(String accessToken) {
+		this.accessToken = accessToken;
+		if(this == defaultClient) { // the legacy mirror
+			ECHO.accessToken = accessToken;
+			this.mirroredAccessToken = accessToken;
+		}
+	}
+
+	/**
+	 * Takes over a token the application wrote to the deprecated {@link ECHO#accessToken},
+	 * which the default client honors as before the clients were introduced.
+	 */
+	@SuppressWarnings("deprecation")
+	private synchronized void adoptLegacyAccessToken() {
+		String legacy = ECHO.accessToken;
+		if(legacy != this.mirroredAccessToken) { // not the instance mirrored by setAccessToken
+			this.accessToken = legacy;
+			this.mirroredAccessToken = legacy;
+		}
+	}
+
+	/* End credentials */
+
+
+	/* Begin reauthentication */
+
+	/**
+	 * {@.en Sets the reauthenticator renewing the access token of this client when it is expired.
+	 * 		A session client uses the one of its parent client unless it has its own.}
+	 * {@.ja アクセストークンの期限切れ時にトークンを更新する再認証処理をセットします。
+	 * 		セッションのクライアントは、独自にセットしない限り親クライアントのものを使用します。}
+	 *
+	 * @param reauthenticator
+	 * 		{@.en the reauthenticator, or null to disable the renewal}
+	 * 		{@.ja 再認証処理（nullの場合は更新しない）}
+	 */
+	public void setReauthenticator(ECHOReauthenticator reauthenticator) {
+		this.reauthenticator = reauthenticator;
+	}
+
+	/**
+	 * {@.en Gets the reauthenticator of this client, or null.}
+	 * {@.ja このクライアントの再認証処理を取得します。}
+	 */
+	public ECHOReauthenticator getReauthenticator() {
+		ECHOReauthenticator own = this.reauthenticator;
+		if(own == null && this.parent != null) return this.parent.reauthenticator;
+		return own;
+	}
+
+
+	/**
+	 * Renews an expired access token, or waits for the running renewal of it.
+	 * @param expiredToken the rejected access token
+	 * @return the new access token, or null if it cannot be renewed
+	 * @throws ECHOException thrown by the reauthenticator
+	 */
+	String refreshAccessToken(final String expiredToken) throws ECHOException {
+		final ECHOReauthenticator reauthenticator = getReauthenticator();
+		if(reauthenticator == null || expiredToken == null) return null;
+
+		FutureTask<String> task;
+		boolean owner = false;
+
+		synchronized (refreshLock) {
+			// A reauthenticator should send token-less requests, which never get here;
+			// a token-bearing one on its own thread must not wait for itself.
+			if(refreshingThread == Thread.currentThread()) return null;
+
+			String current = getAccessToken();
+			if(current != null && !current.equals(expiredToken)) return current; // already renewed
+
+			if(refreshing == null) {
+				refreshing = new FutureTask<String>(new Callable<String>() {
+					@Override
+					public String call() throws ECHOException {
+						long start = System.nanoTime();
+						String newToken = reauthenticator.reauthenticate(ECHOClient.this, expiredToken);
+						long elapsed = System.nanoTime() - start;
+
+						refreshCount.incrementAndGet();
+						refreshNanos.addAndGet(elapsed);
+						lastRefreshNanos = elapsed;
+
+						if(newToken != null) setAccessToken(newToken);
+						return newToken;
+					}
+				});
+				refreshingThread = Thread.currentThread();
+				owner = true;
+			}
+			task = refreshing;
+		}
+
+		if(owner) {
+			try {
+				task.run();
+			} finally {
+				synchronized (refreshLock) {
+					refreshing = null;
+					refreshingThread = null;
+				}
+			}
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // ignore/reset
+			return null;
+		} catch (ExecutionException e) {
+			Throwable e2 = e.getCause();
+			if(e2 instanceof ECHOException) throw (ECHOException) e2;
+			throw new RuntimeException(e2);
+		}
+	}
+
+
+	/**
+	 * Counts a request replayed with a renewed access token.
+	 */
+	void countReplay() {
+		replayCount.incrementAndGet();
+	}
+
+
+	/**
+	 * {@.en Gets the number of the access token renewals of this client.}
+	 * {@.ja このクライアントのアクセストークンの更新回数を取得します。}
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/**
+	 * {@.en Gets the total time spent in the access token renewals of this client, in milliseconds.}
+	 * {@.ja このクライアントのアクセストークンの更新に要した合計時間（ミリ秒）を取得します。}
+	 */
+	public long getTotalRefreshLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(refreshNanos.get());
+	}
+
+	/**
+	 * {@.en Gets the time spent in the last access token renewal of this client, in milliseconds.}
+	 * {@.ja このクライアントの直近のアクセストークンの更新に要した時間（ミリ秒）を取得します。}
+	 */
+	public long getLastRefreshLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(lastRefreshNanos);
+	}
+
+	/**
+	 * {@.en Gets the number of the requests replayed with a renewed access token.}
+	 * {@.ja 更新したアクセストークンで再送されたリクエストの数を取得します。}
+	 */
+	public long getReplayCount() {
+		return replayCount.get();
+	}
+
+	/* End reauthentication */
+
+
+	/* Begin interceptors */
+
+	/**
+	 * {@.en Adds an interceptor to the end of the request pipeline of this client.
+	 * 		The interceptors added by {@link ECHO#addInterceptor(ECHOInterceptor)} run before them.}
+	 * {@.ja このクライアントのリクエストの処理経路の末尾にインターセプタを追加します。
+	 * 		{@link ECHO#addInterceptor(ECHOInterceptor)}で追加したインターセプタが先に実行されます。}
+	 *
+	 * @param interceptor
+	 * 		{@.en the adding interceptor}
+	 * 		{@.ja 追加するインターセプタ}
+	 */
+	public void addInterceptor(ECHOInterceptor interceptor) {
+		if(interceptor == null) throw new IllegalArgumentException("argument `interceptor` must not be null.");
+
+		synchronized (interceptorsLock) {
+			List<ECHOInterceptor> list = new ArrayList<ECHOInterceptor>(interceptors.length + 1);
+			for (ECHOInterceptor i : interceptors) list.add(i);
+			list.add(interceptor);
+			interceptors = list.toArray(new ECHOInterceptor[list.size()]);
+		}
+	}
+
+
+	/**
+	 * {@.en Removes an interceptor from the request pipeline of this client.}
+	 * {@.ja このクライアントのリクエストの処理経路からインターセプタを取り除きます。}
+	 *
+	 * @param interceptor
+	 * 		{@.en the removing interceptor}
+	 * 		{@.ja 取り除くインターセプタ}
+	 */
+	public void removeInterceptor(ECHOInterceptor interceptor) {
+		synchronized (interceptorsLock) {
+			List<ECHOInterceptor> list = new ArrayList<ECHOInterceptor>(interceptors.length);
+			for (ECHOInterceptor i : interceptors) list.add(i);
+			if(!list.remove(interceptor)) return;
+			interceptors = list.toArray(new ECHOInterceptor[list.size()]);
+		}
+	}
+
+
+	/**
+	 * Gets the global interceptors followed by the ones of the parent client, if any, and this client.
+	 * The returned array must not be modified.
+	 */
+	ECHOInterceptor[] getInterceptors() {
+		ECHOInterceptor[] global = ECHO.getInterceptors();
+		ECHOInterceptor[] own = this.interceptors;
+		if(this.parent != null) global = concat(global, this.parent.interceptors);
+
+		return concat(global, own);
+	}
+
+
+	private static ECHOInterceptor[] concat(ECHOInterceptor[] first, ECHOInterceptor[] second) {
+		if(second.length == 0) return first;
+		if(first.length == 0) return second;
+
+		ECHOInterceptor[] all = new ECHOInterceptor[first.length + second.length];
+		System.arraycopy(first, 0, all, 0, first.length);
+		System.arraycopy(second, 0, all, first.length, second.length);
+		return all;
+	}
+
+	/* End interceptors */
+
+
+	/**
+	 * {@.en Gets the executor running the background tasks of this client.
+	 * 		The tasks run with this client bound to their thread.}
+	 * {@.ja このクライアントのバックグラウンド処理を実行するエグゼキュータを取得します。
+	 * 		処理はこのクライアントをスレッドに紐付けて実行されます。}
+	 */
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+
+	/**
+	 * A BoundExecutor runs tasks on the shared threads with this client bound,
+	 * so that objects created in the background belong to this client.
+	 * Shutting it down shuts down the threads shared with the derived clients.
+	 */
+	private final class BoundExecutor extends AbstractExecutorService {
+
+		@Override
+		public void execute(final Runnable command) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					ECHOClient previous = currentClient.get();
+					currentClient.set(ECHOClient.this);
+					try {
+						command.run();
+					} finally {
+						setCurrent(previous);
+					}
+				}
+			});
+		}
+
+		@Override
+		public void shutdown() {
+			pool.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return pool.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return pool.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return pool.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return pool.awaitTermination(timeout, unit);
+		}
+	}
+
+
+	/* Begin requests */
+
+	/**
+	 * Sends a GET request.
+	 * @param path a request url path
+	 * @throws ECHOException
+	 */
+	public JSONObject getRequest(String path) throws ECHOException {
+		return request(path, "GET", null, false);
+	}
+
+	/**
+	 * Sends a GET request with optional request parameters.
+	 * @param path a request url path
+	 * @param query optional request parameters
+	 * @throws ECHOException
+	 */
+	public JSONObject getRequest(String path, JSONObject query) throws ECHOException {
+		return request(path, "GET", query, false);
+	}
+
+	/**
+	 * Sends a POST request.
+	 * @param path a request url path
+	 * @param data request contents
+	 * @throws ECHOException
+	 */
+	public JSONObject postRequest(String path, JSONObject data) throws ECHOException {
+		return request(path, "POST", data, false);
+	}
+
+	/**
+	 * Sends a POST request without the access token (e.g. to log-in).
+	 * It is never replayed with a renewed token, so it does not wait for the renewal;
+	 * an {@link ECHOReauthenticator} may send it from any thread.
+	 * @param path a request url path
+	 * @param data request contents
+	 * @throws ECHOException
+	 */
+	public JSONObject postRequestWithoutToken(String path, JSONObject data) throws ECHOException {
+		return ECHOQuery.requestWithoutToken(this, path, "POST", data);
+	}
+
+	/**
+	 * Sends a multipart POST request.
+	 * @param path a request url path
+	 * @param data request contents
+	 * @throws ECHOException
+	 */
+	public JSONObject multipartPostRequest(String path, JSONObject data) throws ECHOException {
+		return request(path, "POST", data, true);
+	}
+
+	/**
+	 * Sends a PUT request.
+	 * @param path a request url path
+	 * @param data request contents
+	 * @throws ECHOException
+	 */
+	public JSONObject putRequest(String path, JSONObject data) throws ECHOException {
+		return request(path, "PUT", data, false);
+	}
+
+	/**
+	 * Sends a multipart PUT request.
+	 * @param path a request url path
+	 * @param data request contents
+	 * @throws ECHOException
+	 */
+	public JSONObject multipartPutRequest(String path, JSONObject data) throws ECHOException {
+		return request(path, "PUT", data, true);
+	}
+
+	/**
+	 * Sends a DELETE request
+	 * @param path a request url path
+	 * @throws ECHOException
+	 */
+	public JSONObject deleteRequest(String path) throws ECHOException {
+		return request(path, "DELETE", null, false);
+	}
+
+	/**
+	 * Sends a HTTP request with optional request contents/parameters.
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @param multipart use multipart/form-data to encode the contents
+	 * @throws ECHOException
+	 */
+	public JSONObject request(String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException {
+		return ECHOQuery.request(this, path, httpMethod, data, multipart);
+	}
+
+	/**
+	 * Sends a HTTP request with optional request contents/parameters
+	 * through the registered {@link ECHOInterceptor}s.
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @param multipart use multipart/form-data to encode the contents
+	 * @throws ECHOException
+	 */
+	public InputStream requestRaw(String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException {
+		return ECHOQuery.requestRaw(this, path, httpMethod, data, multipart);
+	}
+
+	/* End requests */
+}
@@ -0,0 +1,681 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+
+/**
+ * {@.en An ECHOColumns is a columnar projection of selected fields of data objects
+ * 		into primitive arrays, for aggregating them in tight loops.
+ * 		Numeric fields are projected into double[] or long[], string fields into dictionary-encoded int[],
+ * 		and missing or unconvertible values are marked in a null bitmap.}
+ * {@.ja データオブジェクトの指定したフィールドをプリミティブ配列に射影した列形式のデータ。
+ * 		数値フィールドはdouble[]またはlong[]に、文字列フィールドは辞書符号化したint[]に射影され、
+ * 		値がないか変換できない行はnullビットマップに記録されます。}
+ *
+ * <pre>
+ * ECHOColumns columns = new ECHOColumns.Projection()
+ * 		.addDouble("price").addLong("stock").addString("category")
+ * 		.project(list);
+ * double total = columns.getDouble("price").sum();
+ * </pre>
+ */
+public final class ECHOColumns {
+
+	private final int size;
+	private final Map<String, Column> columns;
+
+
+	private ECHOColumns(int size, Map<String, Column> columns) {
+		this.size = size;
+		this.columns = columns;
+	}
+
+
+	/**
+	 * {@.en Returns the number of the rows.}
+	 * {@.ja 行数を返します。}
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * {@.en Gets a double column, or null if it is not projected as double.}
+	 * {@.ja double列を取得します。doubleとして射影されていない場合はnullを返します。}
+	 */
+	public DoubleColumn getDouble(String field) {
+		Column column = columns.get(field);
+		return (column instanceof DoubleColumn) ? (DoubleColumn) column : null;
+	}
+
+	/**
+	 * {@.en Gets a long column, or null if it is not projected as long.}
+	 * {@.ja long列を取得します。longとして射影されていない場合はnullを返します。}
+	 */
+	public LongColumn getLong(String field) {
+		Column column = columns.get(field);
+		return (column instanceof LongColumn) ? (LongColumn) column : null;
+	}
+
+	/**
+	 * {@.en Gets a string column, or null if it is not projected as string.}
+	 * {@.ja 文字列列を取得します。文字列として射影されていない場合はnullを返します。}
+	 */
+	public StringColumn getString(String field) {
+		Column column = columns.get(field);
+		return (column instanceof StringColumn) ? (StringColumn) column : null;
+	}
+
+
+	/* Begin projection */
+
+	/**
+	 * {@.en A Projection declares the fields to project and their column types.
+	 * 		Nested fields are given by dotted names (e.g. "address.zip").}
+	 * {@.ja 射影するフィールドと列の型を宣言します。入れ子のフィールドはドット区切りで指定します。}
+	 */
+	public static final class Projection {
+		private final Map<String, Integer> types = new LinkedHashMap<String, Integer>();
+
+		/**
+		 * {@.en Adds a field projected into double values.}
+		 * {@.ja double値として射影するフィールドを追加します。}
+		 */
+		public Projection addDouble(String field) {
+			return add(field, DOUBLE);
+		}
+
+		/**
+		 * {@.en Adds a field projected into long values (dates into epoch milliseconds).}
+		 * {@.ja long値として射影するフィールドを追加します（日付はエポックミリ秒）。}
+		 */
+		public Projection addLong(String field) {
+			return add(field, LONG);
+		}
+
+		/**
+		 * {@.en Adds a field projected into dictionary-encoded strings.}
+		 * {@.ja 辞書符号化した文字列として射影するフィールドを追加します。}
+		 */
+		public Projection addString(String field) {
+			return add(field, STRING);
+		}
+
+		private Projection add(String field, int type) {
+			if(field == null) throw new IllegalArgumentException("argument `field` must not be null.");
+			types.put(field, Integer.valueOf(type));
+			return this;
+		}
+
+		/**
+		 * {@.en Projects objects (e.g. an ECHOList) into columns.}
+		 * {@.ja オブジェクト（ECHOListなど）を列に射影します。}
+		 */
+		public ECHOColumns project(Collection<? extends ECHODataObject<?>> objs) {
+			if(objs == null) throw new IllegalArgumentException("argument `objs` must not be null.");
+			return newBuilder(objs.size()).appendAll(objs).build();
+		}
+
+		/**
+		 * {@.en Creates a builder appending objects incrementally, e.g. page by page of a streamed query.}
+		 * {@.ja オブジェクトを逐次追加するビルダーを生成します（ページごとに取得する検索など）。}
+		 *
+		 * @param expectedSize
+		 * 		{@.en the expected number of the rows}
+		 * 		{@.ja 想定される行数}
+		 */
+		public Builder newBuilder(int expectedSize) {
+			return new Builder(types, Math.max(expectedSize, 16));
+		}
+	}
+
+
+	/**
+	 * {@.en A Builder appends objects to the columns of a projection.}
+	 * {@.ja 射影の列にオブジェクトを追加するビルダー。}
+	 */
+	public static final class Builder {
+		private final String[] fields;
+		private final Column[] columns;
+		private int size = 0;
+		private int capacity;
+		private boolean built = false;
+
+		private Builder(Map<String, Integer> types, int capacity) {
+			this.fields = types.keySet().toArray(new String[types.size()]);
+			this.columns = new Column[fields.length];
+			this.capacity = capacity;
+
+			for (int i = 0; i < fields.length; i++) {
+				switch (types.get(fields[i]).intValue()) {
+					case DOUBLE: columns[i] = new DoubleColumn(fields[i], capacity); break;
+					case LONG: columns[i] = new LongColumn(fields[i], capacity); break;
+					default: columns[i] = new StringColumn(fields[i], capacity); break;
+				}
+			}
+		}
+
+		/**
+		 * {@.en Appends an object as a row.}
+		 * {@.ja オブジェクトを1行として追加します。}
+		 */
+		public Builder append(ECHODataObject<?> obj) {
+			if(obj == null) throw new IllegalArgumentException("argument `obj` must not be null.");
+			if(built) throw new IllegalStateException("The columns are already built.");
+
+			if(size == capacity) {
+				capacity *= 2;
+				for (Column column : columns) column.grow(capacity);
+			}
+
+			for (int i = 0; i < fields.length; i++) {
+				columns[i].set(size, ECHOLocalStore.valueOf(obj, fields[i]));
+			}
+			size++;
+			return this;
+		}
+
+		/**
+		 * {@.en Appends objects as rows.}
+		 * {@.ja 複数のオブジェクトを行として追加します。}
+		 */
+		public Builder appendAll(Collection<? extends ECHODataObject<?>> objs) {
+			for (ECHODataObject<?> obj : objs) append(obj);
+			return this;
+		}
+
+		/**
+		 * {@.en Builds the columns. The builder cannot be used after this.}
+		 * {@.ja 列を構築します。以降このビルダーは使用できません。}
+		 */
+		public ECHOColumns build() {
+			built = true;
+
+			Map<String, Column> map = new HashMap<String, Column>(fields.length * 2);
+			for (int i = 0; i < fields.length; i++) {
+				columns[i].trim(size);
+				map.put(fields[i], columns[i]);
+			}
+			return new ECHOColumns(size, map);
+		}
+	}
+
+	/* End projection */
+
+
+	/* Begin columns */
+
+	private static final int DOUBLE = 0;
+	private static final int LONG = 1;
+	private static final int STRING = 2;
+
+
+	/**
+	 * {@.en A Column is a projected field with a null bitmap.}
+	 * {@.ja nullビットマップを持つ、射影されたフィールド。}
+	 */
+	public static abstract class Column {
+		private final String field;
+		private long[] nulls; // bit i is set if the row i is null
+		int size = 0;
+
+		Column(String field, int capacity) {
+			this.field = field;
+			this.nulls = new long[(capacity + 63) >>> 6];
+		}
+
+		/**
+		 * {@.en Gets the projected field name.}
+		 * {@.ja 射影したフィールド名を取得します。}
+		 */
+		public String getField() {
+			return this.field;
+		}
+
+		/**
+		 * {@.en Returns the number of the rows.}
+		 * {@.ja 行数を返します。}
+		 */
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * {@.en Returns whether a row is null (missing or unconvertible).}
+		 * {@.ja 行がnull（値がないか変換できない）かどうかを返します。}
+		 */
+		public boolean isNull(int row) {
+			if(row < 0 || row >= size) throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+			return (nulls[row >>> 6] & (1L << row)) != 0;
+		}
+
+		/**
+		 * {@.en Gets the null bitmap, in which the bit (row % 64) of the word (row / 64) is set for a null row.}
+		 * {@.ja nullビットマップを取得します。null行は (row / 64) 番目の要素の (row % 64) ビットがセットされます。}
+		 */
+		public long[] getNullBitmap() {
+			return this.nulls;
+		}
+
+		/**
+		 * {@.en Returns the number of the null rows.}
+		 * {@.ja null行の数を返します。}
+		 */
+		public int getNullCount() {
+			int count = 0;
+			for (long word : nulls) count += Long.bitCount(word);
+			return count;
+		}
+
+		void setNull(int row) {
+			nulls[row >>> 6] |= 1L << row;
+		}
+
+		void grow(int capacity) {
+			long[] grown = new long[(capacity + 63) >>> 6];
+			System.arraycopy(nulls, 0, grown, 0, nulls.length);
+			nulls = grown;
+		}
+
+		void trim(int size) {
+			this.size = size;
+			long[] trimmed = new long[(size + 63) >>> 6];
+			System.arraycopy(nulls, 0, trimmed, 0, trimmed.length);
+			nulls = trimmed;
+		}
+
+		abstract void set(int row, Object value);
+	}
+
+
+	/**
+	 * {@.en A DoubleColumn holds double values. Null rows hold 0.}
+	 * {@.ja double値の列。null行は0です。}
+	 */
+	public static final class DoubleColumn extends Column {
+		private double[] values;
+
+		DoubleColumn(String field, int capacity) {
+			super(field, capacity);
+			this.values = new double[capacity];
+		}
+
+		/**
+		 * {@.en Gets the values. The returned array must not be modified.}
+		 * {@.ja 値の配列を取得します。変更しないでください。}
+		 */
+		public double[] values() {
+			return this.values;
+		}
+
+		/**
+		 * {@.en Sums the non-null values.}
+		 * {@.ja null以外の値の合計を返します。}
+		 */
+		public double sum() {
+			return sum(values, 0, size);
+		}
+
+		/**
+		 * {@.en Sums the non-null values, splitting the rows over the threads of an executor.}
+		 * {@.ja 行をエグゼキュータのスレッドに分割して、null以外の値の合計を返します。}
+		 *
+		 * @param executor
+		 * 		{@.en the executor (e.g. {@link ECHOClient#getExecutor()})}
+		 * 		{@.ja エグゼキュータ}
+		 * @param parallelism
+		 * 		{@.en the number of the partitions}
+		 * 		{@.ja 分割数}
+		 */
+		public double sum(ExecutorService executor, int parallelism) throws InterruptedException {
+			final double[] fValues = this.values;
+			List<Future<Double>> parts = submit(executor, parallelism, size, new Partition<Double>() {
+				@Override
+				public Double reduce(int from, int to) {
+					return Double.valueOf(DoubleColumn.sum(fValues, from, to));
+				}
+			});
+
+			double sum = 0;
+			for (Future<Double> part : parts) sum += join(part).doubleValue();
+			return sum;
+		}
+
+		/**
+		 * {@.en Gets the mean of the non-null values, or NaN if all rows are null.}
+		 * {@.ja null以外の値の平均を返します。すべてnullの場合はNaNを返します。}
+		 */
+		public double mean() {
+			int count = size - getNullCount();
+			return (count > 0) ? sum() / count : Double.NaN;
+		}
+
+		/**
+		 * {@.en Gets the minimum of the non-null values, or NaN if all rows are null.}
+		 * {@.ja null以外の値の最小値を返します。すべてnullの場合はNaNを返します。}
+		 */
+		public double min() {
+			double min = Double.NaN;
+			for (int i = 0; i < size; i++) {
+				if(!isNull(i) && (min != min || values[i] < min)) min = values[i];
+			}
+			return min;
+		}
+
+		/**
+		 * {@.en Gets the maximum of the non-null values, or NaN if all rows are null.}
+		 * {@.ja null以外の値の最大値を返します。すべてnullの場合はNaNを返します。}
+		 */
+		public double max() {
+			double max = Double.NaN;
+			for (int i = 0; i < size; i++) {
+				if(!isNull(i) && (max != max || values[i] > max)) max = values[i];
+			}
+			return max;
+		}
+
+		private static double sum(double[] values, int from, int to) {
+			double sum = 0;
+			for (int i = from; i < to; i++) sum += values[i]; // null rows hold 0
+			return sum;
+		}
+
+		@Override
+		void set(int row, Object value) {
+			Double d = (value instanceof Boolean) ? null : ECHOFieldStore.toDouble(value);
+			if(d == null) {
+				setNull(row);
+			}else{
+				values[row] = d.doubleValue();
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			super.grow(capacity);
+			double[] grown = new double[capacity];
+			System.arraycopy(values, 0, grown, 0, values.length);
+			values = grown;
+		}
+
+		@Override
+		void trim(int size) {
+			super.trim(size);
+			if(values.length == size) return;
+			double[] trimmed = new double[size];
+			System.arraycopy(values, 0, trimmed, 0, size);
+			values = trimmed;
+		}
+	}
+
+
+	/**
+	 * {@.en A LongColumn holds long values. Null rows hold 0.}
+	 * {@.ja long値の列。null行は0です。}
+	 */
+	public static final class LongColumn extends Column {
+		private long[] values;
+
+		LongColumn(String field, int capacity) {
+			super(field, capacity);
+			this.values = new long[capacity];
+		}
+
+		/**
+		 * {@.en Gets the values. The returned array must not be modified.}
+		 * {@.ja 値の配列を取得します。変更しないでください。}
+		 */
+		public long[] values() {
+			return this.values;
+		}
+
+		/**
+		 * {@.en Sums the non-null values.}
+		 * {@.ja null以外の値の合計を返します。}
+		 */
+		public long sum() {
+			return sum(values, 0, size);
+		}
+
+		/**
+		 * {@.en Sums the non-null values, splitting the rows over the threads of an executor.}
+		 * {@.ja 行をエグゼキュータのスレッドに分割して、null以外の値の合計を返します。}
+		 *
+		 * @param executor
+		 * 		{@.en the executor (e.g. {@link ECHOClient#getExecutor()})}
+		 * 		{@.ja エグゼキュータ}
+		 * @param parallelism
+		 * 		{@.en the number of the partitions}
+		 * 		{@.ja 分割数}
+		 */
+		public long sum(ExecutorService executor, int parallelism) throws InterruptedException {
+			final long[] fValues = this.values;
+			List<Future<Long>> parts = submit(executor, parallelism, size, new Partition<Long>() {
+				@Override
+				public Long reduce(int from, int to) {
+					return Long.valueOf(LongColumn.sum(fValues, from, to));
+				}
+			});
+
+			long sum = 0;
+			for (Future<Long> part : parts) sum += join(part).longValue();
+			return sum;
+		}
+
+		/**
+		 * {@.en Gets the minimum of the non-null values, or Long.MAX_VALUE if all rows are null.}
+		 * {@.ja null以外の値の最小値を返します。すべてnullの場合はLong.MAX_VALUEを返します。}
+		 */
+		public long min() {
+			long min = Long.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				if(!isNull(i) && values[i] < min) min = values[i];
+			}
+			return min;
+		}
+
+		/**
+		 * {@.en Gets the maximum of the non-null values, or Long.MIN_VALUE if all rows are null.}
+		 * {@.ja null以外の値の最大値を返します。すべてnullの場合はLong.MIN_VALUEを返します。}
+		 */
+		public long max() {
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				if(!isNull(i) && values[i] > max) max = values[i];
+			}
+			return max;
+		}
+
+		private static long sum(long[] values, int from, int to) {
+			long sum = 0;
+			for (int i = from; i < to; i++) sum += values[i]; // null rows hold 0
+			return sum;
+		}
+
+		@Override
+		void set(int row, Object value) {
+			if(value instanceof Long) {
+				values[row] = ((Long) value).longValue();
+				return;
+			}
+
+			Double d = (value instanceof Boolean) ? null : ECHOFieldStore.toDouble(value);
+			if(d == null) {
+				setNull(row);
+			}else{
+				values[row] = d.longValue();
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			super.grow(capacity);
+			long[] grown = new long[capacity];
+			System.arraycopy(values, 0, grown, 0, values.length);
+			values = grown;
+		}
+
+		@Override
+		void trim(int size) {
+			super.trim(size);
+			if(values.length == size) return;
+			long[] trimmed = new long[size];
+			System.arraycopy(values, 0, trimmed, 0, size);
+			values = trimmed;
+		}
+	}
+
+
+	/**
+	 * {@.en A StringColumn holds dictionary-encoded strings:
+	 * 		each row holds the index of its string in the dictionary, or -1 if it is null.}
+	 * {@.ja 辞書符号化した文字列の列。各行は辞書における文字列の位置を保持し、nullの場合は-1です。}
+	 */
+	public static final class StringColumn extends Column {
+		private int[] codes;
+		private final List<String> dictionary = new ArrayList<String>();
+		private final Map<String, Integer> lookup = new HashMap<String, Integer>();
+
+		StringColumn(String field, int capacity) {
+			super(field, capacity);
+			this.codes = new int[capacity];
+		}
+
+		/**
+		 * {@.en Gets the codes of the rows. The returned array must not be modified.}
+		 * {@.ja 各行の符号を取得します。変更しないでください。}
+		 */
+		public int[] codes() {
+			return this.codes;
+		}
+
+		/**
+		 * {@.en Gets the dictionary, in the order of the first appearance.}
+		 * {@.ja 辞書を出現順に取得します。}
+		 */
+		public String[] dictionary() {
+			return dictionary.toArray(new String[dictionary.size()]);
+		}
+
+		/**
+		 * {@.en Gets the string of a row, or null.}
+		 * {@.ja 行の文字列を取得します。nullの場合はnullを返します。}
+		 */
+		public String get(int row) {
+			if(isNull(row)) return null;
+			return dictionary.get(codes[row]);
+		}
+
+		/**
+		 * {@.en Counts the rows of each string in the dictionary.}
+		 * {@.ja 辞書の文字列ごとに行数を数えます。}
+		 */
+		public int[] countByCode() {
+			int[] counts = new int[dictionary.size()];
+			for (int i = 0; i < size; i++) {
+				int code = codes[i];
+				if(code >= 0) counts[code]++;
+			}
+			return counts;
+		}
+
+		@Override
+		void set(int row, Object value) {
+			if(value == null) {
+				codes[row] = -1;
+				setNull(row);
+				return;
+			}
+
+			String s = value.toString();
+			Integer code = lookup.get(s);
+			if(code == null) {
+				code = Integer.valueOf(dictionary.size());
+				dictionary.add(s);
+				lookup.put(s, code);
+			}
+			codes[row] = code.intValue();
+		}
+
+		@Override
+		void grow(int capacity) {
+			super.grow(capacity);
+			int[] grown = new int[capacity];
+			System.arraycopy(codes, 0, grown, 0, codes.length);
+			codes = grown;
+		}
+
+		@Override
+		void trim(int size) {
+			super.trim(size);
+			if(codes.length == size) return;
+			int[] trimmed = new int[size];
+			System.arraycopy(codes, 0, trimmed, 0, size);
+			codes = trimmed;
+		}
+	}
+
+	/* End columns */
+
+
+	/* Begin parallel reduction */
+
+	private interface Partition<R> {
+		R reduce(int from, int to);
+	}
+
+
+	private static <R> List<Future<R>> submit(ExecutorService executor, int parallelism, int size, final Partition<R> partition) {
+		if(executor == null) throw new IllegalArgumentException("argument `executor` must not be null.");
+		if(parallelism < 1) throw new IllegalArgumentException("argument `parallelism` must be positive.");
+
+		int chunk = Math.max((size + parallelism - 1) / parallelism, 1);
+		List<Future<R>> parts = new ArrayList<Future<R>>(parallelism);
+		for (int from = 0; from < size; from += chunk) {
+			final int fFrom = from;
+			final int fTo = Math.min(from + chunk, size);
+			parts.add(executor.submit(new Callable<R>() {
+				@Override
+				public R call() {
+					return partition.reduce(fFrom, fTo);
+				}
+			}));
+		}
+		return parts;
+	}
+
+
+	private static <R> R join(Future<R> part) throws InterruptedException {
+		try {
+			return part.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/* End parallel reduction */
+}
@@ -0,0 +1,427 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * An ECHOCompactFieldStore is a memory-compact {@link ECHOFieldStore}.
+ *
+ * The field names are kept in shared, interned {@link Shape}s: objects of the same instance
+ * which have the same fields in the same order refer to one Shape and hold only their values.
+ * The values are kept in a flat slot array, and numbers and booleans are kept unboxed.
+ *
+ * Only the top-level fields (refid, created, contents, ...) are compacted. Nested values,
+ * including the contents of a record or an entry, stay JSONObjects: they are handed out to
+ * the application as JSONObjects, and org.json keeps their fields in its own hash map.
+ * So the saving per object is a few top-level fields, not the bulk of its contents.
+ */
+final class ECHOCompactFieldStore extends ECHOFieldStore {
+
+	private static final byte ABSENT = 0;
+	private static final byte OBJECT = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte TRUE = 5;
+	private static final byte FALSE = 6;
+
+	private static final Object[] EMPTY_VALUES = new Object[0];
+	private static final byte[] EMPTY_TAGS = new byte[0];
+
+	private static final int MAX_ROOTS = 256; // instances and resource types sharing shapes
+	private static final int MAX_TRANSITIONS = 32; // distinct fields added to a shape
+
+	private static final ConcurrentHashMap<String, Shape> roots = new ConcurrentHashMap<String, Shape>();
+
+	private final Shape root;
+	private Shape shape;
+	private byte[] tags = EMPTY_TAGS;
+	private Object[] values = EMPTY_VALUES;
+	private long[] primitives = null;
+	private int length = 0;
+
+
+	/**
+	 * Constructs a new empty ECHOCompactFieldStore.
+	 * @param shapeKey the key to share the key shapes
+	 */
+	ECHOCompactFieldStore(String shapeKey) {
+		Shape root = roots.get(shapeKey);
+		if(root == null) {
+			root = new Shape(new String[0]);
+			if(roots.size() < MAX_ROOTS) { // otherwise this store keeps its shapes to itself
+				Shape existing = roots.putIfAbsent(shapeKey, root);
+				if(existing != null) root = existing;
+			}
+		}
+
+		this.root = root;
+		this.shape = root;
+	}
+
+
+	/* Begin primitive operators */
+
+	@Override
+	public Object opt(String name) {
+		int index = indexOf(name);
+		if(index < 0) return null;
+
+		switch (tags[index]) {
+			case OBJECT:
+				return values[index];
+			case INT:
+				return Integer.valueOf((int) primitives[index]);
+			case LONG:
+				return Long.valueOf(primitives[index]);
+			case DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(primitives[index]));
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, Object value) throws JSONException {
+		if(name == null) throw new JSONException("Names must be non-null");
+		if(value == null) {
+			remove(name);
+			return this;
+		}
+
+		if(value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			setPrimitive(name, INT, ((Number) value).intValue());
+		}else if(value instanceof Long) {
+			setPrimitive(name, LONG, ((Long) value).longValue());
+		}else if(value instanceof Double || value instanceof Float) {
+			return put(name, ((Number) value).doubleValue());
+		}else if(value instanceof Boolean) {
+			setTag(slotOf(name), ((Boolean) value).booleanValue() ? TRUE : FALSE);
+		}else{
+			int index = slotOf(name);
+			setTag(index, OBJECT);
+			values[index] = value;
+		}
+		return this;
+	}
+
+	@Override
+	public Object remove(String name) {
+		int index = indexOf(name);
+		if(index < 0) return null;
+
+		Object previous = opt(name);
+		tags[index] = ABSENT;
+		values[index] = null;
+		length--;
+		return previous;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public Iterator<String> keys() {
+		return new Iterator<String>() {
+
+			private final Shape iterShape = shape;
+			private int next = advance(0);
+			private int current = -1;
+
+			private int advance(int from) {
+				int i = from;
+				while (i < iterShape.size() && (i >= tags.length || tags[i] == ABSENT)) i++;
+				return i;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < iterShape.size();
+			}
+
+			@Override
+			public String next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				current = next;
+				next = advance(next + 1);
+				return iterShape.keyAt(current);
+			}
+
+			@Override
+			public void remove() {
+				if(current < 0) throw new IllegalStateException();
+				ECHOCompactFieldStore.this.remove(iterShape.keyAt(current));
+				current = -1;
+			}
+		};
+	}
+
+	@Override
+	public JSONObject toJSONObject() {
+		JSONObject obj = new JSONObject();
+
+		try {
+			for (int i = 0; i < shape.size() && i < tags.length; i++) {
+				if(tags[i] == ABSENT) continue;
+				String name = shape.keyAt(i);
+				obj.put(name, opt(name));
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		return obj;
+	}
+
+	/* End primitive operators */
+
+
+	/* Begin unboxed operators */
+
+	@Override
+	public ECHOFieldStore put(String name, boolean value) throws JSONException {
+		if(name == null) throw new JSONException("Names must be non-null");
+		setTag(slotOf(name), value ? TRUE : FALSE);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, double value) throws JSONException {
+		if(name == null) throw new JSONException("Names must be non-null");
+		if(Double.isNaN(value) || Double.isInfinite(value)) throw new JSONException("Forbidden numeric value: " + value);
+		setPrimitive(name, DOUBLE, Double.doubleToRawLongBits(value));
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, int value) throws JSONException {
+		if(name == null) throw new JSONException("Names must be non-null");
+		setPrimitive(name, INT, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, long value) throws JSONException {
+		if(name == null) throw new JSONException("Names must be non-null");
+		setPrimitive(name, LONG, value);
+		return this;
+	}
+
+	@Override
+	public int optInt(String name, int fallback) {
+		int index = indexOf(name);
+		if(index < 0) return fallback;
+
+		switch (tags[index]) {
+			case INT: case LONG:
+				return (int) primitives[index];
+			case DOUBLE:
+				return (int) Double.longBitsToDouble(primitives[index]);
+			case OBJECT:
+				return super.optInt(name, fallback);
+			default:
+				return fallback;
+		}
+	}
+
+	@Override
+	public long optLong(String name, long fallback) {
+		int index = indexOf(name);
+		if(index < 0) return fallback;
+
+		switch (tags[index]) {
+			case INT: case LONG:
+				return primitives[index];
+			case DOUBLE:
+				return (long) Double.longBitsToDouble(primitives[index]);
+			case OBJECT:
+				return super.optLong(name, fallback);
+			default:
+				return fallback;
+		}
+	}
+
+	@Override
+	public double optDouble(String name, double fallback) {
+		int index = indexOf(name);
+		if(index < 0) return fallback;
+
+		switch (tags[index]) {
+			case INT: case LONG:
+				return (double) primitives[index];
+			case DOUBLE:
+				return Double.longBitsToDouble(primitives[index]);
+			case OBJECT:
+				return super.optDouble(name, fallback);
+			default:
+				return fallback;
+		}
+	}
+
+	@Override
+	public boolean optBoolean(String name, boolean fallback) {
+		int index = indexOf(name);
+		if(index < 0) return fallback;
+
+		switch (tags[index]) {
+			case TRUE:
+				return true;
+			case FALSE:
+				return false;
+			case OBJECT:
+				return super.optBoolean(name, fallback);
+			default:
+				return fallback;
+		}
+	}
+
+	/* End unboxed operators */
+
+
+	/* Begin slot management */
+
+	/**
+	 * Returns the slot index of a present field, or -1.
+	 */
+	private int indexOf(String name) {
+		int index = shape.indexOf(name);
+		if(index < 0 || index >= tags.length || tags[index] == ABSENT) return -1;
+		return index;
+	}
+
+	/**
+	 * Returns the slot index of a field, adding it to the shape if needed.
+	 */
+	private int slotOf(String name) {
+		int index = shape.indexOf(name);
+		if(index < 0) {
+			shape = shape.with(name);
+			index = shape.size() - 1;
+			root.expect(shape.size());
+		}
+
+		if(index >= tags.length) {
+			int capacity = Math.max(Math.max(index + 1, tags.length * 2), root.expectedSize());
+			tags = Arrays.copyOf(tags, capacity);
+			values = Arrays.copyOf(values, capacity);
+			if(primitives != null) primitives = Arrays.copyOf(primitives, capacity);
+		}
+
+		return index;
+	}
+
+	private void setTag(int index, byte tag) {
+		if(tags[index] == ABSENT) length++;
+		tags[index] = tag;
+		values[index] = null;
+	}
+
+	private void setPrimitive(String name, byte tag, long value) {
+		int index = slotOf(name);
+		if(primitives == null) primitives = new long[tags.length];
+		setTag(index, tag);
+		primitives[index] = value;
+	}
+
+	/* End slot management */
+
+
+	/**
+	 * A Shape is an immutable, interned sequence of field names.
+	 * Adding a name to a Shape leads to a shared child Shape.
+	 */
+	static final class Shape {
+
+		private static final int LINEAR_SEARCH_LIMIT = 8;
+
+		private final String[] keys;
+		private final Map<String, Integer> index;
+		private Map<String, Shape> transitions = null;
+		private volatile int expectedSize = 0;
+
+		Shape(String[] keys) {
+			this.keys = keys;
+
+			if(keys.length > LINEAR_SEARCH_LIMIT) {
+				this.index = new HashMap<String, Integer>(keys.length * 2);
+				for (int i = 0; i < keys.length; i++) this.index.put(keys[i], Integer.valueOf(i));
+			}else{
+				this.index = null;
+			}
+		}
+
+		int size() {
+			return keys.length;
+		}
+
+		String keyAt(int i) {
+			return keys[i];
+		}
+
+		int indexOf(String name) {
+			if(index != null) {
+				Integer i = index.get(name);
+				return (i != null) ? i.intValue() : -1;
+			}
+
+			for (int i = 0; i < keys.length; i++) {
+				if(keys[i] == name || keys[i].equals(name)) return i;
+			}
+			return -1;
+		}
+
+		synchronized Shape with(String name) {
+			if(transitions == null) transitions = new HashMap<String, Shape>(4);
+
+			Shape child = transitions.get(name);
+			if(child == null) {
+				String[] childKeys = Arrays.copyOf(keys, keys.length + 1);
+				childKeys[keys.length] = name;
+				child = new Shape(childKeys);
+				if(transitions.size() < MAX_TRANSITIONS) transitions.put(name, child); // otherwise not shared
+			}
+			return child;
+		}
+
+		/**
+		 * Records the size of a shape reached from this root, to pre-size the slot arrays.
+		 */
+		void expect(int size) {
+			if(size > expectedSize) expectedSize = size;
+		}
+
+		int expectedSize() {
+			return expectedSize;
+		}
+	}
+}
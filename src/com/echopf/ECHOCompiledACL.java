@@ -0,0 +1,337 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONObject;
+
+import com.echopf.members.ECHOMemberObject;
+import com.echopf.members.ECHOMembersGroupObject;
+
+
+/**
+ * {@.en An ECHOCompiledACL is an immutable form of an ACL for evaluating permissions locally.
+ * 		Principals are interned into integer IDs and entries are packed into {@link ECHOACLEntry} flags.}
+ * {@.ja ローカルで権限を判定するための、ACLの不変なコンパイル済み表現。}
+ */
+public final class ECHOCompiledACL {
+
+	private static final Map<String, Integer> principalIds = new ConcurrentHashMap<String, Integer>();
+	private static int nextPrincipalId = 0;
+
+	private final int all; // flags for all visitors
+	private final int[] principals; // sorted interned principal IDs
+	private final int[] flags; // flags for principals[i]
+
+
+	private ECHOCompiledACL(int all, TreeMap<Integer, Integer> entries) {
+		this.all = all;
+		this.principals = new int[entries.size()];
+		this.flags = new int[entries.size()];
+
+		int i = 0;
+		for (Map.Entry<Integer, Integer> e : entries.entrySet()) {
+			this.principals[i] = e.getKey();
+			this.flags[i] = e.getValue();
+			i++;
+		}
+	}
+
+
+	/**
+	 * {@.en Compiles an ACL in JSONObject, as returned by the API, without building member or group objects.}
+	 * {@.ja APIが返すJSON形式のACLをコンパイルします。}
+	 *
+	 * @param source
+	 * 		{@.en the source JSONObject}
+	 * 		{@.ja ACLのJSONObject}
+	 */
+	public static ECHOCompiledACL compile(JSONObject source) {
+		if(source == null) throw new IllegalArgumentException("argument `source` must not be null.");
+
+		int all = 0;
+		TreeMap<Integer, Integer> entries = new TreeMap<Integer, Integer>();
+
+		Iterator<?> iter = source.keys();
+		while (iter.hasNext()) {
+			String key = (String)iter.next();
+			JSONObject val = source.optJSONObject(key);
+			if(val == null) continue; // skip
+
+			if (key.equals("*")) { // for all visitors
+				all = flagsOf(val);
+				continue;
+			}
+
+			// the key is memberInstanceId
+			Iterator<?> iter2 = val.keys();
+			while (iter2.hasNext()) {
+				String key2 = (String)iter2.next();
+				JSONObject val2 = val.optJSONObject(key2);
+				if(val2 == null) continue; // skip
+
+				if(key2.equals("*")) { // for all members
+					entries.put(intern(allMembersKey(key)), flagsOf(val2));
+				}else if(key2.equals("members") || key2.equals("groups")) { // for a specified member or group
+					Iterator<?> iter3 = val2.keys();
+					while (iter3.hasNext()) {
+						String key3 = (String)iter3.next();
+						JSONObject val3 = val2.optJSONObject(key3);
+						if(val3 == null) continue; // skip
+
+						String principal = key2.equals("members") ? memberKey(key, key3) : groupKey(key, key3);
+						entries.put(intern(principal), flagsOf(val3));
+					}
+				}
+			}
+		}
+
+		return new ECHOCompiledACL(all, entries);
+	}
+
+
+	/**
+	 * Compiles the entries of an ECHOACLObject.
+	 */
+	static ECHOCompiledACL compile(ECHOACLEntry all, Map<String, ECHOACLEntry> allMembers,
+			Map<ECHOMembersGroupObject, ECHOACLEntry> specificGroups, Map<ECHOMemberObject, ECHOACLEntry> specificMembers) {
+		TreeMap<Integer, Integer> entries = new TreeMap<Integer, Integer>();
+
+		for (Map.Entry<String, ECHOACLEntry> e : allMembers.entrySet()) {
+			if(e.getValue() == null) continue;
+			entries.put(intern(allMembersKey(e.getKey())), e.getValue().toFlags());
+		}
+		for (Map.Entry<ECHOMembersGroupObject, ECHOACLEntry> e : specificGroups.entrySet()) {
+			if(e.getValue() == null) continue;
+			entries.put(intern(groupKey(e.getKey().instanceId, e.getKey().refid)), e.getValue().toFlags());
+		}
+		for (Map.Entry<ECHOMemberObject, ECHOACLEntry> e : specificMembers.entrySet()) {
+			if(e.getValue() == null) continue;
+			entries.put(intern(memberKey(e.getKey().instanceId, e.getKey().refid)), e.getValue().toFlags());
+		}
+
+		return new ECHOCompiledACL((all != null) ? all.toFlags() : 0, entries);
+	}
+
+
+	/**
+	 * {@.en Gets the permissions for all the visitors.}
+	 * {@.ja すべての訪問者に与えられている権限を取得します。}
+	 *
+	 * @return {@.en the permission flags (see {@link ECHOACLEntry#GET} etc.)}
+	 * 			{@.ja 権限フラグ}
+	 */
+	public int getPermissionsForAll() {
+		return this.all;
+	}
+
+
+	/**
+	 * {@.en Evaluates the permissions of a member, i.e. the union of the entries for all the visitors,
+	 * 		all the members of the member's instance, the member's groups and the member.}
+	 * {@.ja メンバーの実効権限を判定します。すべての訪問者・メンバーインスタンス全体・所属グループ・メンバー個人に対する権限の和となります。}
+	 *
+	 * @param member
+	 * 		{@.en the member, or null for a visitor}
+	 * 		{@.ja メンバー（訪問者の場合はnull）}
+	 * @param groupsOfMember
+	 * 		{@.en the groups to which the member belongs, or null}
+	 * 		{@.ja メンバーが所属するグループ（またはnull）}
+	 * @return {@.en the permission flags (see {@link ECHOACLEntry#GET} etc.)}
+	 * 			{@.ja 権限フラグ}
+	 */
+	public int effectivePermissions(ECHOMemberObject member, Collection<ECHOMembersGroupObject> groupsOfMember) {
+		return effectivePermissions(Principal.of(member, groupsOfMember));
+	}
+
+
+	/**
+	 * {@.en Evaluates the permissions of a resolved principal.
+	 * 		Resolve a principal once to check many ACLs.}
+	 * {@.ja 解決済みのプリンシパルの実効権限を判定します。多数のACLを判定する場合に使用します。}
+	 *
+	 * @param principal
+	 * 		{@.en the principal returned by {@link Principal#of(ECHOMemberObject, Collection)}}
+	 * 		{@.ja プリンシパル}
+	 * @return {@.en the permission flags (see {@link ECHOACLEntry#GET} etc.)}
+	 * 			{@.ja 権限フラグ}
+	 */
+	public int effectivePermissions(Principal principal) {
+		if(principal == null) throw new IllegalArgumentException("argument `principal` must not be null.");
+
+		int result = this.all;
+		for (int id : principal.ids()) {
+			int i = Arrays.binarySearch(this.principals, id);
+			if(i >= 0) result |= this.flags[i];
+		}
+		return result;
+	}
+
+
+	/**
+	 * {@.en Returns whether a principal has all of the given permissions.}
+	 * {@.ja プリンシパルが指定した権限をすべて持つかどうかを返します。}
+	 *
+	 * @param principal
+	 * 		{@.en the principal}
+	 * 		{@.ja プリンシパル}
+	 * @param permissions
+	 * 		{@.en the permission flags (e.g. {@link ECHOACLEntry#GET} | {@link ECHOACLEntry#EDIT})}
+	 * 		{@.ja 権限フラグ}
+	 */
+	public boolean isPermitted(Principal principal, int permissions) {
+		return (effectivePermissions(principal) & permissions) == permissions;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) return true;
+		if(!(obj instanceof ECHOCompiledACL)) return false;
+
+		ECHOCompiledACL other = (ECHOCompiledACL) obj;
+		return this.all == other.all
+				&& Arrays.equals(this.principals, other.principals)
+				&& Arrays.equals(this.flags, other.flags);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * this.all + Arrays.hashCode(this.principals)) + Arrays.hashCode(this.flags);
+	}
+
+
+	/**
+	 * Interns a principal key. Only called while compiling an ACL.
+	 */
+	private static int intern(String key) {
+		Integer id = principalIds.get(key);
+		if(id != null) return id;
+
+		synchronized (principalIds) {
+			id = principalIds.get(key);
+			if(id == null) {
+				id = nextPrincipalId++;
+				principalIds.put(key, id);
+			}
+			return id;
+		}
+	}
+
+
+	/**
+	 * Looks up an interned principal key without interning it.
+	 * A key no ACL has interned cannot match any entry.
+	 * @return the ID, or -1 if the key has not been interned
+	 */
+	private static int lookup(String key) {
+		Integer id = principalIds.get(key);
+		return (id != null) ? id : -1;
+	}
+
+
+	private static String allMembersKey(String memberInstanceId) {
+		return memberInstanceId + "/*";
+	}
+
+	private static String groupKey(String memberInstanceId, String refid) {
+		return memberInstanceId + "/groups/" + refid;
+	}
+
+	private static String memberKey(String memberInstanceId, String refid) {
+		return memberInstanceId + "/members/" + refid;
+	}
+
+	private static int flagsOf(JSONObject entry) {
+		return (entry.optBoolean("get") ? ECHOACLEntry.GET : 0)
+				| (entry.optBoolean("list") ? ECHOACLEntry.LIST : 0)
+				| (entry.optBoolean("edit") ? ECHOACLEntry.EDIT : 0)
+				| (entry.optBoolean("delete") ? ECHOACLEntry.DELETE : 0);
+	}
+
+
+	/**
+	 * {@.en A Principal is a member (or a visitor) resolved into interned principal IDs.}
+	 * {@.ja 内部IDに解決済みのメンバー（または訪問者）。}
+	 */
+	public static final class Principal {
+
+		private final String[] keys;
+		private volatile int[] ids = new int[0];
+		private volatile int resolvedAt = -1; // the number of interned keys when ids were resolved
+
+		private Principal(String[] keys) {
+			this.keys = keys;
+		}
+
+
+		/**
+		 * Returns the interned IDs of this principal's keys, resolving them again
+		 * if keys have been interned since the last resolution.
+		 */
+		int[] ids() {
+			int generation = principalIds.size();
+			if(generation == this.resolvedAt) return this.ids;
+
+			int[] resolved = new int[this.keys.length];
+			int n = 0;
+			for (String key : this.keys) {
+				int id = lookup(key);
+				if(id >= 0) resolved[n++] = id;
+			}
+			this.ids = (n == resolved.length) ? resolved : Arrays.copyOf(resolved, n);
+			this.resolvedAt = generation;
+			return this.ids;
+		}
+
+
+		/**
+		 * {@.en Resolves a member and the groups to which the member belongs.}
+		 * {@.ja メンバーと所属グループを解決します。}
+		 *
+		 * @param member
+		 * 		{@.en the member, or null for a visitor}
+		 * 		{@.ja メンバー（訪問者の場合はnull）}
+		 * @param groupsOfMember
+		 * 		{@.en the groups to which the member belongs, or null}
+		 * 		{@.ja メンバーが所属するグループ（またはnull）}
+		 */
+		public static Principal of(ECHOMemberObject member, Collection<ECHOMembersGroupObject> groupsOfMember) {
+			if(member == null) return new Principal(new String[0]);
+
+			int size = 2 + ((groupsOfMember != null) ? groupsOfMember.size() : 0);
+			String[] keys = new String[size];
+			int i = 0;
+			keys[i++] = allMembersKey(member.instanceId);
+			keys[i++] = memberKey(member.instanceId, member.getRefid());
+			if(groupsOfMember != null) {
+				for (ECHOMembersGroupObject group : groupsOfMember) {
+					if(group == null) continue; // skip
+					keys[i++] = groupKey(group.instanceId, group.getRefid());
+				}
+			}
+
+			return new Principal((i == size) ? keys : Arrays.copyOf(keys, i));
+		}
+	}
+}
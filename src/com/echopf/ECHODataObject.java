@@ -17,11 +17,14 @@
 package com.echopf;
 
 import java.text.ParseException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -43,10 +46,23 @@ import android.os.Parcelable;
  */
 public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOObject implements Parcelable {
 	
+	/**
+	 * The fields of this object.
+	 * It is null while the compact field store is enabled (see {@link ECHO#setCompactFieldStoreEnabled(boolean)});
+	 * {@link #fields()} gives the fields in either case.
+	 */
 	protected JSONObject data = null;
+	private ECHOFieldStore fields = null; // backed by `data` unless compact
 	private ECHOACLObject newACL = null;
 	private ECHOACLObject currentACL = null;
+	private JSONObject currentACLSource = null; // built into currentACL on demand
+	private ECHOCompiledACL compiledACL = null;
 	private Boolean multipart = null;
+	private final Set<String> dirtyFields = new HashSet<String>(); // fields written through the setters
+	private final Map<String, Long> fingerprints = new HashMap<String, Long>(); // received container fields
+	private final Map<String, Long> contentsFingerprints = new HashMap<String, Long>(); // received contents fields
+	private boolean deltaPush = true;
+	String journalKey = null; // identifies this object in the offline queue until it gets a refid
 	
 	
 	/* Begin constructors */
@@ -71,10 +87,10 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	protected ECHODataObject(String instanceId, String resourceType, String refid) {
 		super(instanceId, resourceType, refid);
-		this.data = new JSONObject();
+		setFields(newFieldStore());
 		
 		try {
-			this.data.put("refid", refid);
+			fields().put("refid", refid);
 		} catch (JSONException e) {
 			throw new RuntimeException(e);
 		}
@@ -83,6 +99,38 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	/* End constructors */
 	
 
+	/**
+	 * Gets the store of the fields of this object.
+	 * A JSONObject assigned to {@link #data} by a subclass is adopted as the store.
+	 */
+	protected final ECHOFieldStore fields() {
+		JSONObject data = this.data;
+		ECHOFieldStore fields = this.fields;
+		if(data != null && (fields == null || fields.toJSONObject() != data)) {
+			fields = new ECHOJSONFieldStore(data);
+			this.fields = fields;
+		}
+		return fields;
+	}
+
+
+	/**
+	 * Replaces the store of the fields, keeping {@link #data} as its backing JSONObject.
+	 */
+	private void setFields(ECHOFieldStore fields) {
+		this.fields = fields;
+		this.data = (fields instanceof ECHOJSONFieldStore) ? fields.toJSONObject() : null;
+	}
+
+
+	/**
+	 * Creates a new empty field store for this object.
+	 */
+	private ECHOFieldStore newFieldStore() {
+		return ECHOFieldStore.create(new StringBuilder(String.valueOf(instanceId)).append("/").append(resourceType).toString());
+	}
+
+
 	/**
 	 * Factory method of particular data objects.
 	 * 
@@ -130,7 +178,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		final Handler handler = new Handler();
 		
 		// Get ready a background thread
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = getClient().getExecutor();
 	    Callable<Object> communictor = new Callable<Object>() {
 
 	    	@Override
@@ -142,7 +190,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
     			try {
 
     	    		synchronized (lock) {
-	    				data = ECHOQuery.getRequest(getRequestURLPath());
+	    				data = getClient().getRequest(getRequestURLPath());
 	    				copyData(data);
     	    		}
     	    		
@@ -197,6 +245,38 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	}
 	
 
+	/**
+	 * Reloads the data from the remote server on the calling thread,
+	 * unless this object has modifications which are not pushed yet.
+	 * 
+	 * @return false if the reloading is skipped
+	 * @throws ECHOException 
+	 */
+	boolean refresh() throws ECHOException {
+		synchronized (lock) {
+			if(hasLocalChanges()) return false;
+			copyData(getClient().getRequest(getRequestURLPath()));
+		}
+		return true;
+	}
+	
+
+	/**
+	 * Takes the refid given by a replayed creation of the offline queue,
+	 * unless this object has been created or queued again meanwhile.
+	 *
+	 * @param journalKey the journal key of the replayed creation
+	 * @param refid the refid of the created object
+	 */
+	void adoptRefid(String journalKey, String refid) {
+		synchronized (lock) {
+			if(this.refid != null || !journalKey.equals(this.journalKey)) return;
+			this.refid = refid;
+			this.journalKey = null;
+		}
+	}
+
+
 	/**
 	 * Does Push data to the remote server in a background thread.
 	 * 
@@ -214,7 +294,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		
 		// Get ready a background thread
 		final Handler handler = new Handler();
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = getClient().getExecutor();
 	    Callable<Object> communictor = new Callable<Object>() {
 
 	    	@Override
@@ -226,22 +306,33 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 				try {
 		    		synchronized (lock) {
 
-		    			if(refid == null) { // post
-		    				if(fMultipart == false) {
-		    					data = ECHOQuery.postRequest(getRequestURLPath(), obj);
-		    				}else{
-		    					data = ECHOQuery.multipartPostRequest(getRequestURLPath(), obj);
-		    				}
-						}else{ // put
-		    				if(fMultipart == false) {
-		    					data = ECHOQuery.putRequest(getRequestURLPath(), obj);
-		    				}else{
-		    					data = ECHOQuery.multipartPutRequest(getRequestURLPath(), obj);
-		    				}
-						}
+		    			try {
+			    			if(refid == null) { // post
+			    				if(journalKey != null && ECHOOfflineQueue.follow(ECHODataObject.this, obj, fMultipart)) {
+			    					// the creation is still waiting in the offline queue; a direct post would create another record
+			    				}else if(fMultipart == false) {
+			    					data = getClient().postRequest(getRequestURLPath(), obj);
+			    				}else{
+			    					data = getClient().multipartPostRequest(getRequestURLPath(), obj);
+			    				}
+							}else{ // put
+			    				if(fMultipart == false) {
+			    					data = getClient().putRequest(getRequestURLPath(), obj);
+			    				}else{
+			    					data = getClient().multipartPutRequest(getRequestURLPath(), obj);
+			    				}
+							}
+		    			} catch (ECHOException e) {
+		    				String method = (refid == null) ? "POST" : "PUT";
+		    				if(!ECHOOfflineQueue.offer(ECHODataObject.this, method, obj, fMultipart, e)) throw e;
+		    			}
 						
-						refid = data.optString("refid");
-						copyData(data);
+		    			if(data != null) {
+		    				refid = data.optString("refid");
+		    				copyData(data);
+		    				ECHOLocalStore.cache(ECHODataObject.this);
+		    				if(ECHODataObject.this instanceof TreeNodeable) ECHOTreeCache.invalidateInstance(getClient().getSecureDomain(), instanceId); // a node may have moved
+		    			}
 		    		}
 		    		
 				} catch (ECHOException e) {
@@ -308,7 +399,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		final Handler handler = new Handler();
 
 		// Get ready a background thread
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = getClient().getExecutor();
 	    Callable<Object> communictor = new Callable<Object>() {
 
 	    	@Override
@@ -319,10 +410,17 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 				try {
 					
 		    		synchronized (lock) {	
-						data = ECHOQuery.deleteRequest(getRequestURLPath());
+		    			String deletedRefid = refid;
+		    			try {
+		    				data = getClient().deleteRequest(getRequestURLPath());
+		    				ECHOLocalStore.evict(getClient(), instanceId, deletedRefid);
+		    				if(ECHODataObject.this instanceof TreeNodeable) ECHOTreeCache.invalidateInstance(getClient().getSecureDomain(), instanceId);
+		    			} catch (ECHOException e) {
+		    				if(!ECHOOfflineQueue.offer(ECHODataObject.this, "DELETE", null, false, e)) throw e;
+		    			}
 						
 						refid = null;
-						copyData(data);
+						if(data != null) copyData(data);
 		    		}
 					
 				} catch(ECHOException e) {
@@ -381,8 +479,26 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 * {@.ja このオブジェクトに設定されているACLを取得する。}
 	 */
 	public ECHOACLObject getACL() {
+		if(this.currentACL == null && this.currentACLSource != null) {
+			this.currentACL = new ECHOACLObject(this.currentACLSource);
+		}
 		return this.currentACL;
 	}
+
+
+	/**
+	 * {@.en Gets the current ACL of this object compiled for evaluating permissions locally.}
+	 * {@.ja このオブジェクトに設定されているACLを、ローカルで権限を判定できる形式で取得する。}
+	 *
+	 * @return {@.en the compiled ACL, or null if this object has no ACL}
+	 * 			{@.ja コンパイル済みのACL。ACLがない場合はnull}
+	 */
+	public ECHOCompiledACL getCompiledACL() {
+		if(this.compiledACL == null && this.currentACLSource != null) {
+			this.compiledACL = ECHOCompiledACL.compile(this.currentACLSource);
+		}
+		return this.compiledACL;
+	}
 	
 
 	/**
@@ -394,6 +510,21 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	}
 	
 
+	/**
+	 * {@.en Sets whether an update of an existing object sends only the fields changed since the last fetch or push.
+	 * 			JSONObject/JSONArray fields and the fields of `contents` are compared with the received values,
+	 * 			so changes made in place are detected too.
+	 * 			Disable this for resources which must be replaced entirely. Enabled by default.}
+	 * {@.ja 既存オブジェクトの更新時に、前回の取得・保存以降に変更されたフィールドのみを送信するかどうかを設定する。
+	 * 			JSONObject/JSONArrayのフィールドと`contents`の各フィールドは受信時の値と比較されるため、
+	 * 			直接変更した場合も検出されます。
+	 * 			全体を置き換える必要があるリソースでは無効にしてください。デフォルトは有効です。}
+	 */
+	public void setDeltaPushEnabled(boolean enabled) {
+		this.deltaPush = enabled;
+	}
+	
+
 	/**
 	 * Build a request contents object.
 	 */
@@ -401,17 +532,20 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		JSONObject obj = new JSONObject();
 
 		this.multipart = false; // initialize multipart
+		boolean delta = (this.refid != null && this.deltaPush); // send only dirty fields on update
 
 		try {
 
 			// acl
 			if(newACL != null) {
-				System.out.println(newACL.toJSONObject());
-				obj.put("acl", newACL.toJSONObject());
+				// omit the acl if it is unchanged on update
+				if(this.refid == null || !newACL.compile().equals(getCompiledACL())) {
+					obj.put("acl", newACL.toSharedJSONObject());
+				}
 				newACL = null;
 			}
 
-			Iterator<?> iter = this.data.keys();
+			Iterator<?> iter = fields().keys();
 			while (iter.hasNext()) {
 				String key = (String)iter.next();
 
@@ -423,37 +557,30 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 				// contents
 				} else if (key.equals("contents")) {
 
-					JSONObject contentsObj = this.data.optJSONObject("contents");
+					JSONObject contentsObj = fields().optJSONObject("contents");
 					if(contentsObj == null) continue; // skip
 
-					Iterator<?> iter2 = contentsObj.keys();
-					while (iter2.hasNext()) {
-						String key2 = (String) iter2.next();
-
-						Object elemObj = contentsObj.opt(key2);
-
-						if(elemObj instanceof JSONArray) { // array field
-							JSONArray array = (JSONArray)elemObj;
-
-							for (int key3=0; key3<array.length(); key3++) {
-								Object elemArrayObj = array.opt(key3);
-								array.put(key3, convertContentsInBuildRequest(elemArrayObj));
-							}
+					// send only the changed contents fields, unless the contents were replaced
+					boolean partial = (delta && !dirtyFields.contains(key));
+					JSONObject contentsReq = encodeContents(contentsObj, partial);
 
-						}else{ // not array field
+					Iterator<?> iter2 = contentsReq.keys();
+					while (iter2.hasNext()) {
+						if(containsLocalFile(contentsReq.opt((String) iter2.next()))) this.multipart = true;
+					}
 
-							contentsObj.put(key2, convertContentsInBuildRequest(elemObj));
+					if(!partial || contentsReq.length() > 0) obj.put("contents", contentsReq);
 
-						}
-					}
 
-					obj.put("contents", contentsObj);
+				// unchanged fields
+				} else if (delta && !isFieldChanged(key)) {
 
+					continue; // skip
 
 				// others
 				} else {
 
-					obj.put(key, this.data.opt(key));
+					obj.put(key, fields().opt(key));
 
 				}
 
@@ -467,16 +594,109 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		return obj;
 	}
 	
-	private Object convertContentsInBuildRequest(Object elemObj) {
+	/**
+	 * Encodes the contents into a new request object, leaving the contents unchanged.
+	 *
+	 * @param contentsObj the contents
+	 * @param onlyChanged if true, only the fields changed since they were received are included
+	 */
+	private JSONObject encodeContents(JSONObject contentsObj, boolean onlyChanged) throws JSONException {
+		JSONObject result = new JSONObject();
+
+		ECHOSchema schema = ECHOSchema.forInstance(this.instanceId);
+		ECHOLazyContents lazy = (contentsObj instanceof ECHOLazyContents) ? (ECHOLazyContents) contentsObj : null;
+
+		Iterator<?> iter = contentsObj.keys();
+		while (iter.hasNext()) {
+			String key = (String) iter.next();
+
+			if(lazy != null && !lazy.isConverted(key)) { // never accessed, so still as received
+				if(!onlyChanged) result.put(key, encodeRaw(lazy.optRaw(key)));
+				continue;
+			}
+
+			Object encoded = encodeContentsValue(schema, key, contentsObj.opt(key));
+			if(onlyChanged) {
+				Long received = (lazy != null) ? lazy.fingerprintOf(key) : contentsFingerprints.get(key);
+				Long current = fingerprint(encoded);
+				if(received != null && received.equals(current)) continue; // unchanged
+			}
+			result.put(key, encoded);
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Converts a contents value into the request representation.
+	 * An array is copied if any of its elements is converted.
+	 */
+	private static Object encodeContentsValue(ECHOSchema schema, String key, Object elemObj) {
+		ECHOSchema.Converter converter = (schema != null) ? schema.getConverter(key) : null;
+
+		if(converter instanceof ECHOSchema.ArrayConverter || !(elemObj instanceof JSONArray)) {
+			return (converter != null) ? converter.encode(elemObj) : convertContentsInBuildRequest(elemObj);
+		}
+
+		JSONArray array = (JSONArray) elemObj;
+		JSONArray encoded = null;
+		for (int i = 0; i < array.length(); i++) {
+			Object elem = array.opt(i);
+			Object encodedElem = (converter != null) ? converter.encode(elem) : convertContentsInBuildRequest(elem);
+
+			if(encoded == null && encodedElem != elem) {
+				encoded = new JSONArray();
+				for (int j = 0; j < i; j++) encoded.put(array.opt(j));
+			}
+			if(encoded != null) encoded.put(encodedElem);
+		}
+		return (encoded != null) ? encoded : array;
+	}
+
+
+	/**
+	 * Converts a received contents value into the request representation without materializing it,
+	 * with the same results as converting it and encoding it back.
+	 */
+	static Object encodeRaw(Object raw) {
+		if(!(raw instanceof JSONArray)) return encodeRawElement(raw);
+
+		JSONArray array = (JSONArray) raw;
+		JSONArray encoded = null;
+		for (int i = 0; i < array.length(); i++) {
+			Object elem = array.opt(i);
+			Object encodedElem = encodeRawElement(elem);
+
+			if(encoded == null && encodedElem != elem) {
+				encoded = new JSONArray();
+				for (int j = 0; j < i; j++) encoded.put(array.opt(j));
+			}
+			if(encoded != null) encoded.put(encodedElem);
+		}
+		return (encoded != null) ? encoded : array;
+	}
+
+	private static Object encodeRawElement(Object raw) {
+		if(!(raw instanceof JSONObject)) return raw;
+
+		JSONObject obj = (JSONObject) raw;
+		String type = obj.optString("_type");
+		if(type.equals("file")) { // _type = file, which has no local file
+			return JSONObject.NULL;
+		}else if(type.equals("instance")) { // _type = instance
+			String refid = obj.optString("refid");
+			return (refid.isEmpty()) ? JSONObject.NULL : refid;
+		}
+		return raw;
+	}
+
+	private static Object convertContentsInBuildRequest(Object elemObj) {
 	
 		if(elemObj instanceof ECHOFile) { // _type = file
 			
 			// if a local file is set, request by multipart/form-data
-			if (((ECHOFile)elemObj).getLocalBytes() != null) {
-				this.multipart = true;
-			} else {
-				return JSONObject.NULL;
-			}
+			if (((ECHOFile)elemObj).getLocalBytes() == null) return JSONObject.NULL;
 
 		}else if(elemObj instanceof ECHODataObject) { // _type = instance
 		
@@ -491,6 +711,95 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 
 		return elemObj;
 	}
+
+
+	/**
+	 * Returns whether an encoded contents value has a local file to be sent by multipart/form-data.
+	 */
+	private static boolean containsLocalFile(Object encoded) {
+		if(encoded instanceof ECHOFile) return true;
+
+		if(encoded instanceof JSONArray) {
+			JSONArray array = (JSONArray) encoded;
+			for (int i = 0; i < array.length(); i++) {
+				if(array.opt(i) instanceof ECHOFile) return true;
+			}
+		}
+		return false;
+	}
+
+
+	/* Begin change detection */
+
+	/**
+	 * Returns a 64-bit FNV-1a fingerprint of a value in the request representation,
+	 * or null if the value is always regarded as changed (i.e. it has a local file).
+	 */
+	static Long fingerprint(Object encoded) {
+		if(containsLocalFile(encoded)) return null;
+
+		String s;
+		if(encoded instanceof JSONObject || encoded instanceof JSONArray) {
+			s = encoded.toString();
+		}else if(encoded instanceof String) {
+			s = JSONObject.quote((String) encoded);
+		}else{
+			s = String.valueOf(encoded);
+		}
+
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return Long.valueOf(hash);
+	}
+
+
+	/**
+	 * Returns whether a top-level field (other than contents) differs from the received one.
+	 * Only containers can be changed without the setters.
+	 */
+	private boolean isFieldChanged(String name) {
+		if(dirtyFields.contains(name)) return true;
+
+		Object value = fields().opt(name);
+		if(!(value instanceof JSONObject) && !(value instanceof JSONArray)) return false;
+
+		Long received = fingerprints.get(name);
+		return received == null || !received.equals(fingerprint(value));
+	}
+
+
+	/**
+	 * Returns whether this object has modifications which are not pushed yet:
+	 * written fields, a new ACL, or containers and contents changed in place.
+	 */
+	boolean hasLocalChanges() {
+		if(!dirtyFields.isEmpty() || newACL != null) return true;
+
+		try {
+			Iterator<String> iter = fields().keys();
+			while (iter.hasNext()) {
+				String key = iter.next();
+
+				if(key.equals("created") || key.equals("modified")) continue;
+
+				if(key.equals("contents")) {
+					JSONObject contentsObj = fields().optJSONObject(key);
+					if(contentsObj != null && encodeContents(contentsObj, true).length() > 0) return true;
+				}else if(isFieldChanged(key)) {
+					return true;
+				}
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		return false;
+	}
+
+	/* End change detection */
 	
 
 	/**
@@ -502,7 +811,10 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		if(source == null) throw new IllegalArgumentException("Argument `source` must not be null.");
 
 		// Reset current all data
-		if(this.data.length() > 0) this.data = new JSONObject();
+		if(fields().length() > 0) setFields(newFieldStore());
+		this.dirtyFields.clear();
+		this.fingerprints.clear();
+		this.contentsFingerprints.clear();
 
 		// Copying input data
 		Iterator<?> iter = source.keys();
@@ -518,7 +830,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 					if(date == null) continue; // skip
 
 					try {
-						this.data.put(key, new ECHODate(date));
+						fields().put(key, new ECHODate(date));
 					} catch (ParseException ignored) {
 						// skip
 					}
@@ -527,7 +839,11 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 				} else if (key.equals("acl")) {
 
 					JSONObject aclObj = source.optJSONObject("acl");
-					if(aclObj != null) this.currentACL = new ECHOACLObject(aclObj);
+					if(aclObj != null) {
+						this.currentACL = null;
+						this.currentACLSource = aclObj;
+						this.compiledACL = null;
+					}
 
 				// contents
 				} else if(key.equals("contents")) {
@@ -535,13 +851,27 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 					JSONObject contentsObj = source.optJSONObject("contents");
 					if(contentsObj == null) continue; // skip
 					
+					ECHOSchema schema = ECHOSchema.forInstance(this.instanceId);
+
+					if(ECHO.isLazyContentsEnabled()) { // convert on first access
+						fields().put(key, new ECHOLazyContents(contentsObj, schema));
+						continue;
+					}
+
 					Iterator<?> iter2 = contentsObj.keys();
 					while (iter2.hasNext()) {
 						String key2 = (String) iter2.next();						
 						Object elemObj = contentsObj.opt(key2);
 						if(elemObj == null) continue;
+
+						contentsFingerprints.put(key2, fingerprint(encodeRaw(elemObj)));
 						
-						if(elemObj instanceof JSONArray) { // array field
+						ECHOSchema.Converter converter = (schema != null) ? schema.getConverter(key2) : null;
+						if(converter != null) { // declared field
+
+							contentsObj.put(key2, converter.decode(elemObj));
+
+						}else if(elemObj instanceof JSONArray) { // array field
 							JSONArray array = (JSONArray)elemObj;
 							
 							for (int key3=0; key3<array.length(); key3++) {
@@ -556,12 +886,14 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 						}
 					}
 
-					this.data.put(key, contentsObj);
+					fields().put(key, contentsObj);
 
 					// others
 				} else {
 
-					this.data.put(key, source.opt(key));
+					Object value = source.opt(key);
+					if(value instanceof JSONObject || value instanceof JSONArray) fingerprints.put(key, fingerprint(value));
+					fields().put(key, value);
 
 				}
 
@@ -570,9 +902,14 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 			}
 			
 		}
+
+		ECHOLocalStore.touched(this);
 	}
 
-	private Object convertContentsInCopyData(Object source) {
+	/**
+	 * Converts a raw `contents` element into an ECHOFile, an ECHODataObject or an ECHODate if it represents one.
+	 */
+	static Object convertContentsInCopyData(Object source) {
 		
 		if(source instanceof JSONObject) {
 		
@@ -587,11 +924,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 		
 		} else if (source instanceof String && ((String) source).length() == 19) { // (maybe) _type = date
 			
-			try {
-				return new ECHODate((String) source);
-			} catch (ParseException ignored) {
-				// Wrong date string
-			}
+			long time = ECHODateCodec.tryParse((String) source);
+			if(time != ECHODateCodec.INVALID) return new ECHODate(time);
 
 		}
 		
@@ -612,7 +946,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S accumulate(String name, Object value) throws ECHOException {
 		try {
-			data.accumulate(name, value);
+			fields().accumulate(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -626,7 +961,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public Object get(String name) throws ECHOException {
 		try {
-			return data.get(name);
+			return fields().get(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -638,7 +973,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public boolean getBoolean(String name) throws ECHOException {
 		try {
-			return data.getBoolean(name);
+			return fields().getBoolean(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -650,7 +985,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public double getDouble(String name) throws ECHOException {
 		try {
-			return data.getDouble(name);
+			return fields().getDouble(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -662,7 +997,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public int getInt(String name) throws ECHOException {
 		try {
-			return data.getInt(name);
+			return fields().getInt(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -674,7 +1009,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public JSONArray getJSONArray(String name) throws ECHOException {
 		try {
-			return data.getJSONArray(name);
+			return fields().getJSONArray(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -686,7 +1021,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public JSONObject getJSONObject(String name) throws ECHOException {
 		try {
-			return data.getJSONObject(name);
+			return fields().getJSONObject(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -698,7 +1033,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public long getLong(String name) throws ECHOException {
 		try {
-			return data.getLong(name);
+			return fields().getLong(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -710,7 +1045,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public String getString(String name) throws ECHOException {
 		try {
-			return data.getString(name);
+			return fields().getString(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -720,21 +1055,42 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 * Returns true if this object has a mapping for name. The mapping may be NULL.
 	 */
 	public boolean has(String name) {
-		return data.has(name);
+		return fields().has(name);
 	} 
 	
 	/**
 	 * Returns true if this object has no mapping for name or if it has a mapping whose value is NULL.
 	 */
 	public boolean isNull(String name) {
-		return data.isNull(name);
+		return fields().isNull(name);
 	} 
 	
 	/**
 	 * Returns an iterator of the String names in this object. The returned iterator supports remove, which will remove the corresponding mapping from this object. If this object is modified after the iterator is returned, the iterator's behavior is undefined. The order of the keys is undefined.
 	 */
 	public Iterator<String> keys() {
-		return data.keys();
+		final Iterator<String> iter = fields().keys();
+
+		return new Iterator<String>() {
+			private String current = null;
+
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+
+			@Override
+			public String next() {
+				current = iter.next();
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				iter.remove();
+				changed(current);
+			}
+		};
 	} 
 	
 	/**
@@ -742,105 +1098,105 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 * @throws ECHOException
 	 */
 	public int length() {
-		return data.length();
+		return fields().length();
 	} 
 	
 	/**
 	 * Returns an array containing the string names in this object. This method returns null if this object contains no mappings.
 	 */
 	public JSONArray names() {
-		return data.names();
+		return fields().names();
 	} 
 	
 	/**
 	 * Returns the value mapped by name, or null if no such mapping exists.
 	 */
 	public Object opt(String name) {
-		return data.opt(name);
+		return fields().opt(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a boolean or can be coerced to a boolean, or false otherwise.
 	 */
 	public boolean optBoolean(String name) {
-		return data.optBoolean(name);
+		return fields().optBoolean(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a boolean or can be coerced to a boolean, or fallback otherwise.
 	 */
 	public boolean optBoolean(String name, boolean fallback) {
-		return data.optBoolean(name, fallback);
+		return fields().optBoolean(name, fallback);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a double or can be coerced to a double, or fallback otherwise.
 	 */
 	public double optDouble(String name, double fallback) {
-		return data.optDouble(name, fallback);
+		return fields().optDouble(name, fallback);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a double or can be coerced to a double, or NaN otherwise.
 	 */
 	public double optDouble(String name) {
-		return data.optDouble(name);
+		return fields().optDouble(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is an int or can be coerced to an int, or fallback otherwise.
 	 */
 	public int optInt(String name, int fallback) {
-		return data.optInt(name, fallback);
+		return fields().optInt(name, fallback);
 	}  
 	
 	/**
 	 * Returns the value mapped by name if it exists and is an int or can be coerced to an int, or 0 otherwise.
 	 */
 	public int optInt(String name) {
-		return data.optInt(name);
+		return fields().optInt(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a JSONArray, or null otherwise.
 	 */
 	public JSONArray optJSONArray(String name) {
-		return data.optJSONArray(name);
+		return fields().optJSONArray(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a JSONObject, or null otherwise.
 	 */
 	public JSONObject optJSONObject(String name) {
-		return data.optJSONObject(name);
+		return fields().optJSONObject(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a long or can be coerced to a long, or 0 otherwise. Note that JSON represents numbers as doubles, so this is lossy; use strings to transfer numbers via JSON.
 	 */
 	public long optLong(String name) {
-		return data.optLong(name);
+		return fields().optLong(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists and is a long or can be coerced to a long, or fallback otherwise. Note that JSON represents numbers as doubles, so this is lossy; use strings to transfer numbers via JSON.
 	 */
 	public long optLong(String name, long fallback) {
-		return data.optLong(name, fallback);
+		return fields().optLong(name, fallback);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists, coercing it if necessary, or the empty string if no such mapping exists.
 	 */
 	public String optString(String name) {
-		return data.optString(name);
+		return fields().optString(name);
 	} 
 	
 	/**
 	 * Returns the value mapped by name if it exists, coercing it if necessary, or fallback if no such mapping exists.
 	 */
 	public String optString(String name, String fallback) {
-		return data.optString(name, fallback);
+		return fields().optString(name, fallback);
 	} 
 	
 	/**
@@ -850,7 +1206,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S put(String name, int value) throws ECHOException {
 		try {
-			data.put(name, value);
+			fields().put(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -865,7 +1222,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S put(String name, long value) throws ECHOException {
 		try {
-			data.put(name, value);
+			fields().put(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -880,7 +1238,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S put(String name, Object value) throws ECHOException {
 		try {
-			data.put(name, value);
+			fields().put(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -895,7 +1254,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S put(String name, boolean value) throws ECHOException {
 		try {
-			data.put(name, value);
+			fields().put(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -910,7 +1270,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S put(String name, double value) throws ECHOException {
 		try {
-			data.put(name, value);
+			fields().put(name, value);
+			changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -925,7 +1286,8 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	@SuppressWarnings("unchecked")
 	public S putOpt(String name, Object value) throws ECHOException {
 		try {
-			data.putOpt(name, value);
+			fields().putOpt(name, value);
+			if(name != null && value != null) changed(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -938,7 +1300,9 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 * @return the value previously mapped by name, or null if there was no such mapping.
 	 */
 	public Object remove(String name) {
-		return data.remove(name);
+		Object value = fields().remove(name);
+		changed(name);
+		return value;
 	} 
 	
 	/**
@@ -947,7 +1311,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public JSONArray toJSONArray(JSONArray name) throws ECHOException {
 		try {
-			return data.toJSONArray(name);
+			return fields().toJSONArray(name);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
@@ -961,7 +1325,7 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 * @throws ECHOException 
 	 */
 	public String toString() {
-		return data.toString();
+		return fields().toString();
 	} 
 
 	/**
@@ -980,12 +1344,27 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
 	 */
 	public String toString(int indentSpaces) throws ECHOException {
 		try {
-			return data.toString(indentSpaces);
+			return fields().toString(indentSpaces);
 		} catch (JSONException e) {
 			throw new ECHOException(e);
 		}
 	} 
 	
+	/**
+	 * Returns the value mapped by name.
+	 */
+	Object peek(String name) {
+		return fields().opt(name);
+	}
+	
+	/**
+	 * Records a field written through the setters.
+	 */
+	private void changed(String name) {
+		dirtyFields.add(name);
+		ECHOLocalStore.touched(this);
+	}
+	
 	/* End JSONObject operators */
 
 	
@@ -1000,32 +1379,53 @@ public abstract class ECHODataObject<S extends ECHODataObject<S>> extends ECHOOb
     	out.writeString(this.resourceType);
     	out.writeString(this.refid);
 
-    	out.writeString((data != null) ? data.toString() : "");
-        out.writeString((newACL != null) ? newACL.toString() : "");
-        out.writeString((currentACL != null) ? currentACL.toString() : "");
-        out.writeString((multipart != null) ? multipart.toString() : "");
+    	ECHOParcelCodec.writeFieldStore(out, fields(), flags);
+
+    	out.writeByte((byte) ((newACL != null) ? 1 : 0));
+    	if(newACL != null) newACL.writeToParcel(out);
+    	ECHOACLObject acl = getACL();
+    	out.writeByte((byte) ((acl != null) ? 1 : 0));
+    	if(acl != null) acl.writeToParcel(out);
+
+    	out.writeByte((byte) ((multipart == null) ? -1 : (multipart ? 1 : 0)));
+
+    	out.writeStringArray(dirtyFields.toArray(new String[dirtyFields.size()]));
+    	writeFingerprints(out, fingerprints);
+    	writeFingerprints(out, contentsFingerprints);
+    	out.writeByte((byte) (deltaPush ? 1 : 0));
     }
     
-    @SuppressLint("UseValueOf")
 	protected ECHODataObject(Parcel in) {
     	this(in.readString(), in.readString(), in.readString());
     	
-    	try {
-    		String strData = in.readString();
-			if(!strData.isEmpty()) copyData(new JSONObject(strData));
-			
-			String strNewACL = in.readString();
-			if(!strNewACL.isEmpty()) newACL = new ECHOACLObject(new JSONObject());
-			
-			String strCurrentACL = in.readString();
-			if(!strCurrentACL.isEmpty()) currentACL = new ECHOACLObject(new JSONObject(strCurrentACL));
-		
-    	} catch (JSONException e) {
-			throw new RuntimeException(e);
-		}
-    	
-    	String strMultipart = in.readString();
-    	if (!strMultipart.isEmpty()) multipart = new Boolean(strMultipart);
+    	ECHOParcelCodec.readFieldStore(in, fields(), this.instanceId);
+
+    	if(in.readByte() != 0) newACL = new ECHOACLObject(in);
+    	if(in.readByte() != 0) {
+    		currentACL = new ECHOACLObject(in);
+    		compiledACL = currentACL.compile(); // before the application changes currentACL
+    	}
+
+    	byte bMultipart = in.readByte();
+    	if(bMultipart >= 0) multipart = Boolean.valueOf(bMultipart == 1);
+
+    	for (String name : in.createStringArray()) dirtyFields.add(name);
+    	readFingerprints(in, fingerprints);
+    	readFingerprints(in, contentsFingerprints);
+    	deltaPush = (in.readByte() != 0);
+    }
+
+    private static void writeFingerprints(Parcel out, Map<String, Long> map) {
+    	out.writeInt(map.size());
+    	for (Map.Entry<String, Long> entry : map.entrySet()) {
+    		out.writeString(entry.getKey());
+    		out.writeLong(entry.getValue().longValue());
+    	}
+    }
+
+    private static void readFingerprints(Parcel in, Map<String, Long> map) {
+    	int size = in.readInt();
+    	for (int i = 0; i < size; i++) map.put(in.readString(), Long.valueOf(in.readLong()));
     }
     
  	/* End Parcel methods */
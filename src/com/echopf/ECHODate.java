@@ -16,12 +16,8 @@
 
 package com.echopf;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
 
 
 /**
@@ -46,16 +42,16 @@ public class ECHODate extends Date {
 	 * @param s an acceptable date string for the API (e.g. "2015-02-20 00:00:00")
 	 */
 	public ECHODate(String s) throws ParseException {
-		super();
+		super(ECHODateCodec.parse(s));
+	}
+
 
-		DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-		
-		try {
-			setTime(sdf.parse(s).getTime());
-		} catch (ParseException e) {
-			throw e;
-		}
+	/**
+	 * Constructs a new ECHODate with epoch milliseconds.
+	 * @param time the milliseconds since January 1, 1970, 00:00:00 GMT
+	 */
+	ECHODate(long time) {
+		super(time);
 	}
 
 	
@@ -65,11 +61,7 @@ public class ECHODate extends Date {
 	 * @return the formatted date string for the ECHO API.
 	 */
 	public String toStringForECHO() {
-
-		DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-		
-		return sdf.format(this);
+		return ECHODateCodec.format(getTime());
 	}
 }
 
@@ -0,0 +1,246 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * An ECHODateCodec converts between epoch milliseconds and the date string of the API
+ * ("yyyy-MM-dd HH:mm:ss" in GMT) without allocating formatters.
+ *
+ * Dates in the proleptic Gregorian calendar from 1583 to 9999 are handled by hand.
+ * Other dates and out-of-range fields are delegated to a per-thread SimpleDateFormat by
+ * {@link #parse(String)} and {@link #tryParse(String)}, so that their results are identical to
+ * the SimpleDateFormat ones; {@link #parse(String)} also delegates non-canonical strings.
+ * {@link #decode(String)} alone is strict.
+ */
+final class ECHODateCodec {
+
+	/** A value returned by {@link #decode(String)} if the string is not a canonical date string. */
+	static final long INVALID = Long.MIN_VALUE;
+
+	private static final int LENGTH = 19;
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	/** 1583-01-01 00:00:00 GMT, the first date after the Julian-Gregorian cutover of SimpleDateFormat. */
+	private static final long MIN_MILLIS = -12212553600000L;
+
+	/** 10000-01-01 00:00:00 GMT */
+	private static final long MAX_MILLIS = 253402300800000L;
+
+	private static final ThreadLocal<DateFormat> FALLBACK = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+			sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return sdf;
+		}
+	};
+
+
+	/**
+	 * Disable constructor since this is an utility class.
+	 */
+	private ECHODateCodec() {}
+
+
+	/**
+	 * Returns whether the string has the shape of a date string of the API.
+	 * This is a cheap check which does not validate the ranges of the fields.
+	 */
+	static boolean matches(String s) {
+		if(s == null || s.length() != LENGTH) return false;
+
+		for (int i = 0; i < LENGTH; i++) {
+			char c = s.charAt(i);
+			switch (i) {
+				case 4: case 7:
+					if(c != '-') return false;
+					break;
+				case 10:
+					if(c != ' ') return false;
+					break;
+				case 13: case 16:
+					if(c != ':') return false;
+					break;
+				default:
+					if(c < '0' || c > '9') return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Decodes a canonical date string without throwing.
+	 *
+	 * @param s a date string (e.g. "2015-02-20 00:00:00")
+	 * @return the epoch milliseconds, or {@link #INVALID} if the string is not canonical
+	 * 		or out of the range handled by hand
+	 */
+	static long decode(String s) {
+		if(!matches(s)) return INVALID;
+
+		int year = digits(s, 0, 4);
+		int month = digits(s, 5, 2);
+		int day = digits(s, 8, 2);
+		int hour = digits(s, 11, 2);
+		int minute = digits(s, 14, 2);
+		int second = digits(s, 17, 2);
+
+		if(year < 1583) return INVALID;
+		if(month < 1 || month > 12) return INVALID;
+		if(day < 1 || day > daysInMonth(year, month)) return INVALID;
+		if(hour > 23 || minute > 59 || second > 59) return INVALID;
+
+		long days = daysFromCivil(year, month, day);
+		return days * MILLIS_PER_DAY + (hour * 3600 + minute * 60 + second) * 1000L;
+	}
+
+
+	/**
+	 * Parses a date string of the API.
+	 *
+	 * @param s a date string (e.g. "2015-02-20 00:00:00")
+	 * @return the epoch milliseconds
+	 * @throws ParseException if the string cannot be parsed
+	 */
+	static long parse(String s) throws ParseException {
+		long time = decode(s);
+		if(time != INVALID) return time;
+
+		if(s == null) throw new ParseException("Unparseable date: null", 0);
+		return FALLBACK.get().parse(s).getTime();
+	}
+
+
+	/**
+	 * Parses a date-shaped string without throwing, as leniently as SimpleDateFormat.
+	 * Out-of-range fields roll over (e.g. "2015-02-30 00:00:00" is March 2),
+	 * which {@link #decode(String)} rejects. Strings without the shape of a date string
+	 * (see {@link #matches(String)}) are rejected at once, without SimpleDateFormat.
+	 *
+	 * @param s a date string (e.g. "2015-02-20 00:00:00")
+	 * @return the epoch milliseconds, or {@link #INVALID} if the string cannot be parsed
+	 */
+	static long tryParse(String s) {
+		if(!matches(s)) return INVALID; // ordinary text
+
+		long time = decode(s);
+		if(time != INVALID) return time;
+
+		try {
+			return FALLBACK.get().parse(s).getTime();
+		} catch (ParseException ignored) {
+			return INVALID;
+		}
+	}
+
+
+	/**
+	 * Formats epoch milliseconds into a date string of the API.
+	 *
+	 * @param time the epoch milliseconds
+	 * @return the formatted date string (e.g. "2015-02-20 00:00:00")
+	 */
+	static String format(long time) {
+		if(time < MIN_MILLIS || time >= MAX_MILLIS) return FALLBACK.get().format(new Date(time));
+
+		long days = floorDiv(time, MILLIS_PER_DAY);
+		int secondsOfDay = (int) ((time - days * MILLIS_PER_DAY) / 1000);
+
+		// civil from days
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = (mp < 10) ? mp + 3 : mp - 9;
+		int year = (int) (yoe + era * 400) + ((month <= 2) ? 1 : 0);
+
+		char[] buf = new char[LENGTH];
+		put(buf, 0, year, 4);
+		buf[4] = '-';
+		put(buf, 5, month, 2);
+		buf[7] = '-';
+		put(buf, 8, day, 2);
+		buf[10] = ' ';
+		put(buf, 11, secondsOfDay / 3600, 2);
+		buf[13] = ':';
+		put(buf, 14, (secondsOfDay / 60) % 60, 2);
+		buf[16] = ':';
+		put(buf, 17, secondsOfDay % 60, 2);
+
+		return new String(buf);
+	}
+
+
+	private static int digits(String s, int offset, int length) {
+		int value = 0;
+		for (int i = offset; i < offset + length; i++) {
+			value = value * 10 + (s.charAt(i) - '0');
+		}
+		return value;
+	}
+
+
+	private static void put(char[] buf, int offset, int value, int length) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+				return leap ? 29 : 28;
+			case 4: case 6: case 9: case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+
+	private static long daysFromCivil(int year, int month, int day) {
+		int y = (month <= 2) ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return (long) era * 146097 + doe - 719468;
+	}
+
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		if((x % y != 0) && ((x < 0) != (y < 0))) q--;
+		return q;
+	}
+}
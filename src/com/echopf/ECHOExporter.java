@@ -0,0 +1,571 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.Handler;
+
+
+/**
+ * {@.en An ECHOExporter exports all objects of a database or blog instance into a NDJSON file
+ * 		(one JSON object per line), optionally gzipped.
+ * 		Pages are fetched in a background thread with a bounded read-ahead and written as they arrive,
+ * 		so the memory use does not depend on the size of the instance.
+ * 		With a checkpoint file, an interrupted export resumes from the last written page.}
+ * {@.ja データベース・ブログインスタンスの全オブジェクトをNDJSONファイル（1行に1つのJSONオブジェクト）に
+ * 		エクスポートします（gzip圧縮も可能）。
+ * 		ページはバックグラウンドで先読み数を制限して取得され、到着順に書き出されるため、
+ * 		メモリ使用量はインスタンスの大きさに依存しません。
+ * 		チェックポイントファイルを指定すると、中断したエクスポートを最後に書き出したページから再開します。}
+ *
+ * <pre>
+ * ECHOExporter.forDatabase("instanceId")
+ * 		.setGzip(true)
+ * 		.setCheckpointFile(new File(dir, "export.checkpoint"))
+ * 		.export(new File(dir, "export.ndjson.gz"));
+ * </pre>
+ */
+public final class ECHOExporter {
+
+	private final ECHOClient client;
+	private final String instanceId;
+	private final String listKey;
+	private final String resourceType;
+
+	private JSONObject params = null;
+	private int pageSize = 100;
+	private int readAhead = 2;
+	private boolean gzip = false;
+	private File fileDirectory = null;
+	private File checkpointFile = null;
+	private int checkpointInterval = 1;
+
+
+	/* Begin constructors */
+
+	/**
+	 * {@.en Constructs a new ECHOExporter.}
+	 * {@.ja エクスポータを生成します。}
+	 *
+	 * @param client
+	 * 		{@.en the client to send the requests}
+	 * 		{@.ja リクエストを送信するクライアント}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the exporting instance}
+	 * 		{@.ja エクスポートするインスタンスのID}
+	 * @param listKey
+	 * 		{@.en the key of the object list in the responses (e.g. "records")}
+	 * 		{@.ja レスポンスにおけるオブジェクトリストのキー}
+	 * @param resourceType
+	 * 		{@.en the type of the list resource (e.g. "archive")}
+	 * 		{@.ja リストリソースの種類}
+	 */
+	public ECHOExporter(ECHOClient client, String instanceId, String listKey, String resourceType) {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+		if(listKey == null) throw new IllegalArgumentException("argument `listKey` must not be null.");
+		if(resourceType == null) throw new IllegalArgumentException("argument `resourceType` must not be null.");
+
+		this.client = client;
+		this.instanceId = instanceId;
+		this.listKey = listKey;
+		this.resourceType = resourceType;
+	}
+
+
+	/**
+	 * {@.en Constructs an exporter of the records of a database instance in the current client.}
+	 * {@.ja カレントクライアントにおけるデータベースインスタンスのレコードのエクスポータを生成します。}
+	 */
+	public static ECHOExporter forDatabase(String instanceId) {
+		return new ECHOExporter(ECHOClient.current(), instanceId, "records", "archive");
+	}
+
+
+	/**
+	 * {@.en Constructs an exporter of the entries of a blog instance in the current client.}
+	 * {@.ja カレントクライアントにおけるブログインスタンスの記事のエクスポータを生成します。}
+	 */
+	public static ECHOExporter forBlog(String instanceId) {
+		return new ECHOExporter(ECHOClient.current(), instanceId, "entries", "archive");
+	}
+
+	/* End constructors */
+
+
+	/* Begin settings */
+
+	/**
+	 * {@.en Sets the list control parameters to filter and sort the objects.
+	 * 		`page` and `limit` are overridden. If `order` is not set, the objects are exported
+	 * 		in the ascending order of `created`, so that new objects do not shift the pages.}
+	 * {@.ja オブジェクトを絞り込み・並び替えるリスト制御パラメータをセットします。
+	 * 		`page`と`limit`は上書きされます。`order`が指定されていない場合は`created`の昇順でエクスポートします。}
+	 */
+	public ECHOExporter setParams(JSONObject params) {
+		this.params = params;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the number of the objects per page (100 by default).}
+	 * {@.ja 1ページあたりのオブジェクト数をセットします（デフォルトは100）。}
+	 */
+	public ECHOExporter setPageSize(int pageSize) {
+		if(pageSize < 1) throw new IllegalArgumentException("argument `pageSize` must be positive.");
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the maximum number of the pages fetched ahead of the writing (2 by default).}
+	 * {@.ja 書き出しに先行して取得するページ数の上限をセットします（デフォルトは2）。}
+	 */
+	public ECHOExporter setReadAhead(int readAhead) {
+		if(readAhead < 1) throw new IllegalArgumentException("argument `readAhead` must be positive.");
+		this.readAhead = readAhead;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets whether the output is gzipped.}
+	 * {@.ja 出力をgzip圧縮するかどうかをセットします。}
+	 */
+	public ECHOExporter setGzip(boolean gzip) {
+		this.gzip = gzip;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the directory to download the files of the objects into.
+	 * 		Each file element gets `local_path`, the path relative to the directory.
+	 * 		If null (by default), files are exported as their URL references only.}
+	 * {@.ja オブジェクトのファイルをダウンロードするディレクトリをセットします。
+	 * 		各ファイル要素にはディレクトリからの相対パス`local_path`が付与されます。
+	 * 		null（デフォルト）の場合、ファイルはURLの参照としてのみエクスポートされます。}
+	 */
+	public ECHOExporter setFileDirectory(File fileDirectory) {
+		this.fileDirectory = fileDirectory;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the checkpoint file to resume an interrupted export. It is deleted when the export completes.}
+	 * {@.ja 中断したエクスポートを再開するためのチェックポイントファイルをセットします。エクスポート完了時に削除されます。}
+	 */
+	public ECHOExporter setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the number of the pages between checkpoints (1 by default).}
+	 * {@.ja チェックポイントを記録する間隔（ページ数）をセットします（デフォルトは1）。}
+	 */
+	public ECHOExporter setCheckpointInterval(int pages) {
+		if(pages < 1) throw new IllegalArgumentException("argument `pages` must be positive.");
+		this.checkpointInterval = pages;
+		return this;
+	}
+
+	/* End settings */
+
+
+	/**
+	 * {@.en Exports the objects by synchronous communication.}
+	 * {@.ja 同期通信によりオブジェクトをエクスポートします。}
+	 *
+	 * @param output
+	 * 		{@.en the output file}
+	 * 		{@.ja 出力ファイル}
+	 * @return {@.en the total number of the exported objects}
+	 * 			{@.ja エクスポートしたオブジェクトの総数}
+	 * @throws ECHOException
+	 */
+	public long export(File output) throws ECHOException {
+		if(output == null) throw new IllegalArgumentException("argument `output` must not be null.");
+
+		try {
+			return run(output);
+		} catch (IOException e) {
+			throw new ECHOException(e);
+		} catch (JSONException e) {
+			throw new ECHOException(e);
+		}
+	}
+
+
+	/**
+	 * {@.en Exports the objects in a background thread.}
+	 * {@.ja 非同期通信によりオブジェクトをエクスポートします。完了後に指定したコールバックをメインスレッドで実行します。}
+	 *
+	 * @param output
+	 * 		{@.en the output file}
+	 * 		{@.ja 出力ファイル}
+	 * @param callback
+	 * 		{@.en invoked with the number of the exported objects after the export is completed}
+	 * 		{@.ja 完了後にエクスポートしたオブジェクト数と共に実行するコールバック}
+	 */
+	public void exportInBackground(final File output, final CountCallback callback) {
+		if(output == null) throw new IllegalArgumentException("argument `output` must not be null.");
+
+		final Handler handler = new Handler();
+		client.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				ECHOException exception = null;
+				long count = 0;
+
+				try {
+					count = export(output);
+				} catch (ECHOException e) {
+					exception = e;
+				} catch (Exception e) {
+					exception = new ECHOException(e);
+				}
+
+				if(callback == null) return;
+
+				final ECHOException fException = exception;
+				final int fCount = (int) Math.min(count, Integer.MAX_VALUE);
+				handler.post(new Runnable() {
+					@Override
+					public void run() {
+						callback.done(fCount, fException);
+					}
+				});
+			}
+		});
+	}
+
+
+	/* Begin pipeline */
+
+	/**
+	 * Runs the export: a producer fetches the pages into a bounded queue, and the calling thread writes them.
+	 */
+	private long run(File output) throws ECHOException, IOException, JSONException {
+		int startPage = 1;
+		long count = 0;
+		long length = 0;
+
+		// Resume from the checkpoint
+		JSONObject checkpoint = readCheckpoint();
+		if(checkpoint != null && output.exists()) {
+			startPage = checkpoint.getInt("page") + 1;
+			count = checkpoint.getLong("count");
+			length = checkpoint.getLong("length");
+
+			RandomAccessFile raf = new RandomAccessFile(output, "rw");
+			try {
+				raf.setLength(length); // drop the lines written after the checkpoint
+			} finally {
+				raf.close();
+			}
+		}
+
+		final BlockingQueue<Page> queue = new ArrayBlockingQueue<Page>(readAhead);
+		final Producer producer = new Producer(startPage, queue);
+		Future<?> future = client.getExecutor().submit(producer);
+
+		FileOutputStream file = new FileOutputStream(output, length > 0);
+		OutputStream out = null;
+
+		try {
+			out = open(file);
+			int pagesSinceCheckpoint = 0;
+
+			while (true) {
+				Page page;
+				try {
+					page = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ECHOException(e);
+				}
+
+				if(page.error != null) throw page.error;
+
+				for (int i = 0; i < page.items.length(); i++) {
+					JSONObject item = page.items.optJSONObject(i);
+					if(item == null) continue;
+
+					if(fileDirectory != null) downloadFiles(item, item.optString("refid"), new int[] { 0 });
+					out.write(item.toString().getBytes("UTF-8"));
+					out.write('\n');
+					count++;
+				}
+
+				if(page.last) break;
+
+				if(checkpointFile != null && ++pagesSinceCheckpoint >= checkpointInterval) {
+					finish(out);
+					writeCheckpoint(page.number, count, file.getChannel().position());
+					out = open(file);
+					pagesSinceCheckpoint = 0;
+				}
+			}
+
+			finish(out);
+			out = null;
+		} finally {
+			producer.stop();
+			future.cancel(true);
+			if(out != null) {
+				try { finish(out); } catch (IOException ignored) { /* skip */ }
+			}
+			file.close();
+		}
+
+		if(checkpointFile != null) checkpointFile.delete(); // completed
+		return count;
+	}
+
+
+	/**
+	 * Opens the stream of a segment of the output. Each gzipped segment is a gzip member,
+	 * so that the output can be truncated at a checkpoint and appended.
+	 */
+	private OutputStream open(FileOutputStream file) throws IOException {
+		OutputStream unclosable = new FilterOutputStream(file) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+
+		OutputStream out = new BufferedOutputStream(unclosable, 64 * 1024);
+		return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+	}
+
+
+	/**
+	 * Finishes a segment and flushes it to the file.
+	 */
+	private static void finish(OutputStream out) throws IOException {
+		out.close(); // the file itself is not closed
+	}
+
+
+	/**
+	 * Downloads the files in an object into the file directory, adding their `local_path`.
+	 */
+	private void downloadFiles(Object value, String refid, int[] counter) throws ECHOException, IOException, JSONException {
+		if(value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			for (int i = 0; i < array.length(); i++) downloadFiles(array.opt(i), refid, counter);
+			return;
+		}
+
+		if(!(value instanceof JSONObject)) return;
+		JSONObject obj = (JSONObject) value;
+
+		if(obj.optString("_type").equals("file")) {
+			String urlPath = obj.optString("url_path");
+			if(urlPath.length() < 2) return;
+
+			String name = obj.optString("name").replaceAll("[^A-Za-z0-9._-]", "_");
+			String localPath = refid + "/" + (counter[0]++) + "_" + name;
+			File dest = new File(fileDirectory, localPath);
+
+			if(!dest.exists() || dest.length() == 0) { // not downloaded before the interruption
+				dest.getParentFile().mkdirs();
+				download(urlPath.substring(1), dest);
+			}
+			obj.put("local_path", localPath);
+			return;
+		}
+
+		Iterator<?> iter = obj.keys();
+		while (iter.hasNext()) downloadFiles(obj.opt((String) iter.next()), refid, counter);
+	}
+
+
+	private void download(String path, File dest) throws ECHOException, IOException {
+		InputStream in = client.requestRaw(path, "GET", null, false);
+		if(in == null) return;
+
+		File part = new File(dest.getPath() + ".part");
+		OutputStream out = new FileOutputStream(part);
+		try {
+			byte[] buffer = new byte[16 * 1024];
+			int n;
+			while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+		} finally {
+			out.close();
+			in.close();
+		}
+
+		if(!part.renameTo(dest)) throw new IOException("Cannot rename " + part + " to " + dest);
+	}
+
+	/* End pipeline */
+
+
+	/* Begin checkpoint */
+
+	private JSONObject readCheckpoint() throws IOException {
+		if(checkpointFile == null || !checkpointFile.exists()) return null;
+
+		Reader reader = new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8");
+		try {
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[256];
+			int n;
+			while ((n = reader.read(buffer)) != -1) sb.append(buffer, 0, n);
+			return new JSONObject(sb.toString());
+		} catch (JSONException e) {
+			return null; // broken, so start over
+		} finally {
+			reader.close();
+		}
+	}
+
+
+	private void writeCheckpoint(int page, long count, long length) throws IOException, JSONException {
+		JSONObject checkpoint = new JSONObject();
+		checkpoint.put("page", page);
+		checkpoint.put("count", count);
+		checkpoint.put("length", length);
+
+		File tmp = new File(checkpointFile.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(checkpoint.toString().getBytes("UTF-8"));
+			out.flush();
+			((FileOutputStream) out).getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		if(!tmp.renameTo(checkpointFile)) {
+			checkpointFile.delete();
+			if(!tmp.renameTo(checkpointFile)) throw new IOException("Cannot write the checkpoint " + checkpointFile);
+		}
+	}
+
+	/* End checkpoint */
+
+
+	/**
+	 * A Page is a fetched page, or an error which stopped the fetching.
+	 */
+	private static final class Page {
+		final int number;
+		final JSONArray items;
+		final boolean last;
+		final ECHOException error;
+
+		Page(int number, JSONArray items, boolean last, ECHOException error) {
+			this.number = number;
+			this.items = items;
+			this.last = last;
+			this.error = error;
+		}
+	}
+
+
+	/**
+	 * A Producer fetches pages in order into the bounded queue.
+	 */
+	private final class Producer implements Callable<Void> {
+		private final int startPage;
+		private final BlockingQueue<Page> queue;
+		private volatile boolean stopped = false;
+
+		Producer(int startPage, BlockingQueue<Page> queue) {
+			this.startPage = startPage;
+			this.queue = queue;
+		}
+
+		void stop() {
+			this.stopped = true;
+		}
+
+		@Override
+		public Void call() {
+			try {
+				JSONObject query = (params != null) ? new JSONObject(params.toString()) : new JSONObject();
+				if(!query.has("order")) {
+					query.put("order", "created");
+					query.put("asc", 1);
+				}
+				query.put("limit", pageSize);
+
+				for (int number = startPage; !stopped; number++) {
+					query.put("page", number);
+					JSONObject response = client.getRequest(instanceId + "/" + resourceType, query);
+
+					JSONArray items = response.optJSONArray(listKey);
+					if(items == null) items = new JSONArray();
+					JSONObject paginate = response.optJSONObject("paginate");
+					boolean last = items.length() == 0 || paginate == null
+							|| paginate.optInt("nextPage") == 0 || number >= paginate.optInt("pageCount");
+
+					if(!put(new Page(number, items, last, null)) || last) break;
+				}
+			} catch (ECHOException e) {
+				put(new Page(0, null, true, e));
+			} catch (Exception e) {
+				put(new Page(0, null, true, new ECHOException(e)));
+			}
+			return null;
+		}
+
+		/**
+		 * Puts a page, waiting for a free slot unless the export is stopped.
+		 */
+		private boolean put(Page page) {
+			try {
+				while (!stopped) {
+					if(queue.offer(page, 100, TimeUnit.MILLISECONDS)) return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+	}
+}
@@ -32,20 +32,37 @@ import android.support.v4.app.NotificationCompat;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
  *  A ECHOGcmListenerService is GCM push notification receiver class. 
+ *
+ *  If the manifest meta-data `com.echopf.push.coalesce_window` is set (in milliseconds),
+ *  the messages received within the window are merged into one inbox-style notification,
+ *  which is updated as each message arrives. The summary line can be set by
+ *  `com.echopf.push.coalesced_summary` (a format taking the number of messages).
+ *
+ *  Data messages carrying `instance_id` invalidate the local caches instead (see {@link ECHOCacheInvalidator}).
  */
 public class ECHOFcmListenerService extends FirebaseMessagingService {
 	
-	private String NOTIFY_ONLY_LATEST_KEY = "com.echopf.push.notify_only_latest";
-	private String NOTIFICATION_ICON_KEY = "com.echopf.push.notification_icon";
-	private String PUSH_OPEN_ACTIVITY_KEY = "com.echopf.push.open_activity";
+	private static final String NOTIFY_ONLY_LATEST_KEY = "com.echopf.push.notify_only_latest";
+	private static final String NOTIFICATION_ICON_KEY = "com.echopf.push.notification_icon";
+	private static final String PUSH_OPEN_ACTIVITY_KEY = "com.echopf.push.open_activity";
+	private static final String COALESCE_WINDOW_KEY = "com.echopf.push.coalesce_window";
+	private static final String COALESCED_SUMMARY_KEY = "com.echopf.push.coalesced_summary";
+
+	private static final int COALESCED_NOTIFICATION_ID = 0x4543484f; // "ECHO"
+
+	private static volatile AppMetadata metadata = null;
+
+	private static final Coalescer<Bundle> coalescer = new Coalescer<Bundle>(Coalescer.MAX_LINES);
 	
 	@Override
     public void onMessageReceived(RemoteMessage message){
-        String from = message.getFrom();
         Map<String, String> payload = message.getData();
 
         Bundle data = new Bundle();
@@ -54,18 +71,27 @@ public class ECHOFcmListenerService extends FirebaseMessagingService {
         }
 
 
-        if (!data.containsKey("message") && !data.containsKey("title")) return;
+        if (!data.containsKey("message") && !data.containsKey("title")) {
+        	ECHOCacheInvalidator.offer(payload); // a data message
+        	return;
+        }
+
+        AppMetadata meta = getMetadata(this);
+
+        // coalesce a burst of messages
+        if (meta.coalesceWindow > 0) {
+        	Coalescer.Burst<Bundle> burst = coalescer.add(data, System.currentTimeMillis(), meta.coalesceWindow);
+        	NotificationCompat.Builder builder = (burst.count == 1)
+        			? getNotificationBuilder(data)
+        			: getCoalescedNotificationBuilder(burst.latest, burst.count);
+
+        	NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        	notificationManager.notify(COALESCED_NOTIFICATION_ID, builder.build());
+        	return;
+        }
 
-    	// get ApplicationInfo
-        ApplicationInfo appInfo = null;
-        try {
-			appInfo = getPackageManager().getApplicationInfo(getPackageName(), PackageManager.GET_META_DATA);
-		} catch (NameNotFoundException e) {
-			throw new RuntimeException(e);
-		}
-        
         // make notification id
-        int id = (appInfo.metaData.getBoolean(NOTIFY_ONLY_LATEST_KEY, false)) ? 0:(int)System.currentTimeMillis();
+        int id = (meta.notifyOnlyLatest) ? 0:(int)System.currentTimeMillis();
 
         NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
 		NotificationCompat.Builder builder = getNotificationBuilder(data);
@@ -80,50 +106,206 @@ public class ECHOFcmListenerService extends FirebaseMessagingService {
 	 */
     public NotificationCompat.Builder getNotificationBuilder(Bundle data) {
     	NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(this).setAutoCancel(true);
-    	
-    	// get ApplicationInfo
-        ApplicationInfo appInfo = null; String appName = null;
-        try {
-			appInfo = getPackageManager().getApplicationInfo(getPackageName(), PackageManager.GET_META_DATA);
-	        appName = getPackageManager().getApplicationLabel(getPackageManager().getApplicationInfo(getPackageName(), 0)).toString();
-		} catch (NameNotFoundException e) {
-			throw new RuntimeException(e);
-		}
+    	AppMetadata meta = getMetadata(this);
         
         // set title
-        String title = (data.getString("title") != null) ? data.getString("title"):appName;
+        String title = (data.getString("title") != null) ? data.getString("title"):meta.appName;
         notificationBuilder.setContentTitle(title);
         
         // set message
         if (data.getString("message") != null) 
         	notificationBuilder.setContentText(data.getString("message"));
 
+        setCommonAttributes(notificationBuilder, meta, data);
+        return notificationBuilder;
+    }
+
+
+	/**
+	 * Sets the layouts of a notification merging messages.
+	 * @param messages the latest merged messages in the received order
+	 * @param count the number of the merged messages, including those not in `messages`
+	 * @return NotificationCompat.Builder
+	 */
+    public NotificationCompat.Builder getCoalescedNotificationBuilder(List<Bundle> messages, int count) {
+    	NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(this).setAutoCancel(true);
+    	AppMetadata meta = getMetadata(this);
+
+    	String summary = String.format(meta.coalescedSummary, count);
+    	NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+    			.setBigContentTitle(meta.appName)
+    			.setSummaryText(summary);
+
+    	for (Bundle data : messages) {
+    		String title = data.getString("title");
+    		String message = data.getString("message");
+    		if (title != null && message != null) {
+    			style.addLine(title + ": " + message);
+    		} else {
+    			style.addLine((title != null) ? title : message);
+    		}
+    	}
+
+    	notificationBuilder.setContentTitle(meta.appName)
+    			.setContentText(summary)
+    			.setNumber(count)
+    			.setStyle(style);
+
+    	// the content intent opens the latest message
+    	setCommonAttributes(notificationBuilder, meta, messages.get(messages.size() - 1));
+    	return notificationBuilder;
+    }
+
+
+    /**
+     * Sets the icon, the sound and the content intent of a notification.
+     */
+    private void setCommonAttributes(NotificationCompat.Builder notificationBuilder, AppMetadata meta, Bundle data) {
+
         // set icon
-        int manifestIco = appInfo.metaData.getInt(NOTIFICATION_ICON_KEY);
-        int icon = (manifestIco != 0) ? manifestIco:appInfo.icon;
-        notificationBuilder.setSmallIcon(icon);
+        notificationBuilder.setSmallIcon(meta.icon);
 
         // set sound
         Uri defaultSoundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
         notificationBuilder.setSound(defaultSoundUri);
         
         // set content intent
-        String activity = appInfo.metaData.getString(PUSH_OPEN_ACTIVITY_KEY);
-        if(activity != null) {
-        	
-			try {
-				Intent intent = new Intent(this, Class.forName(activity))
-						.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP)
-						.setComponent(new ComponentName(appInfo.packageName, activity))
-						.putExtras(data);
-	            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_CANCEL_CURRENT);
-	            notificationBuilder.setContentIntent(pendingIntent);
-			} catch (ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
-            
+        if(meta.activityClass != null) {
+			Intent intent = new Intent(this, meta.activityClass)
+					.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP)
+					.setComponent(new ComponentName(meta.packageName, meta.activityName))
+					.putExtras(data);
+            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_CANCEL_CURRENT);
+            notificationBuilder.setContentIntent(pendingIntent);
         }
-        
-        return notificationBuilder;
+    }
+
+
+    /**
+     * Gets the manifest metadata of the application, which is loaded once per process.
+     */
+    static AppMetadata getMetadata(Context context) {
+    	AppMetadata meta = metadata;
+    	if (meta == null) {
+    		synchronized (ECHOFcmListenerService.class) {
+    			meta = metadata;
+    			if (meta == null) {
+    				meta = new AppMetadata(context);
+    				metadata = meta;
+    			}
+    		}
+    	}
+    	return meta;
+    }
+
+
+    /**
+     * Discards the cached manifest metadata (e.g. between tests).
+     */
+    static void clearMetadata() {
+    	metadata = null;
+    }
+
+
+    /**
+     * An AppMetadata holds the manifest metadata, the icon, the label and the activity class of the application.
+     */
+    static final class AppMetadata {
+    	final boolean notifyOnlyLatest;
+    	final int coalesceWindow;
+    	final String coalescedSummary;
+    	final int icon;
+    	final String appName;
+    	final String packageName;
+    	final String activityName;
+    	final Class<?> activityClass;
+
+    	AppMetadata(Context context) {
+    		PackageManager pm = context.getPackageManager();
+
+        	// get ApplicationInfo
+            ApplicationInfo appInfo = null;
+            try {
+    			appInfo = pm.getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+    		} catch (NameNotFoundException e) {
+    			throw new RuntimeException(e);
+    		}
+
+            Bundle metaData = (appInfo.metaData != null) ? appInfo.metaData : new Bundle();
+
+            this.notifyOnlyLatest = metaData.getBoolean(NOTIFY_ONLY_LATEST_KEY, false);
+            this.coalesceWindow = metaData.getInt(COALESCE_WINDOW_KEY, 0);
+            String summary = metaData.getString(COALESCED_SUMMARY_KEY);
+            if (summary == null) {
+            	summary = "ja".equals(Locale.getDefault().getLanguage()) ? "%d件の新着メッセージ" : "%d new messages";
+            }
+            this.coalescedSummary = summary;
+            this.appName = pm.getApplicationLabel(appInfo).toString();
+            this.packageName = appInfo.packageName;
+
+            int manifestIco = metaData.getInt(NOTIFICATION_ICON_KEY);
+            this.icon = (manifestIco != 0) ? manifestIco:appInfo.icon;
+
+            this.activityName = metaData.getString(PUSH_OPEN_ACTIVITY_KEY);
+            if (this.activityName != null) {
+            	try {
+            		this.activityClass = Class.forName(this.activityName);
+            	} catch (ClassNotFoundException e) {
+            		throw new RuntimeException(e);
+            	}
+            } else {
+            	this.activityClass = null;
+            }
+    	}
+    }
+
+
+    /**
+     * A Coalescer groups messages into bursts. A message starts a new burst when the window
+     * started by the first message of the current one has passed; it holds no Android state
+     * so that it can be tested on the JVM.
+     */
+    static final class Coalescer<T> {
+    	static final int MAX_LINES = 7; // the lines shown by an inbox-style notification
+
+    	private final int maxLines;
+    	private final List<T> latest = new ArrayList<T>();
+    	private int count = 0;
+    	private long startedAt = 0;
+
+    	Coalescer(int maxLines) {
+    		this.maxLines = maxLines;
+    	}
+
+    	/**
+    	 * Adds a message received at `now`.
+    	 * @return a snapshot of the burst to which the message has been added
+    	 */
+    	synchronized Burst<T> add(T message, long now, int window) {
+    		if (this.count == 0 || now - this.startedAt >= window || now < this.startedAt) {
+    			this.latest.clear();
+    			this.count = 0;
+    			this.startedAt = now;
+    		}
+
+    		if (this.latest.size() == this.maxLines) this.latest.remove(0);
+    		this.latest.add(message);
+    		this.count++;
+    		return new Burst<T>(new ArrayList<T>(this.latest), this.count);
+    	}
+
+
+    	/**
+    	 * A Burst is a snapshot of the latest messages and the number of messages in a burst.
+    	 */
+    	static final class Burst<T> {
+    		final List<T> latest;
+    		final int count;
+
+    		Burst(List<T> latest, int count) {
+    			this.latest = latest;
+    			this.count = count;
+    		}
+    	}
     }
 }
@@ -0,0 +1,398 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * An ECHOFieldStore holds the fields of an {@link ECHODataObject}.
+ * Its operators follow the semantics of {@link JSONObject}, including the coercion rules.
+ *
+ * Two implementations are provided: one backed by a JSONObject (the default),
+ * and a compact one which shares interned key shapes between objects of the same instance
+ * (see {@link ECHO#setCompactFieldStoreEnabled(boolean)}).
+ */
+public abstract class ECHOFieldStore {
+
+	/**
+	 * Creates a new empty store according to the current configuration.
+	 * @param shapeKey the key to share the key shapes (e.g. the instance ID and the resource type)
+	 */
+	static ECHOFieldStore create(String shapeKey) {
+		if(ECHO.isCompactFieldStoreEnabled()) return new ECHOCompactFieldStore(shapeKey);
+		return new ECHOJSONFieldStore();
+	}
+
+
+	/* Begin primitive operators */
+
+	/**
+	 * Returns the value mapped by name, or null if no such mapping exists.
+	 */
+	public abstract Object opt(String name);
+
+	/**
+	 * Maps name to value, clobbering any existing name/value mapping with the same name. If the value is null, any existing mapping for name is removed.
+	 */
+	public abstract ECHOFieldStore put(String name, Object value) throws JSONException;
+
+	/**
+	 * Removes the named mapping if it exists; does nothing otherwise.
+	 * @return the value previously mapped by name, or null if there was no such mapping.
+	 */
+	public abstract Object remove(String name);
+
+	/**
+	 * Returns the number of name/value mappings in this store.
+	 */
+	public abstract int length();
+
+	/**
+	 * Returns an iterator of the String names in this store. The returned iterator supports remove.
+	 */
+	public abstract Iterator<String> keys();
+
+	/**
+	 * Converts this store into a JSONObject.
+	 * The JSONObject-backed store returns its backing object.
+	 */
+	public abstract JSONObject toJSONObject();
+
+	/* End primitive operators */
+
+
+	/* Begin derived operators */
+
+	/**
+	 * Equivalent to {@link JSONObject#put(String,boolean)}.
+	 */
+	public ECHOFieldStore put(String name, boolean value) throws JSONException {
+		return put(name, Boolean.valueOf(value));
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#put(String,double)}.
+	 */
+	public ECHOFieldStore put(String name, double value) throws JSONException {
+		if(Double.isNaN(value) || Double.isInfinite(value)) throw new JSONException("Forbidden numeric value: " + value);
+		return put(name, Double.valueOf(value));
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#put(String,int)}.
+	 */
+	public ECHOFieldStore put(String name, int value) throws JSONException {
+		return put(name, Integer.valueOf(value));
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#put(String,long)}.
+	 */
+	public ECHOFieldStore put(String name, long value) throws JSONException {
+		return put(name, Long.valueOf(value));
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#putOpt(String,Object)}.
+	 */
+	public ECHOFieldStore putOpt(String name, Object value) throws JSONException {
+		if(name == null || value == null) return this;
+		return put(name, value);
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#accumulate(String,Object)}.
+	 */
+	public ECHOFieldStore accumulate(String name, Object value) throws JSONException {
+		Object current = opt(name);
+		if(current == null) return put(name, value);
+
+		if(current instanceof JSONArray) {
+			((JSONArray) current).put(value);
+		}else{
+			JSONArray array = new JSONArray();
+			array.put(current);
+			array.put(value);
+			put(name, array);
+		}
+		return this;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#has(String)}.
+	 */
+	public boolean has(String name) {
+		return opt(name) != null;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#isNull(String)}.
+	 */
+	public boolean isNull(String name) {
+		Object value = opt(name);
+		return value == null || value == JSONObject.NULL;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#get(String)}.
+	 */
+	public Object get(String name) throws JSONException {
+		Object result = opt(name);
+		if(result == null) throw new JSONException("No value for " + name);
+		return result;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getBoolean(String)}.
+	 */
+	public boolean getBoolean(String name) throws JSONException {
+		Boolean result = toBoolean(get(name));
+		if(result == null) throw typeMismatch(name, "boolean");
+		return result.booleanValue();
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optBoolean(String)}.
+	 */
+	public boolean optBoolean(String name) {
+		return optBoolean(name, false);
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optBoolean(String,boolean)}.
+	 */
+	public boolean optBoolean(String name, boolean fallback) {
+		Boolean result = toBoolean(opt(name));
+		return (result != null) ? result.booleanValue() : fallback;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getDouble(String)}.
+	 */
+	public double getDouble(String name) throws JSONException {
+		Double result = toDouble(get(name));
+		if(result == null) throw typeMismatch(name, "double");
+		return result.doubleValue();
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optDouble(String)}.
+	 */
+	public double optDouble(String name) {
+		return optDouble(name, Double.NaN);
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optDouble(String,double)}.
+	 */
+	public double optDouble(String name, double fallback) {
+		Double result = toDouble(opt(name));
+		return (result != null) ? result.doubleValue() : fallback;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getInt(String)}.
+	 */
+	public int getInt(String name) throws JSONException {
+		Object object = get(name);
+		Double result = toDouble(object);
+		if(result == null) throw typeMismatch(name, "int");
+		return (object instanceof Number) ? ((Number) object).intValue() : result.intValue();
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optInt(String)}.
+	 */
+	public int optInt(String name) {
+		return optInt(name, 0);
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optInt(String,int)}.
+	 */
+	public int optInt(String name, int fallback) {
+		Object object = opt(name);
+		if(object instanceof Number) return ((Number) object).intValue();
+
+		Double result = toDouble(object);
+		return (result != null) ? result.intValue() : fallback;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getLong(String)}.
+	 */
+	public long getLong(String name) throws JSONException {
+		Object object = get(name);
+		Double result = toDouble(object);
+		if(result == null) throw typeMismatch(name, "long");
+		return (object instanceof Number) ? ((Number) object).longValue() : result.longValue();
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optLong(String)}.
+	 */
+	public long optLong(String name) {
+		return optLong(name, 0L);
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optLong(String,long)}.
+	 */
+	public long optLong(String name, long fallback) {
+		Object object = opt(name);
+		if(object instanceof Number) return ((Number) object).longValue();
+
+		Double result = toDouble(object);
+		return (result != null) ? result.longValue() : fallback;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getString(String)}.
+	 */
+	public String getString(String name) throws JSONException {
+		return String.valueOf(get(name));
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optString(String)}.
+	 */
+	public String optString(String name) {
+		return optString(name, "");
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optString(String,String)}.
+	 */
+	public String optString(String name, String fallback) {
+		Object object = opt(name);
+		return (object != null) ? String.valueOf(object) : fallback;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getJSONArray(String)}.
+	 */
+	public JSONArray getJSONArray(String name) throws JSONException {
+		Object object = get(name);
+		if(!(object instanceof JSONArray)) throw typeMismatch(name, "JSONArray");
+		return (JSONArray) object;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optJSONArray(String)}.
+	 */
+	public JSONArray optJSONArray(String name) {
+		Object object = opt(name);
+		return (object instanceof JSONArray) ? (JSONArray) object : null;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#getJSONObject(String)}.
+	 */
+	public JSONObject getJSONObject(String name) throws JSONException {
+		Object object = get(name);
+		if(!(object instanceof JSONObject)) throw typeMismatch(name, "JSONObject");
+		return (JSONObject) object;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#optJSONObject(String)}.
+	 */
+	public JSONObject optJSONObject(String name) {
+		Object object = opt(name);
+		return (object instanceof JSONObject) ? (JSONObject) object : null;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#names()}.
+	 */
+	public JSONArray names() {
+		if(length() == 0) return null;
+
+		JSONArray names = new JSONArray();
+		Iterator<String> iter = keys();
+		while (iter.hasNext()) {
+			names.put(iter.next());
+		}
+		return names;
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#toJSONArray(JSONArray)}.
+	 */
+	public JSONArray toJSONArray(JSONArray names) throws JSONException {
+		if(names == null || names.length() == 0) return null;
+
+		JSONArray result = new JSONArray();
+		for (int i = 0; i < names.length(); i++) {
+			result.put(opt(names.optString(i)));
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return toJSONObject().toString();
+	}
+
+	/**
+	 * Equivalent to {@link JSONObject#toString(int)}.
+	 */
+	public String toString(int indentSpaces) throws JSONException {
+		return toJSONObject().toString(indentSpaces);
+	}
+
+	/* End derived operators */
+
+
+	/* Begin coercion helpers */
+
+	static Boolean toBoolean(Object value) {
+		if(value instanceof Boolean) return (Boolean) value;
+
+		if(value instanceof String) {
+			String s = (String) value;
+			if("true".equalsIgnoreCase(s)) return Boolean.TRUE;
+			if("false".equalsIgnoreCase(s)) return Boolean.FALSE;
+		}
+		return null;
+	}
+
+	static Double toDouble(Object value) {
+		if(value instanceof Double) return (Double) value;
+		if(value instanceof Number) return Double.valueOf(((Number) value).doubleValue());
+
+		if(value instanceof String) {
+			try {
+				return Double.valueOf((String) value);
+			} catch (NumberFormatException ignored) {
+				// not a number
+			}
+		}
+		return null;
+	}
+
+	private static JSONException typeMismatch(String name, String type) {
+		return new JSONException("Value at " + name + " cannot be converted to " + type);
+	}
+
+	/* End coercion helpers */
+}
@@ -0,0 +1,40 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+
+/**
+ * {@.en An ECHOFieldType is the type of a contents field declared in an {@link ECHOSchema}.}
+ * {@.ja {@link ECHOSchema}で宣言するコンテンツフィールドの型。}
+ */
+public enum ECHOFieldType {
+
+	/** {@.en a string} {@.ja 文字列} */
+	STRING,
+
+	/** {@.en a number} {@.ja 数値} */
+	NUMBER,
+
+	/** {@.en a date string converted into an {@link ECHODate}} {@.ja {@link ECHODate}へ変換される日時} */
+	DATE,
+
+	/** {@.en a file converted into an {@link ECHOFile}} {@.ja {@link ECHOFile}へ変換されるファイル} */
+	FILE,
+
+	/** {@.en a reference converted into an {@link ECHODataObject}} {@.ja {@link ECHODataObject}へ変換される参照} */
+	INSTANCE
+}
@@ -21,7 +21,6 @@ import java.io.InputStream;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.json.JSONException;
@@ -37,6 +36,7 @@ public class ECHOFile {
 	private byte[] bytes = null;
 	private String fileName = null;
 	private String urlPath = null;
+	private final ECHOClient client = ECHOClient.peekCurrent(); // the client of the site hosting the remote file
 
 	
 	/* Begin constructors */
@@ -64,6 +64,15 @@ public class ECHOFile {
 		}
 	}
 
+	/**
+	 * Constructs a new ECHOFile with all of its fields.
+	 */
+	ECHOFile(String name, String urlPath, byte[] bytes) {
+		this.fileName = name;
+		this.urlPath = urlPath;
+		this.bytes = bytes;
+	}
+
 	/* End constructors */
 
 	
@@ -83,7 +92,7 @@ public class ECHOFile {
 	public byte[] getRemoteBytes() throws ECHOException {
 		
 		// Get ready a background thread
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = getClient().getExecutor();
 	    Callable<byte[]> communicator = new Callable<byte[]>() {
 	    	  @Override
 	    	  public byte[] call() throws Exception {
@@ -115,6 +124,13 @@ public class ECHOFile {
 		return null;
 	}
 	
+	/**
+	 * Gets the url path of the remote file, or null if it has not been uploaded.
+	 */
+	String getUrlPath() {
+		return this.urlPath;
+	}
+
 	/**
 	 * Gets an InputStream to get remote bytes.
 	 * @return InputStream
@@ -128,7 +144,12 @@ public class ECHOFile {
 		// final String urlPath = this.urlPath;
 		if(urlPath.equals("")) throw new ECHOException(0, "File URL not setted.");
 		
-		return ECHOQuery.requestRaw(urlPath.substring(1), "GET", null, false);
+		return getClient().requestRaw(urlPath.substring(1), "GET", null, false);
+	}
+
+
+	private ECHOClient getClient() {
+		return (this.client != null) ? this.client : ECHOClient.current();
 	}
 	
 	/**
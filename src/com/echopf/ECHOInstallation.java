@@ -16,20 +16,25 @@
 
 package com.echopf;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.Handler;
 
+import com.echopf.members.ECHOMemberObject;
 import com.google.firebase.iid.FirebaseInstanceId;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 
@@ -46,6 +51,12 @@ public class ECHOInstallation {
 	private String GCM_SENDER_ID_KEY = "com.echopf.push.gcm_sender_id";
 	protected final static int PLAY_SERVICES_RESOLUTION_REQUEST = 9000;
 
+	private static final String PREFS_NAME = "com.echopf.installation";
+	private static final String TOKEN_KEY = "device_token";
+
+	private static final Object fetchLock = new Object();
+	private static Future<String> tokenFetch = null; // the in-flight fetching of the token
+
 	
 	/* Begin constructors */
 
@@ -97,6 +108,77 @@ public class ECHOInstallation {
 	}
 
 	
+	/**
+	 * {@.en Returns whether this installation is already registered to a member,
+	 * 		i.e. whether the same payload was last sent to or received from the server for the member on this device.
+	 * 		The installation is omitted from the push of such a member.}
+	 * {@.ja この端末が既にメンバーに登録済みか（同じ内容を最後にサーバーと送受信したか）を返します。
+	 * 		登録済みのメンバーを保存する際、端末情報は送信されません。}
+	 * 
+	 * @param member
+	 * 		{@.en the member}
+	 * 		{@.ja メンバー}
+	 */
+	public boolean isRegisteredTo(ECHOMemberObject member) {
+		String key = registrationKey(member);
+		if(key == null) return false;
+
+		SharedPreferences prefs = preferences(member.getClient());
+		return prefs != null && payloadHash(toJSONObject()).equals(prefs.getString(key, null));
+	}
+
+
+	/**
+	 * Records this installation as registered to a member.
+	 * This is called by the SDK when the installation of the member is received from the server.
+	 * 
+	 * @param member the member
+	 */
+	public void markRegisteredTo(ECHOMemberObject member) {
+		String key = registrationKey(member);
+		if(key == null || deviceToken == null || deviceToken.isEmpty()) return;
+
+		SharedPreferences prefs = preferences(member.getClient());
+		if(prefs != null) prefs.edit().putString(key, payloadHash(toJSONObject())).apply();
+	}
+
+
+	private static String registrationKey(ECHOMemberObject member) {
+		if(member == null) throw new IllegalArgumentException("argument `member` must not be null.");
+
+		String refid = member.getRefid();
+		if(refid == null || refid.isEmpty()) return null;
+		return "registered." + member.getClient().getSecureDomain() + "/" + member.instanceId + "/" + refid;
+	}
+
+
+	private static SharedPreferences preferences(ECHOClient client) {
+		Context context = client.getContext();
+		return (context != null) ? context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE) : null;
+	}
+
+
+	/**
+	 * Hashes an installation payload by SHA-1.
+	 */
+	static String payloadHash(JSONObject payload) {
+		String canonical = payload.optString("device_type") + "\n" + payload.optString("device_token");
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(canonical.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+
 	/**
 	 * Converts this object into an acceptable JSONObject for the API.
 	 * 
@@ -144,10 +226,13 @@ public class ECHOInstallation {
 	protected void doGetRegistrationId(final boolean sync, final InstallationCallback callback) throws ECHOException {
 		// if(!checkPlayServices(ECHO.context)) return;
 		
+		final ECHOClient client = ECHOClient.current();
+
 		// Get senderId from AndroidManifest.xml
 		String senderId = null;
 		try {
-			ApplicationInfo appInfo = ECHO.context.getPackageManager().getApplicationInfo(ECHO.context.getPackageName(), PackageManager.GET_META_DATA);
+			Context context = client.getContext();
+			ApplicationInfo appInfo = context.getPackageManager().getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
 			senderId = appInfo.metaData.getString(GCM_SENDER_ID_KEY);
 			senderId = (senderId.startsWith("id:")) ? senderId.substring(3):null;
 		} catch (NameNotFoundException ignored) {
@@ -159,22 +244,24 @@ public class ECHOInstallation {
 		final Handler handler = new Handler();
 		final String fSenderId = senderId;
 		
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = client.getExecutor();
 	    Callable<Object> communictor = new Callable<Object>() {
 
 	    	@Override
 	    	public Object call() throws ECHOException {
     			ECHOException exception = null;
 
-				// InstanceID instanceID = InstanceID.getInstance(ECHO.context);
 		        String token = null;
 
-				// Get updated InstanceID token.
-				token = FirebaseInstanceId.getInstance().getToken();
-				// Log.d(TAG, "Refreshed token: " + refreshedToken);
-				// TODO: Implement this method to send any registration to your app's servers.
+				// Get updated InstanceID token, sharing the in-flight fetching.
+				try {
+					token = fetchToken(client).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt(); // ignore/reset
+				} catch (ExecutionException e) {
+					exception = new ECHOException(e.getCause());
+				}
 
-				// token = instanceID.getToken(fSenderId, GoogleCloudMessaging.INSTANCE_ID_SCOPE);
 				synchronized (lock) {
 					deviceToken = token;
 				}
@@ -222,4 +309,32 @@ public class ECHOInstallation {
 	    }
 	}
 
+
+	/**
+	 * Gets the FCM token, joining the in-flight fetching if any.
+	 * The token is persisted, and the persisted one is used while FCM has not issued a token yet.
+	 * 
+	 * @param client the client whose threads and context are used
+	 */
+	private static Future<String> fetchToken(final ECHOClient client) {
+		synchronized (fetchLock) {
+			if(tokenFetch != null && !tokenFetch.isDone()) return tokenFetch;
+
+			tokenFetch = client.getExecutor().submit(new Callable<String>() {
+				@Override
+				public String call() {
+					SharedPreferences prefs = preferences(client);
+					String token = FirebaseInstanceId.getInstance().getToken();
+
+					if(prefs != null) {
+						String lastToken = prefs.getString(TOKEN_KEY, null);
+						if(token == null) return lastToken; // not issued yet
+						if(!token.equals(lastToken)) prefs.edit().putString(TOKEN_KEY, token).apply();
+					}
+					return token;
+				}
+			});
+			return tokenFetch;
+		}
+	}
 }
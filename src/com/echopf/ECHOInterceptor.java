@@ -0,0 +1,62 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.io.InputStream;
+
+
+/**
+ * {@.en An ECHOInterceptor observes, rewrites, short-circuits or retries the HTTP requests sent by the SDK.
+ * 		Interceptors are registered with {@link ECHO#addInterceptor(ECHOInterceptor)} and run in registration order.}
+ * {@.ja SDKが送信するHTTPリクエストに割り込み、監視・書き換え・代替応答・再送を行うインターセプタ。
+ * 		{@link ECHO#addInterceptor(ECHOInterceptor)}で登録した順に実行されます。}
+ */
+public interface ECHOInterceptor {
+
+	/**
+	 * {@.en Intercepts a request.
+	 * 		Code before {@link Chain#proceed(ECHORequest)} runs as a pre-request hook,
+	 * 		code after it as a post-response hook, and a catch around it as an error hook.
+	 * 		Returning without calling proceed short-circuits the request; calling it again retries.}
+	 * {@.ja リクエストに割り込みます。}
+	 *
+	 * @param chain the remaining chain of this request
+	 * @return the response input stream
+	 * @throws ECHOException
+	 */
+	InputStream intercept(Chain chain) throws ECHOException;
+
+
+	/**
+	 * A Chain passes a request on to the next interceptor, and finally to the server.
+	 */
+	interface Chain {
+
+		/**
+		 * Gets the request of this chain.
+		 */
+		ECHORequest request();
+
+		/**
+		 * Passes a request to the next interceptor and returns its response.
+		 *
+		 * @param request the request to send, which may differ from {@link #request()}
+		 * @throws ECHOException
+		 */
+		InputStream proceed(ECHORequest request) throws ECHOException;
+	}
+}
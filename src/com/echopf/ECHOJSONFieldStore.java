@@ -0,0 +1,241 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * An ECHOJSONFieldStore is an {@link ECHOFieldStore} backed by a JSONObject.
+ */
+final class ECHOJSONFieldStore extends ECHOFieldStore {
+
+	private final JSONObject data;
+
+	ECHOJSONFieldStore() {
+		this(new JSONObject());
+	}
+
+	/**
+	 * Constructs a store backed by an existing JSONObject.
+	 */
+	ECHOJSONFieldStore(JSONObject data) {
+		this.data = data;
+	}
+
+	@Override
+	public Object opt(String name) {
+		return data.opt(name);
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, Object value) throws JSONException {
+		data.put(name, value);
+		return this;
+	}
+
+	@Override
+	public Object remove(String name) {
+		return data.remove(name);
+	}
+
+	@Override
+	public int length() {
+		return data.length();
+	}
+
+	@Override @SuppressWarnings("unchecked")
+	public Iterator<String> keys() {
+		return data.keys();
+	}
+
+	@Override
+	public JSONObject toJSONObject() {
+		return data;
+	}
+
+
+	@Override
+	public ECHOFieldStore put(String name, boolean value) throws JSONException {
+		data.put(name, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, double value) throws JSONException {
+		data.put(name, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, int value) throws JSONException {
+		data.put(name, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore put(String name, long value) throws JSONException {
+		data.put(name, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore putOpt(String name, Object value) throws JSONException {
+		data.putOpt(name, value);
+		return this;
+	}
+
+	@Override
+	public ECHOFieldStore accumulate(String name, Object value) throws JSONException {
+		data.accumulate(name, value);
+		return this;
+	}
+
+	@Override
+	public boolean has(String name) {
+		return data.has(name);
+	}
+
+	@Override
+	public boolean isNull(String name) {
+		return data.isNull(name);
+	}
+
+	@Override
+	public Object get(String name) throws JSONException {
+		return data.get(name);
+	}
+
+	@Override
+	public boolean getBoolean(String name) throws JSONException {
+		return data.getBoolean(name);
+	}
+
+	@Override
+	public boolean optBoolean(String name) {
+		return data.optBoolean(name);
+	}
+
+	@Override
+	public boolean optBoolean(String name, boolean fallback) {
+		return data.optBoolean(name, fallback);
+	}
+
+	@Override
+	public double getDouble(String name) throws JSONException {
+		return data.getDouble(name);
+	}
+
+	@Override
+	public double optDouble(String name) {
+		return data.optDouble(name);
+	}
+
+	@Override
+	public double optDouble(String name, double fallback) {
+		return data.optDouble(name, fallback);
+	}
+
+	@Override
+	public int getInt(String name) throws JSONException {
+		return data.getInt(name);
+	}
+
+	@Override
+	public int optInt(String name) {
+		return data.optInt(name);
+	}
+
+	@Override
+	public int optInt(String name, int fallback) {
+		return data.optInt(name, fallback);
+	}
+
+	@Override
+	public long getLong(String name) throws JSONException {
+		return data.getLong(name);
+	}
+
+	@Override
+	public long optLong(String name) {
+		return data.optLong(name);
+	}
+
+	@Override
+	public long optLong(String name, long fallback) {
+		return data.optLong(name, fallback);
+	}
+
+	@Override
+	public String getString(String name) throws JSONException {
+		return data.getString(name);
+	}
+
+	@Override
+	public String optString(String name) {
+		return data.optString(name);
+	}
+
+	@Override
+	public String optString(String name, String fallback) {
+		return data.optString(name, fallback);
+	}
+
+	@Override
+	public JSONArray getJSONArray(String name) throws JSONException {
+		return data.getJSONArray(name);
+	}
+
+	@Override
+	public JSONArray optJSONArray(String name) {
+		return data.optJSONArray(name);
+	}
+
+	@Override
+	public JSONObject getJSONObject(String name) throws JSONException {
+		return data.getJSONObject(name);
+	}
+
+	@Override
+	public JSONObject optJSONObject(String name) {
+		return data.optJSONObject(name);
+	}
+
+	@Override
+	public JSONArray names() {
+		return data.names();
+	}
+
+	@Override
+	public JSONArray toJSONArray(JSONArray names) throws JSONException {
+		return data.toJSONArray(names);
+	}
+
+	@Override
+	public String toString() {
+		return data.toString();
+	}
+
+	@Override
+	public String toString(int indentSpaces) throws JSONException {
+		return data.toString(indentSpaces);
+	}
+}
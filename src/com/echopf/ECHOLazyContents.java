@@ -0,0 +1,245 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * An ECHOLazyContents keeps the decoded `contents` of a data object as they were received,
+ * and converts a field into an {@link ECHOFile}, an {@link ECHODataObject} or an {@link ECHODate}
+ * on its first access through {@link #get(String)} or {@link #opt(String)}.
+ * The converted value replaces the raw one, so each field is converted at most once.
+ *
+ * The other getters of JSONObject (optString, optJSONArray, isNull, ...) read values through
+ * get/opt, so they see the converted values too.
+ *
+ * Reads may run concurrently (e.g. local store queries and column projections on several threads):
+ * the accessors are synchronized, since a first read writes the converted value back.
+ * As with any JSONObject, writes must not run concurrently with iterating the keys.
+ */
+final class ECHOLazyContents extends JSONObject {
+
+	private final ECHOSchema schema;
+	private final ECHOClient client = ECHOClient.peekCurrent(); // binds the converted objects
+	private Set<String> converted = null;
+	private Map<String, Long> fingerprints = null; // of the raw values of the converted fields
+
+
+	/**
+	 * Constructs a new ECHOLazyContents holding the fields of a source JSONObject.
+	 *
+	 * @param source the raw contents
+	 * @param schema the schema of the instance, or null
+	 */
+	ECHOLazyContents(JSONObject source, ECHOSchema schema) {
+		super();
+		this.schema = schema;
+
+		try {
+			Iterator<?> iter = source.keys();
+			while (iter.hasNext()) {
+				String key = (String) iter.next();
+				super.put(key, source.opt(key));
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	/**
+	 * Constructs a new empty ECHOLazyContents.
+	 *
+	 * @param schema the schema of the instance, or null
+	 */
+	ECHOLazyContents(ECHOSchema schema) {
+		super();
+		this.schema = schema;
+	}
+
+
+	@Override
+	public synchronized Object opt(String name) {
+		Object value = super.opt(name);
+		if(value == null || isConverted(name)) return value;
+
+		return materialize(name, value);
+	}
+
+
+	@Override
+	public synchronized Object get(String name) throws JSONException {
+		Object value = super.get(name);
+		if(isConverted(name)) return value;
+
+		return materialize(name, value);
+	}
+
+
+	@Override
+	public synchronized JSONObject put(String name, Object value) throws JSONException {
+		super.put(name, value);
+		markConverted(name);
+		return this;
+	}
+
+
+	@Override
+	public synchronized JSONObject accumulate(String name, Object value) throws JSONException {
+		opt(name); // materialize the existing value first
+		super.accumulate(name, value);
+		markConverted(name);
+		return this;
+	}
+
+
+	@Override
+	public synchronized Object remove(String name) {
+		Object value = opt(name);
+		super.remove(name);
+		if(converted != null) converted.remove(name);
+		return value;
+	}
+
+
+	/**
+	 * Returns the value mapped by name as it is stored, without converting it.
+	 */
+	synchronized Object optRaw(String name) {
+		return super.opt(name);
+	}
+
+
+	/**
+	 * Maps name to a stored value, which is converted on its first access unless `converted` is true.
+	 */
+	synchronized void putRaw(String name, Object value, boolean converted) throws JSONException {
+		super.put(name, value);
+		if(converted) {
+			markConverted(name);
+		}else if(this.converted != null) {
+			this.converted.remove(name);
+		}
+	}
+
+
+	/**
+	 * Converts a raw value and caches it in place of the raw one. Called with the lock held.
+	 */
+	private Object materialize(String name, Object value) {
+		Object result;
+
+		setFingerprint(name, ECHODataObject.fingerprint(ECHODataObject.encodeRaw(value)));
+
+		ECHOClient previous = ECHOClient.bound();
+		if(client != null) ECHOClient.setCurrent(client);
+		try {
+			result = convert(name, value);
+		} finally {
+			ECHOClient.setCurrent(previous);
+		}
+
+		try {
+			super.put(name, result);
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+		markConverted(name);
+
+		return result;
+	}
+
+
+	private Object convert(String name, Object value) {
+		Object result;
+
+		// convert a copy, since a raw array may be in use by an optRaw caller
+		if(value instanceof JSONArray) value = copyOf((JSONArray) value);
+
+		ECHOSchema.Converter converter = (schema != null) ? schema.getConverter(name) : null;
+		if(converter != null) { // declared field
+
+			result = converter.decode(value);
+
+		}else if(value instanceof JSONArray) { // array field
+
+			JSONArray array = (JSONArray) value;
+			try {
+				for (int i = 0; i < array.length(); i++) {
+					array.put(i, ECHODataObject.convertContentsInCopyData(array.opt(i)));
+				}
+			} catch (JSONException e) {
+				throw new RuntimeException(e);
+			}
+			result = array;
+
+		}else{ // not array field
+
+			result = ECHODataObject.convertContentsInCopyData(value);
+
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Returns the fingerprint of the received value of a converted field (see {@link ECHODataObject#fingerprint(Object)}),
+	 * or null if the field was not received.
+	 */
+	synchronized Long fingerprintOf(String name) {
+		return (fingerprints != null) ? fingerprints.get(name) : null;
+	}
+
+
+	synchronized void setFingerprint(String name, Long fingerprint) {
+		if(fingerprint == null) {
+			if(fingerprints != null) fingerprints.remove(name);
+			return;
+		}
+
+		if(fingerprints == null) fingerprints = new HashMap<String, Long>(4);
+		fingerprints.put(name, fingerprint);
+	}
+
+
+	synchronized boolean isConverted(String name) {
+		return converted != null && converted.contains(name);
+	}
+
+
+	private static JSONArray copyOf(JSONArray source) {
+		JSONArray copy = new JSONArray();
+		for (int i = 0; i < source.length(); i++) copy.put(source.opt(i));
+		return copy;
+	}
+
+
+	private void markConverted(String name) {
+		if(converted == null) converted = new HashSet<String>(4);
+		converted.add(name);
+	}
+}
@@ -0,0 +1,286 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.JSONObject;
+
+
+/**
+ * {@.en An ECHOLocalQuery describes a query evaluated over an {@link ECHOLocalStore} without the network.
+ * 		Field names may refer to nested fields by dots (e.g. "contents.price").}
+ * {@.ja {@link ECHOLocalStore}に対して通信なしで評価されるクエリ。
+ * 		フィールド名はドット区切りで入れ子のフィールドを指定できます（例: "contents.price"）。}
+ */
+public class ECHOLocalQuery {
+
+	static final int EQ = 0;
+	static final int GT = 1;
+	static final int GTE = 2;
+	static final int LT = 3;
+	static final int LTE = 4;
+
+	private final List<Predicate> predicates = new ArrayList<Predicate>();
+	private String categoryRefid = null;
+	private ECHOCompiledACL.Principal principal = null;
+	private int permissions = 0;
+	private String order = null;
+	private boolean asc = false;
+	private int limit = 0;
+	private int page = 1;
+
+
+	/**
+	 * {@.en Constructs a new ECHOLocalQuery matching all objects.}
+	 * {@.ja すべてのオブジェクトに一致するクエリを生成します。}
+	 */
+	public ECHOLocalQuery() {
+		super();
+	}
+
+
+	/**
+	 * Converts the list control parameters of the API into a local query.
+	 * Only `page`, `limit`, `order` and `asc` are evaluated locally. `limit` and `order` are required,
+	 * since their defaults are decided by the server.
+	 *
+	 * @param params the list control parameters, or null
+	 * @return the local query, or null if the parameters cannot be evaluated locally
+	 */
+	static ECHOLocalQuery fromParams(JSONObject params) {
+		if(params == null || !params.has("limit") || !params.has("order")) return null;
+
+		ECHOLocalQuery query = new ECHOLocalQuery();
+
+		Iterator<?> iter = params.keys();
+		while (iter.hasNext()) {
+			String key = (String) iter.next();
+
+			if(key.equals("page")) {
+				int page = params.optInt(key, -1);
+				if(page < 1) return null;
+				query.page(page);
+			}else if(key.equals("limit")) {
+				int limit = params.optInt(key, -1);
+				if(limit < 1) return null;
+				query.limit(limit);
+			}else if(key.equals("order")) {
+				query.order = params.optString(key);
+			}else if(key.equals("asc")) {
+				Object asc = params.opt(key);
+				Boolean value = ECHOFieldStore.toBoolean(asc);
+				if(value == null && asc instanceof Number) value = Boolean.valueOf(((Number) asc).intValue() != 0);
+				if(value == null) return null;
+				query.asc = value.booleanValue();
+			}else{
+				return null; // unsupported parameter
+			}
+		}
+
+		return query;
+	}
+
+
+	/* Begin filters */
+
+	/**
+	 * {@.en Adds a condition that a field equals to a value.}
+	 * {@.ja フィールドが値と等しいという条件を追加します。}
+	 */
+	public ECHOLocalQuery whereEqualTo(String field, Object value) {
+		return where(field, EQ, value);
+	}
+
+	/**
+	 * {@.en Adds a condition that a field is greater than a value.}
+	 * {@.ja フィールドが値より大きいという条件を追加します。}
+	 */
+	public ECHOLocalQuery whereGreaterThan(String field, Object value) {
+		return where(field, GT, value);
+	}
+
+	/**
+	 * {@.en Adds a condition that a field is greater than or equal to a value.}
+	 * {@.ja フィールドが値以上であるという条件を追加します。}
+	 */
+	public ECHOLocalQuery whereGreaterThanOrEqualTo(String field, Object value) {
+		return where(field, GTE, value);
+	}
+
+	/**
+	 * {@.en Adds a condition that a field is less than a value.}
+	 * {@.ja フィールドが値より小さいという条件を追加します。}
+	 */
+	public ECHOLocalQuery whereLessThan(String field, Object value) {
+		return where(field, LT, value);
+	}
+
+	/**
+	 * {@.en Adds a condition that a field is less than or equal to a value.}
+	 * {@.ja フィールドが値以下であるという条件を追加します。}
+	 */
+	public ECHOLocalQuery whereLessThanOrEqualTo(String field, Object value) {
+		return where(field, LTE, value);
+	}
+
+	/**
+	 * {@.en Adds a condition that an object belongs to a category.}
+	 * {@.ja オブジェクトがカテゴリに属しているという条件を追加します。}
+	 *
+	 * @param categoryRefid
+	 * 		{@.en the reference ID of the category}
+	 * 		{@.ja カテゴリのID}
+	 */
+	public ECHOLocalQuery whereInCategory(String categoryRefid) {
+		if(categoryRefid == null) throw new IllegalArgumentException("argument `categoryRefid` must not be null.");
+		this.categoryRefid = categoryRefid;
+		return this;
+	}
+
+	/**
+	 * {@.en Adds a condition that a principal has permissions to an object, evaluated by its ACL.
+	 * 		Objects without an ACL are excluded.}
+	 * {@.ja プリンシパルがオブジェクトに対する権限を持つという条件を追加します（ACLで判定）。
+	 * 		ACLのないオブジェクトは除外されます。}
+	 *
+	 * @param principal
+	 * 		{@.en the principal returned by {@link ECHOCompiledACL.Principal#of}}
+	 * 		{@.ja プリンシパル}
+	 * @param permissions
+	 * 		{@.en the permission flags (e.g. {@link ECHOACLEntry#GET})}
+	 * 		{@.ja 権限フラグ}
+	 */
+	public ECHOLocalQuery wherePermitted(ECHOCompiledACL.Principal principal, int permissions) {
+		if(principal == null) throw new IllegalArgumentException("argument `principal` must not be null.");
+		this.principal = principal;
+		this.permissions = permissions;
+		return this;
+	}
+
+	private ECHOLocalQuery where(String field, int op, Object value) {
+		if(field == null) throw new IllegalArgumentException("argument `field` must not be null.");
+		if(value == null) throw new IllegalArgumentException("argument `value` must not be null.");
+
+		predicates.add(new Predicate(field, op, ECHOLocalStore.normalize(value)));
+		return this;
+	}
+
+	/* End filters */
+
+
+	/* Begin output controls */
+
+	/**
+	 * {@.en Sets the field name of sorting criteria.}
+	 * {@.ja ソートの基準となるフィールド名をセットします。}
+	 */
+	public ECHOLocalQuery orderBy(String field, boolean asc) {
+		if(field == null) throw new IllegalArgumentException("argument `field` must not be null.");
+		this.order = field;
+		this.asc = asc;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the number of objects per a page. 0 means no limit.}
+	 * {@.ja 1ページあたりの要素数をセットします。0の場合は無制限です。}
+	 */
+	public ECHOLocalQuery limit(int limit) {
+		if(limit < 0) throw new IllegalArgumentException("argument `limit` must not be negative.");
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * {@.en Sets the page no. (starting from 1)}
+	 * {@.ja ページ番号（1から始まる）をセットします。}
+	 */
+	public ECHOLocalQuery page(int page) {
+		if(page < 1) throw new IllegalArgumentException("argument `page` must be positive.");
+		this.page = page;
+		return this;
+	}
+
+	/* End output controls */
+
+
+	List<Predicate> getPredicates() {
+		return predicates;
+	}
+
+	String getCategoryRefid() {
+		return categoryRefid;
+	}
+
+	ECHOCompiledACL.Principal getPrincipal() {
+		return principal;
+	}
+
+	int getPermissions() {
+		return permissions;
+	}
+
+	String getOrder() {
+		return order;
+	}
+
+	boolean isAsc() {
+		return asc;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	int getPage() {
+		return page;
+	}
+
+
+	/**
+	 * A Predicate is a condition on a field.
+	 */
+	static final class Predicate {
+
+		final String field;
+		final int op;
+		final Object value; // normalized
+
+		Predicate(String field, int op, Object value) {
+			this.field = field;
+			this.op = op;
+			this.value = value;
+		}
+
+		boolean matches(Object fieldValue) {
+			if(fieldValue == null || value == null) return false;
+			if(ECHOLocalStore.rank(fieldValue) != ECHOLocalStore.rank(value)) return false;
+
+			int c = ECHOLocalStore.compare(fieldValue, value);
+			switch (op) {
+				case EQ: return c == 0;
+				case GT: return c > 0;
+				case GTE: return c >= 0;
+				case LT: return c < 0;
+				default: return c <= 0;
+			}
+		}
+	}
+}
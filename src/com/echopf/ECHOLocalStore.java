@@ -0,0 +1,607 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * {@.en An ECHOLocalStore caches the data objects of an instance in memory and answers queries over them.
+ * 		Once a store is created for an instance, objects found, pushed or deleted through the SDK are reflected to it.
+ * 		If the store is marked as complete, list queries with parameters it can evaluate are answered without the network.}
+ * {@.ja インスタンスのデータオブジェクトをメモリ上にキャッシュし、クエリに応答するローカルストア。
+ * 		インスタンスに対してストアを生成すると、以降SDKで検索・保存・削除したオブジェクトが反映されます。
+ * 		完全なストアとして設定されている場合、評価可能なリスト取得は通信なしで応答します。}
+ */
+public class ECHOLocalStore {
+
+	private static final Comparator<Object> VALUE_ORDER = new Comparator<Object>() {
+		@Override
+		public int compare(Object a, Object b) {
+			return ECHOLocalStore.compare(a, b);
+		}
+	};
+
+	private final String instanceId;
+	private final Map<String, ECHODataObject<?>> objects = new LinkedHashMap<String, ECHODataObject<?>>();
+	private final Map<String, Index> indexes = new HashMap<String, Index>();
+	private final Set<String> stale = new HashSet<String>(); // stored objects changed since they were indexed
+	private volatile boolean complete = false;
+	private final Set<String> syncedBy = new HashSet<String>(); // the sync engines which have filled this store
+
+
+	/**
+	 * Constructs a new ECHOLocalStore.
+	 */
+	private ECHOLocalStore(String instanceId) {
+		this.instanceId = instanceId;
+	}
+
+
+	/* Begin registry */
+
+	/**
+	 * {@.en Gets the store of an instance in the current client, creating it if it does not exist.}
+	 * {@.ja カレントクライアントにおけるインスタンスのストアを取得します。存在しない場合は生成します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 */
+	public static ECHOLocalStore forInstance(String instanceId) {
+		return forInstance(ECHOClient.current(), instanceId);
+	}
+
+
+	/**
+	 * {@.en Gets the store of an instance in a client, creating it if it does not exist.}
+	 * {@.ja クライアントにおけるインスタンスのストアを取得します。存在しない場合は生成します。}
+	 *
+	 * @param client
+	 * 		{@.en the client owning the store}
+	 * 		{@.ja ストアを所有するクライアント}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 */
+	public static ECHOLocalStore forInstance(ECHOClient client, String instanceId) {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+
+		Map<String, ECHOLocalStore> stores = client.localStores;
+		synchronized (stores) {
+			ECHOLocalStore store = stores.get(instanceId);
+			if(store == null) {
+				store = new ECHOLocalStore(instanceId);
+				stores.put(instanceId, store);
+			}
+			return store;
+		}
+	}
+
+
+	/**
+	 * {@.en Discards the store of an instance in the current client.}
+	 * {@.ja カレントクライアントにおけるインスタンスのストアを破棄します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 */
+	public static void discard(String instanceId) {
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+		ECHOClient.current().localStores.remove(instanceId);
+	}
+
+
+	/**
+	 * Gets the store of an instance in a client, or null if it does not exist.
+	 */
+	static ECHOLocalStore peek(ECHOClient client, String instanceId) {
+		return (instanceId != null) ? client.localStores.get(instanceId) : null;
+	}
+
+
+	/**
+	 * Answers a list query locally if the store of the instance is complete and the parameters can be evaluated.
+	 *
+	 * @return the found objects, or null to ask the server
+	 * @throws ECHOException
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends ECHODataObject<T>> ECHOList<T> findLocally(ECHOClient client, String instanceId, JSONObject params) throws ECHOException {
+		ECHOLocalStore store = peek(client, instanceId);
+		if(store == null || !store.isComplete()) return null;
+
+		ECHOLocalQuery query = ECHOLocalQuery.fromParams(params);
+		if(query == null) return null;
+
+		return (ECHOList<T>) store.find(query);
+	}
+
+
+	/**
+	 * Finds objects locally with typed parameters, converting them only if the store can answer.
+	 */
+	static <T extends ECHODataObject<T>> ECHOList<T> findLocally(ECHOClient client, String instanceId, ECHOQueryParams params) throws ECHOException {
+		ECHOLocalStore store = peek(client, instanceId);
+		if(store == null || !store.isComplete()) return null;
+
+		return ECHOLocalStore.<T>findLocally(client, instanceId, params.toJSONObject());
+	}
+
+
+	/**
+	 * Reflects found objects to the store of their instance, if any.
+	 */
+	static void cache(ECHOClient client, String instanceId, Collection<? extends ECHODataObject<?>> objs) {
+		ECHOLocalStore store = peek(client, instanceId);
+		if(store == null) return;
+
+		for (ECHODataObject<?> obj : objs) {
+			store.put(obj);
+		}
+	}
+
+
+	/**
+	 * Reflects a pushed object to the store of its instance, if any.
+	 */
+	static void cache(ECHODataObject<?> obj) {
+		ECHOLocalStore store = peek(obj.getClient(), obj.instanceId);
+		if(store != null) store.put(obj);
+	}
+
+
+	/**
+	 * Reflects a deleted object to the store of its instance, if any.
+	 */
+	static void evict(ECHOClient client, String instanceId, String refid) {
+		ECHOLocalStore store = peek(client, instanceId);
+		if(store != null && refid != null) store.remove(refid);
+	}
+
+	/**
+	 * Marks an object changed through its setters or by copyData, so that the indexes of the store
+	 * holding it are updated before the next query.
+	 */
+	static void touched(ECHODataObject<?> obj) {
+		if(obj.refid == null || obj.instanceId == null) return;
+
+		ECHOLocalStore store = peek(obj.getClient(), obj.instanceId);
+		if(store != null) store.markStale(obj);
+	}
+
+	/* End registry */
+
+
+	/* Begin objects */
+
+	/**
+	 * {@.en Puts an object into this store, replacing the one with the same reference ID.}
+	 * {@.ja オブジェクトをストアに格納します。同じIDのオブジェクトは置き換えられます。}
+	 */
+	public synchronized void put(ECHODataObject<?> obj) {
+		if(obj == null) throw new IllegalArgumentException("argument `obj` must not be null.");
+		if(obj.refid == null || obj.refid.isEmpty()) throw new IllegalArgumentException("argument `obj` must have a refid.");
+
+		objects.put(obj.refid, obj);
+		stale.remove(obj.refid);
+		for (Index index : indexes.values()) {
+			index.put(obj.refid, valueOf(obj, index.field));
+		}
+	}
+
+	/**
+	 * {@.en Removes an object from this store.}
+	 * {@.ja オブジェクトをストアから削除します。}
+	 */
+	public synchronized void remove(String refid) {
+		if(objects.remove(refid) == null) return;
+		stale.remove(refid);
+
+		for (Index index : indexes.values()) {
+			index.remove(refid);
+		}
+	}
+
+	private synchronized void markStale(ECHODataObject<?> obj) {
+		if(!indexes.isEmpty() && objects.get(obj.refid) == obj) stale.add(obj.refid);
+	}
+
+	/**
+	 * {@.en Gets an object by the reference ID, or null if it is not stored.}
+	 * {@.ja IDでオブジェクトを取得します。格納されていない場合はnullを返します。}
+	 */
+	public synchronized ECHODataObject<?> get(String refid) {
+		return objects.get(refid);
+	}
+
+	/**
+	 * Gets a copy of the reference IDs of the stored objects.
+	 */
+	synchronized Set<String> refids() {
+		return new HashSet<String>(objects.keySet());
+	}
+
+	/**
+	 * {@.en Gets the number of the stored objects.}
+	 * {@.ja 格納されているオブジェクト数を取得します。}
+	 */
+	public synchronized int size() {
+		return objects.size();
+	}
+
+	/**
+	 * {@.en Removes all objects from this store. The indexed fields are kept.}
+	 * {@.ja すべてのオブジェクトを削除します。インデックスの設定は保持されます。}
+	 */
+	public synchronized void clear() {
+		objects.clear();
+		stale.clear();
+		for (Index index : indexes.values()) {
+			index.clear();
+		}
+		syncedBy.clear();
+		this.complete = false;
+	}
+
+	/**
+	 * {@.en Sets whether this store holds all objects of the instance, which allows list queries to be answered locally.}
+	 * {@.ja ストアがインスタンスのすべてのオブジェクトを保持しているかどうかを設定します。trueの場合、リスト取得をローカルで応答します。}
+	 */
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+
+	/**
+	 * {@.en Returns whether this store holds all objects of the instance.}
+	 * {@.ja ストアがインスタンスのすべてのオブジェクトを保持しているかどうかを返します。}
+	 */
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * Returns whether a sync engine has filled this store, so that its high-water mark applies to the objects here.
+	 */
+	synchronized boolean isSyncedBy(String syncKey) {
+		return syncedBy.contains(syncKey);
+	}
+
+	/**
+	 * Records that a sync engine has filled this store.
+	 */
+	synchronized void setSyncedBy(String syncKey) {
+		syncedBy.add(syncKey);
+	}
+
+	/* End objects */
+
+
+	/* Begin queries */
+
+	/**
+	 * {@.en Adds a secondary index on a field, which speeds up equality and range conditions on it.
+	 * 			Objects changed through their setters, fetched or pushed are re-indexed before the next query.
+	 * 			After changing a JSONObject/JSONArray value of a stored object in place, put the object again.}
+	 * {@.ja フィールドにセカンダリインデックスを追加します。等値・範囲条件の評価が高速になります。
+	 * 			セッターでの変更・取得・保存が行われたオブジェクトは、次回の検索前に再インデックスされます。
+	 * 			格納済みオブジェクトのJSONObject/JSONArrayの値を直接変更した場合は、オブジェクトを再度格納してください。}
+	 *
+	 * @param field
+	 * 		{@.en the field name (e.g. "contents.price")}
+	 * 		{@.ja フィールド名（例: "contents.price"）}
+	 */
+	public synchronized void addIndex(String field) {
+		if(field == null) throw new IllegalArgumentException("argument `field` must not be null.");
+		if(indexes.containsKey(field)) return;
+
+		Index index = new Index(field);
+		for (ECHODataObject<?> obj : objects.values()) {
+			index.put(obj.refid, valueOf(obj, field));
+		}
+		indexes.put(field, index);
+	}
+
+
+	/**
+	 * {@.en Finds objects in this store.}
+	 * {@.ja ストア内のオブジェクトを検索します。}
+	 *
+	 * @param query
+	 * 		{@.en the query to evaluate}
+	 * 		{@.ja 評価するクエリ}
+	 * @return {@.en the found objects with paginate data computed locally}
+	 * 			{@.ja ページ送り情報を付属した検索結果}
+	 * @throws ECHOException
+	 */
+	public synchronized <T extends ECHODataObject<T>> ECHOList<T> find(ECHOLocalQuery query) throws ECHOException {
+		if(query == null) throw new IllegalArgumentException("argument `query` must not be null.");
+
+		// re-index the changed objects
+		for (String refid : stale) {
+			ECHODataObject<?> obj = objects.get(refid);
+			for (Index index : indexes.values()) {
+				index.put(refid, valueOf(obj, index.field));
+			}
+		}
+		stale.clear();
+
+		// candidates
+		Collection<String> candidates = null;
+		ECHOLocalQuery.Predicate used = null;
+		for (ECHOLocalQuery.Predicate predicate : query.getPredicates()) {
+			Index index = indexes.get(predicate.field);
+			if(index == null) continue;
+
+			if(used == null || (predicate.op == ECHOLocalQuery.EQ && used.op != ECHOLocalQuery.EQ)) {
+				used = predicate;
+				candidates = index.select(predicate);
+			}
+		}
+		if(candidates == null) candidates = objects.keySet();
+
+		// filters
+		List<ECHODataObject<?>> matched = new ArrayList<ECHODataObject<?>>();
+		for (String refid : candidates) {
+			ECHODataObject<?> obj = objects.get(refid);
+			if(obj != null && matches(obj, query)) matched.add(obj);
+		}
+
+		// order
+		final String order = query.getOrder();
+		final boolean asc = query.isAsc();
+		if(order != null) {
+			final Map<ECHODataObject<?>, Object> keys = new HashMap<ECHODataObject<?>, Object>();
+			for (ECHODataObject<?> obj : matched) {
+				keys.put(obj, valueOf(obj, order));
+			}
+
+			Collections.sort(matched, new Comparator<ECHODataObject<?>>() {
+				@Override
+				public int compare(ECHODataObject<?> a, ECHODataObject<?> b) {
+					int c = ECHOLocalStore.compare(keys.get(a), keys.get(b));
+					if(c == 0) c = a.refid.compareTo(b.refid);
+					return asc ? c : -c;
+				}
+			});
+		}
+
+		// paginate
+		int count = matched.size();
+		int limit = query.getLimit();
+		int page = query.getPage();
+		int pageCount = (limit > 0) ? (count + limit - 1) / limit : (count > 0 ? 1 : 0);
+		int from = (limit > 0) ? Math.min((page - 1) * limit, count) : (page == 1 ? 0 : count);
+		int to = (limit > 0) ? Math.min(from + limit, count) : count;
+
+		JSONObject paginate = new JSONObject();
+		try {
+			paginate.put("page", page);
+			paginate.put("prevPage", (page > 1) ? page - 1 : 0);
+			paginate.put("nextPage", (page < pageCount) ? page + 1 : 0);
+			paginate.put("pageCount", pageCount);
+			paginate.put("count", count);
+			paginate.put("limit", (limit > 0) ? limit : count);
+			if(order != null) paginate.put("order", order);
+			paginate.put("asc", asc);
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		ECHOList<T> list = new ECHOList<T>(paginate);
+		for (int i = from; i < to; i++) {
+			@SuppressWarnings("unchecked")
+			T obj = (T) matched.get(i);
+			list.add(obj);
+		}
+
+		return list;
+	}
+
+
+	/**
+	 * Evaluates all conditions, including the one used to select the candidates from an index.
+	 */
+	private boolean matches(ECHODataObject<?> obj, ECHOLocalQuery query) {
+		for (ECHOLocalQuery.Predicate predicate : query.getPredicates()) {
+			if(!predicate.matches(valueOf(obj, predicate.field))) return false;
+		}
+
+		String categoryRefid = query.getCategoryRefid();
+		if(categoryRefid != null) {
+			Object categories = obj.peek("categories");
+			if(!(categories instanceof JSONArray)) return false;
+
+			JSONArray array = (JSONArray) categories;
+			boolean found = false;
+			for (int i = 0; i < array.length() && !found; i++) {
+				Object category = array.opt(i);
+				if(category instanceof ECHOObject) {
+					found = categoryRefid.equals(((ECHOObject) category).refid);
+				}else{
+					found = categoryRefid.equals(category);
+				}
+			}
+			if(!found) return false;
+		}
+
+		ECHOCompiledACL.Principal principal = query.getPrincipal();
+		if(principal != null) {
+			ECHOCompiledACL acl = obj.getCompiledACL();
+			if(acl == null || !acl.isPermitted(principal, query.getPermissions())) return false;
+		}
+
+		return true;
+	}
+
+	/* End queries */
+
+
+	/* Begin values */
+
+	/**
+	 * Gets a normalized value of a field, following dots into nested JSONObjects.
+	 */
+	static Object valueOf(ECHODataObject<?> obj, String field) {
+		int dot = field.indexOf('.');
+		Object value = obj.peek((dot < 0) ? field : field.substring(0, dot));
+
+		while (dot >= 0) {
+			if(!(value instanceof JSONObject)) return null;
+
+			int next = field.indexOf('.', dot + 1);
+			String name = (next < 0) ? field.substring(dot + 1) : field.substring(dot + 1, next);
+			value = ((JSONObject) value).opt(name);
+			dot = next;
+		}
+
+		return normalize(value);
+	}
+
+
+	/**
+	 * Normalizes a value into a Boolean, a Long, a Double or a String.
+	 * Dates are turned into epoch milliseconds, and values which cannot be compared into null.
+	 */
+	static Object normalize(Object value) {
+		if(value instanceof String || value instanceof Boolean || value instanceof Long || value instanceof Double) return value;
+		if(value instanceof Date) return Long.valueOf(((Date) value).getTime());
+		if(value instanceof Integer || value instanceof Short || value instanceof Byte) return Long.valueOf(((Number) value).longValue());
+		if(value instanceof Number) return Double.valueOf(((Number) value).doubleValue());
+		return null;
+	}
+
+
+	/**
+	 * Compares normalized values. Null comes first, then booleans, numbers and strings.
+	 */
+	static int compare(Object a, Object b) {
+		int ra = rank(a);
+		int rb = rank(b);
+		if(ra != rb) return ra - rb;
+
+		switch (ra) {
+			case 0:
+				return 0;
+			case 1:
+				return ((Boolean) a).compareTo((Boolean) b);
+			case 2:
+				if(a instanceof Long && b instanceof Long) {
+					long x = ((Long) a).longValue();
+					long y = ((Long) b).longValue();
+					return (x < y) ? -1 : ((x == y) ? 0 : 1);
+				}
+				return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+			default:
+				return ((String) a).compareTo((String) b);
+		}
+	}
+
+	static int rank(Object value) {
+		if(value == null) return 0;
+		if(value instanceof Boolean) return 1;
+		if(value instanceof Number) return 2;
+		return 3;
+	}
+
+	/* End values */
+
+
+	/**
+	 * An Index maps the values of a field to the reference IDs of the objects.
+	 */
+	private static final class Index {
+
+		final String field;
+		private final TreeMap<Object, Set<String>> tree = new TreeMap<Object, Set<String>>(VALUE_ORDER);
+		private final Map<String, Object> values = new HashMap<String, Object>();
+
+		Index(String field) {
+			this.field = field;
+		}
+
+		void put(String refid, Object value) {
+			remove(refid);
+			if(value == null) return;
+
+			Set<String> refids = tree.get(value);
+			if(refids == null) {
+				refids = new HashSet<String>();
+				tree.put(value, refids);
+			}
+			refids.add(refid);
+			values.put(refid, value);
+		}
+
+		void remove(String refid) {
+			Object old = values.remove(refid);
+			if(old == null) return;
+
+			Set<String> refids = tree.get(old);
+			refids.remove(refid);
+			if(refids.isEmpty()) tree.remove(old);
+		}
+
+		void clear() {
+			tree.clear();
+			values.clear();
+		}
+
+		Collection<String> select(ECHOLocalQuery.Predicate predicate) {
+			Map<Object, Set<String>> range;
+			switch (predicate.op) {
+				case ECHOLocalQuery.EQ:
+					Set<String> refids = tree.get(predicate.value);
+					return (refids != null) ? new ArrayList<String>(refids) : new ArrayList<String>();
+				case ECHOLocalQuery.GT:
+					range = tree.tailMap(predicate.value, false);
+					break;
+				case ECHOLocalQuery.GTE:
+					range = tree.tailMap(predicate.value, true);
+					break;
+				case ECHOLocalQuery.LT:
+					range = tree.headMap(predicate.value, false);
+					break;
+				default:
+					range = tree.headMap(predicate.value, true);
+			}
+
+			List<String> result = new ArrayList<String>();
+			for (Set<String> refids : range.values()) {
+				result.addAll(refids);
+			}
+			return result;
+		}
+	}
+}
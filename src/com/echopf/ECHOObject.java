@@ -27,6 +27,7 @@ public abstract class ECHOObject {
 	protected String resourceType = null;
 	protected String refid = null;
 	protected final Object lock = new Object();
+	private volatile ECHOClient client = ECHOClient.peekCurrent(); // null until the SDK is initialized
 	
 	
 	/* Begin constructors */
@@ -67,6 +68,34 @@ public abstract class ECHOObject {
 	}
 	
 	
+	/**
+	 * {@.en Gets the client to which this object is bound.}
+	 * {@.ja このオブジェクトが紐付けられているクライアントを取得する。}
+	 */
+	public ECHOClient getClient() {
+		ECHOClient client = this.client;
+		if(client == null) {
+			client = ECHOClient.current();
+			this.client = client;
+		}
+		return client;
+	}
+
+
+	/**
+	 * {@.en Binds this object to a client.}
+	 * {@.ja このオブジェクトをクライアントに紐付ける。}
+	 *
+	 * @param client
+	 * 		{@.en the client to send the requests of this object}
+	 * 		{@.ja このオブジェクトのリクエストを送信するクライアント}
+	 */
+	public void setClient(ECHOClient client) {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+		this.client = client;
+	}
+
+
 	/**
 	 * Returns the request URL path.
 	 */
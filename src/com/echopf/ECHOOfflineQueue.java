@@ -0,0 +1,750 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Base64;
+
+
+/**
+ * {@.en An ECHOOfflineQueue keeps push and delete operations of data objects which failed by network errors
+ * 		in a durable journal, and replays them when the connectivity returns.
+ * 		While it is enabled, such operations are regarded as successful.}
+ * {@.ja ネットワークエラーで失敗したデータオブジェクトの保存・削除操作を永続的なジャーナルに記録し、
+ * 		通信が回復したときに再送するオフラインキュー。有効な間、これらの操作は成功として扱われます。}
+ */
+public class ECHOOfflineQueue {
+
+	private static final String JOURNAL_NAME = "echopf_offline.journal";
+	private static final String REPLAY_NAME = "echopf_offline.replay";
+	private static final String FILE_MARKER = "_journal_file";
+	private static final String LOCAL_KEY_PREFIX = "local:";
+
+	private static final Object journalLock = new Object();
+	private static final Object replayLock = new Object();
+
+	private static volatile Context context = null;
+	private static volatile int maxConcurrency = 4;
+	private static volatile ReplayListener listener = null;
+	private static BroadcastReceiver receiver = null;
+	private static boolean replaying = false;
+
+	// objects whose creation is queued, by their journal key, to receive the refid on replay
+	private static final Map<String, WeakReference<ECHODataObject<?>>> creating = new HashMap<String, WeakReference<ECHODataObject<?>>>();
+	// refids of the replayed creations, to turn a creation queued again meanwhile into an update
+	private static final Map<String, String> createdRefids = new HashMap<String, String>();
+
+
+	/**
+	 * Disable constructor since this is an utility class.
+	 */
+	private ECHOOfflineQueue() {}
+
+
+	/* Begin configuration */
+
+	/**
+	 * {@.en Enables or disables the offline queue.
+	 * 			While it is enabled, the queue is replayed each time the device gets connected.}
+	 * {@.ja オフラインキューを有効化・無効化します。有効な間、端末が接続されるたびにキューを再送します。}
+	 *
+	 * @param context
+	 * 		{@.en the context to locate the journal and to receive connectivity changes}
+	 * 		{@.ja ジャーナルの保存先と接続状態の監視に使うコンテキスト}
+	 * @param enabled
+	 */
+	public static synchronized void setEnabled(Context context, boolean enabled) {
+		if(context == null) throw new IllegalArgumentException("argument `context` must not be null.");
+		Context appContext = context.getApplicationContext();
+		if(appContext == null) appContext = context;
+
+		if(enabled) {
+			if(ECHOOfflineQueue.context != null) return;
+			ECHOOfflineQueue.context = appContext;
+
+			receiver = new BroadcastReceiver() {
+				@Override
+				public void onReceive(Context context, Intent intent) {
+					if(isConnected(context)) replayInBackground();
+				}
+			};
+			appContext.registerReceiver(receiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+		}else{
+			if(ECHOOfflineQueue.context == null) return;
+
+			ECHOOfflineQueue.context.unregisterReceiver(receiver);
+			ECHOOfflineQueue.context = null;
+			receiver = null;
+		}
+	}
+
+
+	/**
+	 * {@.en Returns whether the offline queue is enabled.}
+	 * {@.ja オフラインキューが有効かどうかを返します。}
+	 */
+	public static boolean isEnabled() {
+		return context != null;
+	}
+
+
+	/**
+	 * {@.en Sets the maximum number of objects replayed concurrently. The operations on an object are always sent in order.}
+	 * {@.ja 同時に再送するオブジェクト数の上限を設定します。同一オブジェクトに対する操作は常に順番に送信されます。}
+	 *
+	 * @param max
+	 */
+	public static void setMaxConcurrency(int max) {
+		if(max < 1) throw new IllegalArgumentException("argument `max` must be positive.");
+		maxConcurrency = max;
+	}
+
+
+	/**
+	 * {@.en Sets a listener notified of the results of the replay. It is called in a background thread.}
+	 * {@.ja 再送結果を受け取るリスナーをセットします。バックグラウンドスレッドで呼び出されます。}
+	 *
+	 * @param listener
+	 */
+	public static void setReplayListener(ReplayListener listener) {
+		ECHOOfflineQueue.listener = listener;
+	}
+
+	/* End configuration */
+
+
+	/**
+	 * {@.en Gets the number of the operations waiting in the journal.}
+	 * {@.ja ジャーナルで送信を待っている操作の数を取得します。}
+	 */
+	public static int getPendingCount() {
+		Context context = ECHOOfflineQueue.context;
+		if(context == null) return 0;
+
+		synchronized (journalLock) {
+			return read(replayFile(context)).size() + read(journalFile(context)).size();
+		}
+	}
+
+
+	/**
+	 * Appends a failed operation of a data object to the journal if the queue is enabled and the failure is transient.
+	 *
+	 * @param obj the data object
+	 * @param method the request method (POST/PUT/DELETE)
+	 * @param contents the request contents, or null
+	 * @param multipart whether the contents are encoded by multipart/form-data
+	 * @param cause the failure
+	 * @return true if the operation has been queued
+	 */
+	static boolean offer(ECHODataObject<?> obj, String method, JSONObject contents, boolean multipart, ECHOException cause) {
+		Context context = ECHOOfflineQueue.context;
+		if(context == null || !(cause.getCause() instanceof IOException)) return false;
+		if(obj.getClient() != ECHOClient.getDefault()) return false; // the journal is replayed by the default client
+
+		return enqueue(context, obj, method, contents, multipart);
+	}
+
+
+	/**
+	 * Appends a push of a data object whose creation is still waiting in the journal, behind that creation,
+	 * so that the object is not created twice. The replay is started if the device is connected.
+	 *
+	 * @param obj the data object, which has a journal key and no refid
+	 * @param contents the request contents
+	 * @param multipart whether the contents are encoded by multipart/form-data
+	 * @return true if the push has been queued; false if the queue is disabled
+	 */
+	static boolean follow(ECHODataObject<?> obj, JSONObject contents, boolean multipart) {
+		Context context = ECHOOfflineQueue.context;
+		if(context == null || obj.journalKey == null) return false;
+		if(obj.getClient() != ECHOClient.getDefault()) return false; // the journal is replayed by the default client
+
+		if(!enqueue(context, obj, "POST", contents, multipart)) return false;
+		if(isConnected(context)) replayInBackground();
+		return true;
+	}
+
+
+	/**
+	 * Appends an operation of a data object to the journal.
+	 */
+	private static boolean enqueue(Context context, ECHODataObject<?> obj, String method, JSONObject contents, boolean multipart) {
+		String key;
+		if(method.equals("POST")) {
+			if(obj.journalKey == null) obj.journalKey = UUID.randomUUID().toString();
+			key = LOCAL_KEY_PREFIX + obj.journalKey;
+			track(key, obj);
+		}else{
+			key = obj.getRequestURLPath();
+		}
+
+		Entry entry = new Entry(method, obj.getRequestURLPath(), key, contents, multipart);
+
+		synchronized (journalLock) {
+			try {
+				append(journalFile(context), entry);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/* Begin replay */
+
+	/**
+	 * {@.en Replays the journal in a background thread.}
+	 * {@.ja バックグラウンドスレッドでジャーナルを再送します。}
+	 */
+	public static void replayInBackground() {
+		ECHOClient client = ECHOClient.getDefault();
+		if(client == null) return;
+
+		client.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				replay();
+			}
+		});
+	}
+
+
+	/**
+	 * {@.en Replays the journal in the current thread.
+	 * 			Redundant operations on the same object are compacted before sending.
+	 * 			Operations failed by network errors are kept for the next replay,
+	 * 			the ones rejected by the server are dropped and reported to the listener.}
+	 * {@.ja 現在のスレッドでジャーナルを再送します。同一オブジェクトへの冗長な操作は送信前に圧縮されます。
+	 * 			ネットワークエラーで失敗した操作は次回に持ち越し、サーバーに拒否された操作は破棄してリスナーに通知します。}
+	 */
+	public static void replay() {
+		final Context context = ECHOOfflineQueue.context;
+		final ECHOClient client = ECHOClient.getDefault(); // the journal is replayed by the default client
+		if(context == null || client == null) return;
+
+		synchronized (replayLock) {
+			if(replaying) return;
+			replaying = true;
+		}
+
+		try {
+
+			// Move the journal aside, so that operations appended meanwhile are kept
+			List<Entry> entries;
+			synchronized (journalLock) {
+				File replayFile = replayFile(context);
+				File journalFile = journalFile(context);
+
+				if(replayFile.exists()) { // left by an interrupted replay
+					entries = read(replayFile);
+					entries.addAll(read(journalFile));
+					write(replayFile, entries);
+					journalFile.delete();
+				}else{
+					if(!journalFile.exists()) return;
+					if(!journalFile.renameTo(replayFile)) return;
+					entries = read(replayFile);
+				}
+			}
+
+			// Compact and replay them
+			Map<String, List<Entry>> groups = compact(entries);
+			final List<Entry> remaining = new ArrayList<Entry>();
+
+			// Run at most maxConcurrency workers on the client threads, each taking the next object
+			final Iterator<List<Entry>> pending = groups.values().iterator();
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+
+			for (int i = 0; i < Math.min(maxConcurrency, groups.size()); i++) {
+				workers.add(client.getExecutor().submit(new Runnable() {
+					@Override
+					public void run() {
+						while (true) {
+							List<Entry> group;
+							synchronized (pending) {
+								if(!pending.hasNext()) return;
+								group = pending.next();
+							}
+
+							List<Entry> rest;
+							try {
+								rest = send(client, group);
+							} catch (RuntimeException e) {
+								rest = group; // keep them for the next replay
+							}
+
+							synchronized (remaining) {
+								remaining.addAll(rest);
+							}
+						}
+					}
+				}));
+			}
+
+			try {
+				for (Future<?> worker : workers) worker.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // ignore/reset
+				for (Future<?> worker : workers) worker.cancel(true);
+				return; // keep the replay file for the next time
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause()); // not reached, the workers catch their failures
+			}
+
+			// Put back the remaining ones before the ones appended meanwhile
+			synchronized (journalLock) {
+				File journalFile = journalFile(context);
+				List<Entry> rest = new ArrayList<Entry>();
+				synchronized (remaining) {
+					for (Entry entry : entries) {
+						if(remaining.contains(entry)) rest.add(entry);
+					}
+				}
+				rest.addAll(read(journalFile));
+
+				write(journalFile, rest);
+				replayFile(context).delete();
+			}
+
+		} catch (IOException ignored) {
+			// keep the replay file for the next time
+		} finally {
+			synchronized (replayLock) {
+				replaying = false;
+			}
+		}
+	}
+
+
+	/**
+	 * Compacts operations per object.
+	 * Consecutive updates are merged, repeated creations keep the latest one,
+	 * and a delete drops the preceding updates.
+	 *
+	 * @return the operations grouped per object, in order of their first appearance
+	 */
+	private static Map<String, List<Entry>> compact(List<Entry> entries) {
+		Map<String, List<Entry>> groups = new LinkedHashMap<String, List<Entry>>();
+
+		for (Entry entry : entries) {
+			List<Entry> group = groups.get(entry.key);
+			if(group == null) {
+				group = new ArrayList<Entry>();
+				groups.put(entry.key, group);
+			}
+
+			Entry last = group.isEmpty() ? null : group.get(group.size() - 1);
+
+			if(entry.method.equals("DELETE")) {
+
+				Iterator<Entry> iter = group.iterator();
+				while (iter.hasNext()) {
+					if(iter.next().method.equals("PUT")) iter.remove();
+				}
+				group.add(entry);
+
+			}else if(last != null && last.method.equals(entry.method) && entry.method.equals("PUT")) {
+
+				last.merge(entry);
+
+			}else if(last != null && last.method.equals(entry.method) && entry.method.equals("POST")) {
+
+				group.set(group.size() - 1, entry); // a creation carries all fields
+
+			}else{
+
+				group.add(entry);
+
+			}
+		}
+
+		return groups;
+	}
+
+
+	/**
+	 * Sends the operations on an object in order.
+	 *
+	 * @return the operations to keep for the next replay
+	 */
+	private static List<Entry> send(ECHOClient client, List<Entry> group) {
+		ReplayListener listener = ECHOOfflineQueue.listener;
+
+		for (int i = 0; i < group.size(); i++) {
+			Entry entry = group.get(i);
+
+			try {
+				String refid;
+				synchronized (creating) {
+					refid = entry.method.equals("POST") ? createdRefids.get(entry.key) : null;
+				}
+
+				JSONObject response;
+				if(refid != null) { // created by a previous replay
+					String path = entry.path + "/" + refid;
+					response = entry.multipart ? client.multipartPutRequest(path, entry.contents)
+												: client.putRequest(path, entry.contents);
+				}else if(entry.method.equals("POST")) {
+					response = entry.multipart ? client.multipartPostRequest(entry.path, entry.contents)
+												: client.postRequest(entry.path, entry.contents);
+				}else if(entry.method.equals("PUT")) {
+					response = entry.multipart ? client.multipartPutRequest(entry.path, entry.contents)
+												: client.putRequest(entry.path, entry.contents);
+				}else{
+					response = client.deleteRequest(entry.path);
+				}
+
+				if(refid == null && entry.method.equals("POST") && response != null) created(entry.key, response.optString("refid"));
+
+				if(listener != null) listener.onSent(entry.method, entry.path, response);
+
+			} catch (ECHOException e) {
+				if(e.getCause() instanceof IOException) { // transient
+					return group.subList(i, group.size());
+				}
+
+				if(listener != null) listener.onDropped(entry.method, entry.path, e);
+			}
+		}
+
+		return new ArrayList<Entry>();
+	}
+
+	/**
+	 * Remembers an object whose creation is queued.
+	 */
+	private static void track(String key, ECHODataObject<?> obj) {
+		synchronized (creating) {
+			Iterator<WeakReference<ECHODataObject<?>>> iter = creating.values().iterator();
+			while (iter.hasNext()) {
+				if(iter.next().get() == null) iter.remove(); // collected
+			}
+			creating.put(key, new WeakReference<ECHODataObject<?>>(obj));
+		}
+	}
+
+
+	/**
+	 * Gives the refid of a replayed creation to the object, if it is still alive,
+	 * so that its next push updates the record instead of creating another one.
+	 */
+	private static void created(String key, String refid) {
+		if(refid.isEmpty()) return;
+
+		WeakReference<ECHODataObject<?>> ref;
+		synchronized (creating) {
+			ref = creating.remove(key);
+			createdRefids.put(key, refid);
+		}
+
+		ECHODataObject<?> obj = (ref != null) ? ref.get() : null;
+		if(obj != null) obj.adoptRefid(key.substring(LOCAL_KEY_PREFIX.length()), refid);
+	}
+
+	/* End replay */
+
+
+	/* Begin journal */
+
+	private static File journalFile(Context context) {
+		return new File(context.getFilesDir(), JOURNAL_NAME);
+	}
+
+	private static File replayFile(Context context) {
+		return new File(context.getFilesDir(), REPLAY_NAME);
+	}
+
+
+	/**
+	 * Appends an entry to a journal and flushes it to the disk.
+	 */
+	private static void append(File file, Entry entry) throws IOException {
+		FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(entry.toLine().getBytes("UTF-8"));
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+
+	/**
+	 * Rewrites a journal with entries, replacing it atomically.
+	 */
+	private static void write(File file, List<Entry> entries) throws IOException {
+		if(entries.isEmpty()) {
+			file.delete();
+			return;
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp, false);
+		try {
+			for (Entry entry : entries) {
+				out.write(entry.toLine().getBytes("UTF-8"));
+			}
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		if(!tmp.renameTo(file)) throw new IOException("Failed to replace " + file.getName() + ".");
+	}
+
+
+	/**
+	 * Reads the entries of a journal. A broken line (e.g. written partially on a crash) is skipped.
+	 */
+	private static List<Entry> read(File file) {
+		List<Entry> entries = new ArrayList<Entry>();
+		if(!file.exists()) return entries;
+
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if(line.isEmpty()) continue;
+
+				try {
+					entries.add(Entry.fromLine(line));
+				} catch (JSONException ignored) {
+					// skip
+				}
+			}
+		} catch (IOException ignored) {
+			// return the entries read so far
+		} finally {
+			if(reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignored) {
+					// ignore
+				}
+			}
+		}
+
+		return entries;
+	}
+
+	/* End journal */
+
+
+	private static boolean isConnected(Context context) {
+		ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		if(manager == null) return false;
+
+		NetworkInfo info = manager.getActiveNetworkInfo();
+		return info != null && info.isConnected();
+	}
+
+
+	/**
+	 * An Entry is a queued operation.
+	 */
+	private static final class Entry {
+
+		final String method;
+		final String path;
+		final String key;
+		JSONObject contents;
+		boolean multipart;
+
+		Entry(String method, String path, String key, JSONObject contents, boolean multipart) {
+			this.method = method;
+			this.path = path;
+			this.key = key;
+			this.contents = contents;
+			this.multipart = multipart;
+		}
+
+
+		/**
+		 * Merges the fields of a later update into this one.
+		 */
+		void merge(Entry later) {
+			if(later.contents == null) return;
+			if(this.contents == null) this.contents = new JSONObject();
+
+			try {
+				Iterator<?> iter = later.contents.keys();
+				while (iter.hasNext()) {
+					String name = (String) iter.next();
+					this.contents.put(name, later.contents.opt(name));
+				}
+			} catch (JSONException e) {
+				throw new RuntimeException(e);
+			}
+
+			this.multipart |= later.multipart;
+		}
+
+
+		String toLine() {
+			JSONObject line = new JSONObject();
+
+			try {
+				line.put("method", method);
+				line.put("path", path);
+				line.put("key", key);
+				line.put("multipart", multipart);
+				if(contents != null) line.put("contents", encode(contents));
+			} catch (JSONException e) {
+				throw new RuntimeException(e);
+			}
+
+			return line.toString() + "\n";
+		}
+
+
+		static Entry fromLine(String str) throws JSONException {
+			JSONObject line = new JSONObject(str);
+
+			JSONObject contents = line.optJSONObject("contents");
+			return new Entry(line.getString("method"), line.getString("path"), line.getString("key"),
+								(contents != null) ? (JSONObject) decode(contents) : null, line.optBoolean("multipart"));
+		}
+
+
+		/**
+		 * Replaces ECHOFiles with JSON markers holding their bytes in base64.
+		 */
+		private static Object encode(Object value) throws JSONException {
+
+			if(value instanceof ECHOFile) {
+				ECHOFile file = (ECHOFile) value;
+				JSONObject marker = new JSONObject();
+				marker.put(FILE_MARKER, true);
+				marker.putOpt("name", file.getFileName());
+				marker.putOpt("url_path", file.getUrlPath());
+				byte[] bytes = file.getLocalBytes();
+				if(bytes != null) marker.put("bytes", Base64.encodeToString(bytes, Base64.NO_WRAP));
+				return marker;
+
+			}else if(value instanceof JSONObject) {
+				JSONObject source = (JSONObject) value;
+				JSONObject result = new JSONObject();
+				Iterator<?> iter = source.keys();
+				while (iter.hasNext()) {
+					String name = (String) iter.next();
+					result.put(name, encode(source.opt(name)));
+				}
+				return result;
+
+			}else if(value instanceof JSONArray) {
+				JSONArray source = (JSONArray) value;
+				JSONArray result = new JSONArray();
+				for (int i = 0; i < source.length(); i++) {
+					result.put(encode(source.opt(i)));
+				}
+				return result;
+			}
+
+			return value;
+		}
+
+
+		/**
+		 * Restores ECHOFiles from the JSON markers.
+		 */
+		private static Object decode(Object value) throws JSONException {
+
+			if(value instanceof JSONObject) {
+				JSONObject source = (JSONObject) value;
+
+				if(source.optBoolean(FILE_MARKER)) {
+					String bytes = source.optString("bytes", null);
+					return new ECHOFile(source.optString("name", null), source.optString("url_path", null),
+											(bytes != null) ? Base64.decode(bytes, Base64.NO_WRAP) : null);
+				}
+
+				Iterator<?> iter = source.keys();
+				while (iter.hasNext()) {
+					String name = (String) iter.next();
+					source.put(name, decode(source.opt(name)));
+				}
+
+			}else if(value instanceof JSONArray) {
+				JSONArray source = (JSONArray) value;
+				for (int i = 0; i < source.length(); i++) {
+					source.put(i, decode(source.opt(i)));
+				}
+			}
+
+			return value;
+		}
+	}
+
+
+	/**
+	 * {@.en A ReplayListener is notified of the results of the replay.}
+	 * {@.ja オフラインキューの再送結果を受け取るリスナー。}
+	 */
+	public static abstract class ReplayListener {
+
+		/**
+		 * {@.en Called when a queued operation has been sent.}
+		 * {@.ja キューの操作が送信されたときに呼び出されます。}
+		 *
+		 * @param method the request method (POST/PUT/DELETE)
+		 * @param path the request url path
+		 * @param response the response of the server
+		 */
+		public void onSent(String method, String path, JSONObject response) {}
+
+		/**
+		 * {@.en Called when a queued operation has been rejected by the server and dropped.}
+		 * {@.ja キューの操作がサーバーに拒否され、破棄されたときに呼び出されます。}
+		 *
+		 * @param method the request method (POST/PUT/DELETE)
+		 * @param path the request url path
+		 * @param e the error
+		 */
+		public void onDropped(String method, String path, ECHOException e) {}
+	}
+}
@@ -0,0 +1,296 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.Parcel;
+
+
+/**
+ * An ECHOParcelCodec writes the fields of an {@link ECHODataObject} straight into a Parcel
+ * as type-tagged binary values, and reads them back without any JSON text or conversions.
+ */
+final class ECHOParcelCodec {
+
+	private static final byte NULL = 0;
+	private static final byte JSON_NULL = 1;
+	private static final byte STRING = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte TRUE = 6;
+	private static final byte FALSE = 7;
+	private static final byte DATE = 8;
+	private static final byte FILE = 9;
+	private static final byte OBJECT = 10;
+	private static final byte LAZY_OBJECT = 11;
+	private static final byte ARRAY = 12;
+	private static final byte DATA_OBJECT = 13;
+	private static final byte INSTALLATION = 14;
+	private static final byte VALUE = 15;
+	private static final byte REFID_SET = 16;
+
+	private static final ClassLoader CLASS_LOADER = ECHODataObject.class.getClassLoader();
+
+
+	/**
+	 * Disable constructor since this is an utility class.
+	 */
+	private ECHOParcelCodec() {}
+
+
+	/* Begin field store */
+
+	/**
+	 * Writes all fields of a store into a Parcel.
+	 */
+	static void writeFieldStore(Parcel out, ECHOFieldStore store, int flags) {
+		out.writeInt(store.length());
+
+		Iterator<String> iter = store.keys();
+		while (iter.hasNext()) {
+			String key = iter.next();
+			out.writeString(key);
+			writeValue(out, store.opt(key), flags);
+		}
+	}
+
+
+	/**
+	 * Reads fields written by {@link #writeFieldStore(Parcel, ECHOFieldStore, int)} into a store.
+	 *
+	 * @param instanceId the instance ID of the owner, used to look up the schema of lazy contents
+	 */
+	static void readFieldStore(Parcel in, ECHOFieldStore store, String instanceId) {
+		int size = in.readInt();
+
+		try {
+			for (int i = 0; i < size; i++) {
+				String key = in.readString();
+				store.put(key, readValue(in, instanceId));
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/* End field store */
+
+
+	/* Begin values */
+
+	/**
+	 * Writes a tagged value into a Parcel.
+	 */
+	static void writeValue(Parcel out, Object value, int flags) {
+
+		if(value == null) {
+			out.writeByte(NULL);
+
+		}else if(value == JSONObject.NULL) {
+			out.writeByte(JSON_NULL);
+
+		}else if(value instanceof String) {
+			out.writeByte(STRING);
+			out.writeString((String) value);
+
+		}else if(value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt(((Integer) value).intValue());
+
+		}else if(value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong(((Long) value).longValue());
+
+		}else if(value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(((Double) value).doubleValue());
+
+		}else if(value instanceof Boolean) {
+			out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+
+		}else if(value instanceof ECHODate) {
+			out.writeByte(DATE);
+			out.writeLong(((ECHODate) value).getTime());
+
+		}else if(value instanceof ECHOFile) {
+			ECHOFile file = (ECHOFile) value;
+			out.writeByte(FILE);
+			out.writeString(file.getFileName());
+			out.writeString(file.getUrlPath());
+			out.writeByteArray(file.getLocalBytes());
+
+		}else if(value instanceof ECHOLazyContents) {
+			ECHOLazyContents obj = (ECHOLazyContents) value;
+			out.writeByte(LAZY_OBJECT);
+			out.writeInt(obj.length());
+
+			Iterator<?> iter = obj.keys();
+			while (iter.hasNext()) {
+				String key = (String) iter.next();
+				out.writeString(key);
+				out.writeByte(obj.isConverted(key) ? TRUE : FALSE);
+				writeValue(out, obj.optRaw(key), flags);
+
+				Long fingerprint = obj.fingerprintOf(key);
+				out.writeByte((fingerprint != null) ? TRUE : FALSE);
+				if(fingerprint != null) out.writeLong(fingerprint.longValue());
+			}
+
+		}else if(value instanceof JSONObject) {
+			JSONObject obj = (JSONObject) value;
+			out.writeByte(OBJECT);
+			out.writeInt(obj.length());
+
+			Iterator<?> iter = obj.keys();
+			while (iter.hasNext()) {
+				String key = (String) iter.next();
+				out.writeString(key);
+				writeValue(out, obj.opt(key), flags);
+			}
+
+		}else if(value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			out.writeByte(ARRAY);
+			out.writeInt(array.length());
+
+			for (int i = 0; i < array.length(); i++) {
+				writeValue(out, array.opt(i), flags);
+			}
+
+		}else if(value instanceof ECHODataObject) {
+			out.writeByte(DATA_OBJECT);
+			out.writeParcelable((ECHODataObject<?>) value, flags);
+
+		}else if(value instanceof ECHORefidSet) {
+			out.writeByte(REFID_SET);
+			out.writeStringArray(((ECHORefidSet) value).toArray());
+
+		}else if(value instanceof ECHOInstallation) {
+			ECHOInstallation installation = (ECHOInstallation) value;
+			out.writeByte(INSTALLATION);
+			out.writeString(installation.deviceType);
+			out.writeString(installation.deviceToken);
+
+		}else{
+			out.writeByte(VALUE);
+			out.writeValue(value);
+		}
+	}
+
+
+	/**
+	 * Reads a value written by {@link #writeValue(Parcel, Object, int)}.
+	 *
+	 * @param instanceId the instance ID of the owner, used to look up the schema of lazy contents
+	 */
+	static Object readValue(Parcel in, String instanceId) throws JSONException {
+		byte tag = in.readByte();
+
+		switch (tag) {
+			case NULL:
+				return null;
+
+			case JSON_NULL:
+				return JSONObject.NULL;
+
+			case STRING:
+				return in.readString();
+
+			case INT:
+				return Integer.valueOf(in.readInt());
+
+			case LONG:
+				return Long.valueOf(in.readLong());
+
+			case DOUBLE:
+				return Double.valueOf(in.readDouble());
+
+			case TRUE:
+				return Boolean.TRUE;
+
+			case FALSE:
+				return Boolean.FALSE;
+
+			case DATE:
+				return new ECHODate(in.readLong());
+
+			case FILE: {
+				String name = in.readString();
+				String urlPath = in.readString();
+				return new ECHOFile(name, urlPath, in.createByteArray());
+			}
+
+			case LAZY_OBJECT: {
+				ECHOLazyContents obj = new ECHOLazyContents(ECHOSchema.forInstance(instanceId));
+				int size = in.readInt();
+				for (int i = 0; i < size; i++) {
+					String key = in.readString();
+					boolean converted = (in.readByte() == TRUE);
+					obj.putRaw(key, readValue(in, instanceId), converted);
+					if(in.readByte() == TRUE) obj.setFingerprint(key, Long.valueOf(in.readLong()));
+				}
+				return obj;
+			}
+
+			case OBJECT: {
+				JSONObject obj = new JSONObject();
+				int size = in.readInt();
+				for (int i = 0; i < size; i++) {
+					String key = in.readString();
+					obj.put(key, readValue(in, instanceId));
+				}
+				return obj;
+			}
+
+			case ARRAY: {
+				JSONArray array = new JSONArray();
+				int size = in.readInt();
+				for (int i = 0; i < size; i++) {
+					array.put(readValue(in, instanceId));
+				}
+				return array;
+			}
+
+			case DATA_OBJECT:
+				return in.readParcelable(CLASS_LOADER);
+
+			case INSTALLATION: {
+				ECHOInstallation installation = new ECHOInstallation();
+				installation.deviceType = in.readString();
+				installation.deviceToken = in.readString();
+				return installation;
+			}
+
+			case REFID_SET:
+				return new ECHORefidSet(in.createStringArray());
+
+			case VALUE:
+				return in.readValue(CLASS_LOADER);
+
+			default:
+				throw new IllegalStateException("Unknown parcel value tag: " + tag);
+		}
+	}
+
+	/* End values */
+}
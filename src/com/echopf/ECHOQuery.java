@@ -20,7 +20,6 @@ import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.net.*;
 import java.io.*;
@@ -32,6 +31,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import android.os.Handler;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 
 /**
@@ -59,10 +60,62 @@ public class ECHOQuery {
 	public static <T extends ECHODataObject<T>> ECHOList<T> doFind(final boolean sync, final String listKey, final String resourceType, 
 			final FindCallback<T> callback, final String instanceId, final JSONObject fParams,
 			final ECHODataObjectFactory<T> factory) throws ECHOException {
+		return doFind(ECHOClient.current(), sync, listKey, resourceType, callback, instanceId, fParams, factory);
+	}
+
+
+	/**
+	 * Does Find objects from the remote server by a client.
+	 * The found objects are bound to the client.
+	 * @param client the client to send the request
+	 * @param sync : if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param listKey the key associated with the object list
+	 * @param clazz the object class
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param resourceType the type of this object
+	 * @param params to control the output objects
+	 * @throws ECHOException
+	 */
+	public static <T extends ECHODataObject<T>> ECHOList<T> doFind(final ECHOClient client, final boolean sync, final String listKey, final String resourceType, 
+			final FindCallback<T> callback, final String instanceId, final JSONObject fParams,
+			final ECHODataObjectFactory<T> factory) throws ECHOException {
+		return doFind(client, sync, listKey, resourceType, callback, instanceId, fParams, null, factory);
+	}
+
+
+	/**
+	 * Does Find objects from the remote server by a client with typed parameters.
+	 * The parameters are sent by their cached query string.
+	 * @param client the client to send the request
+	 * @param sync : if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param listKey the key associated with the object list
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param resourceType the type of this object
+	 * @param params to control the output objects
+	 * @throws ECHOException
+	 */
+	public static <T extends ECHODataObject<T>> ECHOList<T> doFind(final ECHOClient client, final boolean sync, final String listKey, final String resourceType, 
+			final FindCallback<T> callback, final String instanceId, final ECHOQueryParams params,
+			final ECHODataObjectFactory<T> factory) throws ECHOException {
+		return doFind(client, sync, listKey, resourceType, callback, instanceId, null, (params != null) ? params : new ECHOQueryParams(), factory);
+	}
+
+
+	/**
+	 * Does Find objects by either form of the parameters.
+	 */
+	private static <T extends ECHODataObject<T>> ECHOList<T> doFind(final ECHOClient client, final boolean sync, final String listKey, final String resourceType, 
+			final FindCallback<T> callback, final String instanceId, final JSONObject fParams, final ECHOQueryParams qParams,
+			final ECHODataObjectFactory<T> factory) throws ECHOException {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
 		
 		// Get ready a background thread
 		final Handler handler = new Handler();
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = client.getExecutor();
 	    Callable<ECHOList<T>> communicator = new Callable<ECHOList<T>>() {
 	    	  @Override
 	    	  public ECHOList<T> call() throws ECHOException {
@@ -70,25 +123,36 @@ public class ECHOQuery {
 					ECHOList<T> objList = null;
 					
 					try {
-						JSONObject response = getRequest(instanceId + "/" + resourceType , fParams);
-
-						/* begin copying data */
-						objList = new ECHOList<T>(response.optJSONObject("paginate"));
+						objList = (qParams != null)
+								? ECHOLocalStore.<T>findLocally(client, instanceId, qParams)
+								: ECHOLocalStore.<T>findLocally(client, instanceId, fParams);
+
+						if(objList == null) { // ask the server
+							String path = instanceId + "/" + resourceType;
+							JSONObject response = (qParams != null)
+									? request(client, path, qParams)
+									: client.getRequest(path, fParams);
+
+							/* begin copying data */
+							objList = new ECHOList<T>(response.optJSONObject("paginate"));
 						
-						JSONArray items = response.optJSONArray(listKey);
-						if(items == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
+							JSONArray items = response.optJSONArray(listKey);
+							if(items == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
 						
-						for (int i = 0; i < items.length(); i++) {
-							JSONObject item = items.optJSONObject(i);
-							if(item == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
+							for (int i = 0; i < items.length(); i++) {
+								JSONObject item = items.optJSONObject(i);
+								if(item == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
 							
-							String refid = item.optString("refid");
-							if(refid.isEmpty()) continue;
+								String refid = item.optString("refid");
+								if(refid.isEmpty()) continue;
 
-							T obj = factory.create(instanceId, refid, item);
-							objList.add(obj);
+								T obj = factory.create(instanceId, refid, item);
+								obj.setClient(client);
+								objList.add(obj);
+							}
+							/* end copying data */
+							ECHOLocalStore.cache(client, instanceId, objList);
 						}
-						/* end copying data */
 
 					} catch (ECHOException e) {
 						exception = e;
@@ -143,6 +207,150 @@ public class ECHOQuery {
 	}
 	
 	
+	/**
+	 * Does Count objects on the remote server by a client.
+	 * Only the first object is requested, and only the `paginate` block of the response is parsed.
+	 * @param client the client to send the request
+	 * @param sync : if set TRUE, then the main (UI) thread is waited for complete the counting in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param resourceType the type of this object
+	 * @param callback invoked after the counting is completed
+	 * @param instanceId the reference ID of the counting target instance
+	 * @param params to control the output objects
+	 * @throws ECHOException
+	 */
+	public static int doCount(final ECHOClient client, final boolean sync, final String resourceType, 
+			final CountCallback callback, final String instanceId, final JSONObject params) throws ECHOException {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+
+		// Get ready a background thread
+		final Handler handler = new Handler();
+	    ExecutorService executor = client.getExecutor();
+	    Callable<Integer> communicator = new Callable<Integer>() {
+	    	  @Override
+	    	  public Integer call() throws ECHOException {
+					ECHOException exception = null;
+					int count = 0;
+					
+					try {
+						ECHOQueryParams query = new ECHOQueryParams(params).page(1).limit(1);
+
+						count = requestPaginate(client, instanceId + "/" + resourceType, query).optInt("count");
+					} catch (ECHOException e) {
+						exception = e;
+					} catch (Exception e) {
+						exception = new ECHOException(e);
+					}
+					
+					if(sync == false) {
+						
+						// Execute a callback method in the main (UI) thread.
+						if(callback != null) {
+							final ECHOException fException = exception;
+							final int fCount = count;
+							
+							handler.post(new Runnable() {
+								@Override
+								public void run() {
+									callback.done(fCount, fException);
+								}
+							});
+						}
+						
+						return 0;
+					
+					}else{
+						
+						if(exception == null) return count;
+						throw exception;
+					
+					}
+	    	  }
+	    };
+	    
+	    Future<Integer> future = executor.submit(communicator);
+	    
+	    if(sync) {
+		    try {
+		    	return future.get().intValue();
+		    } catch (InterruptedException e) {
+		    	Thread.currentThread().interrupt(); // ignore/reset
+		    } catch (ExecutionException e) {
+		    	Throwable e2 = e.getCause();
+		    	
+		    	if (e2 instanceof ECHOException) {
+		    		throw (ECHOException) e2;
+		    	}
+		    	
+		    	throw new RuntimeException(e2);
+		    }
+	    }
+	    
+	    return 0;
+	}
+
+
+	/**
+	 * Sends a GET request and stream-parses only the `paginate` block of the response,
+	 * skipping the listed objects without building them.
+	 * @param client the client to send the request
+	 * @param path a request url path
+	 * @param query request parameters
+	 * @return the paginate data (empty if the response has none)
+	 * @throws ECHOException
+	 */
+	static JSONObject requestPaginate(ECHOClient client, String path, ECHOQueryParams query) throws ECHOException {
+		InputStream in = requestRaw(client, path, "GET", null, query, false);
+		if(in == null) throw new ECHOException(ECHOException.INVALID_JSON_FORMAT, "Invalid JSON format.");
+
+		JSONObject paginate = new JSONObject();
+		JsonReader reader = new JsonReader(new InputStreamReader(in));
+
+		try {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if(!reader.nextName().equals("paginate")) {
+					reader.skipValue();
+					continue;
+				}
+
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					JsonToken token = reader.peek();
+
+					if(token == JsonToken.NUMBER) {
+						paginate.put(name, reader.nextInt());
+					}else if(token == JsonToken.BOOLEAN) {
+						paginate.put(name, reader.nextBoolean());
+					}else if(token == JsonToken.STRING) {
+						paginate.put(name, reader.nextString());
+					}else{
+						reader.skipValue();
+					}
+				}
+				break; // the rest is not needed
+			}
+		} catch (IOException e) {
+			throw new ECHOException(ECHOException.INVALID_JSON_FORMAT, "Invalid JSON format.");
+		} catch (IllegalStateException e) {
+			throw new ECHOException(ECHOException.INVALID_JSON_FORMAT, "Invalid JSON format.");
+		} catch (NumberFormatException e) {
+			throw new ECHOException(ECHOException.INVALID_JSON_FORMAT, "Invalid JSON format.");
+		} catch (JSONException e) {
+			throw new ECHOException(e);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException ignored) {
+				// skip
+			}
+		}
+
+		return paginate;
+	}
+
+
 	/**
 	 * Sends a GET request.
 	 * @param path a request url path
@@ -251,11 +459,60 @@ public class ECHOQuery {
 	 * @throws ECHOException
 	 */
 	public static JSONObject request(String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException  {
+		return request(ECHOClient.current(), path, httpMethod, data, multipart);
+	}
+
+
+	/**
+	 * Sends a HTTP request with optional request contents/parameters by a client.
+	 * @param client the client to send the request
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @param multipart use multipart/form-data to encode the contents
+	 * @throws ECHOException
+	 */
+	static JSONObject request(ECHOClient client, String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException  {
+		return parse(requestRaw(client, path, httpMethod, data, null, multipart));
+	}
+
+
+	/**
+	 * Sends a GET request with typed parameters by a client.
+	 * The parameters are sent by their cached query string.
+	 * @param client the client to send the request
+	 * @param path a request url path
+	 * @param params request parameters
+	 * @throws ECHOException
+	 */
+	static JSONObject request(ECHOClient client, String path, ECHOQueryParams params) throws ECHOException  {
+		return parse(requestRaw(client, path, "GET", null, params, false));
+	}
+
+
+	/**
+	 * Sends a HTTP request by a client without the access token.
+	 * The request is never replayed with a renewed token, so it does not wait for a running renewal.
+	 * @param client the client to send the request
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @throws ECHOException
+	 */
+	static JSONObject requestWithoutToken(ECHOClient client, String path, String httpMethod, JSONObject data) throws ECHOException  {
+		return parse(proceed(client, client.getInterceptors(), 0, newRequest(client, null, path, httpMethod, data, null, false)));
+	}
+
+
+	/**
+	 * Parses a response into a JSONObject.
+	 */
+	private static JSONObject parse(InputStream in) throws ECHOException  {
 
 		JSONObject response = null;
 
 		try {
-			String jsonStr = ECHOQuery.getResponseString(requestRaw(path, httpMethod, data, multipart));
+			String jsonStr = ECHOQuery.getResponseString(in);
 			response = new JSONObject(jsonStr);
 		} catch (JSONException e) {
 			throw new ECHOException(ECHOException.INVALID_JSON_FORMAT, "Invalid JSON format.");
@@ -266,7 +523,8 @@ public class ECHOQuery {
 
 	
 	/**
-	 * Sends a HTTP request with optional request contents/parameters.
+	 * Sends a HTTP request with optional request contents/parameters
+	 * through the registered {@link ECHOInterceptor}s.
 	 * @param path a request url path
 	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
 	 * @param data request contents/parameters
@@ -274,8 +532,106 @@ public class ECHOQuery {
 	 * @throws ECHOException
 	 */
 	public static InputStream requestRaw(String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException  {
-		final String secureDomain = ECHO.secureDomain;
-		if(secureDomain == null) throw new IllegalStateException("The SDK is not initialized.　Please call `ECHO.initialize()`.");
+		return requestRaw(ECHOClient.current(), path, httpMethod, data, multipart);
+	}
+
+
+	/**
+	 * Sends a HTTP request with optional request contents/parameters by a client
+	 * through the registered {@link ECHOInterceptor}s.
+	 * If the access token is rejected and the client has an {@link ECHOReauthenticator},
+	 * the request is replayed once with the renewed token.
+	 * @param client the client to send the request
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @param multipart use multipart/form-data to encode the contents
+	 * @throws ECHOException
+	 */
+	static InputStream requestRaw(final ECHOClient client, String path, String httpMethod, JSONObject data, boolean multipart) throws ECHOException  {
+		return requestRaw(client, path, httpMethod, data, null, multipart);
+	}
+
+
+	/**
+	 * Sends a HTTP request with either form of the parameters.
+	 */
+	private static InputStream requestRaw(final ECHOClient client, String path, String httpMethod, JSONObject data, ECHOQueryParams params, boolean multipart) throws ECHOException  {
+		final String accessToken = client.getAccessToken();
+
+		try {
+			return proceed(client, client.getInterceptors(), 0, newRequest(client, accessToken, path, httpMethod, data, params, multipart));
+		} catch (ECHOException e) {
+			if(e.getCode() != ECHOException.ACCESSTOKEN_INCORRECTED_OR_EXPIRED) throw e;
+			if(accessToken == null || accessToken.isEmpty()) throw e;
+
+			// Wait for the renewal of the token, then replay
+			String newToken = client.refreshAccessToken(accessToken);
+			if(newToken == null || newToken.equals(accessToken)) throw e;
+
+			client.countReplay();
+			return proceed(client, client.getInterceptors(), 0, newRequest(client, newToken, path, httpMethod, data, params, multipart));
+		}
+	}
+
+
+	/**
+	 * Constructs a request with the credential headers of a client.
+	 */
+	private static ECHORequest newRequest(ECHOClient client, String accessToken, String path, String httpMethod, JSONObject data, ECHOQueryParams params, boolean multipart) {
+		ECHORequest request = new ECHORequest(path, httpMethod, data, multipart);
+		if(params != null) request.setQueryParams(params);
+		request.setHeader("X-ECHO-APP-ID", client.getAppId());
+		request.setHeader("X-ECHO-APP-KEY", client.getAppKey());
+
+		// Set access token
+		if(accessToken != null && !accessToken.isEmpty()) request.setHeader("X-ECHO-ACCESS-TOKEN", accessToken);
+
+		return request;
+	}
+
+
+	/**
+	 * Passes a request to the interceptor at the index, or sends it if no interceptor remains.
+	 * @param client the client sending the request
+	 * @param interceptors the registered interceptors
+	 * @param index the index of the next interceptor
+	 * @param request the request to pass
+	 * @throws ECHOException
+	 */
+	private static InputStream proceed(final ECHOClient client, final ECHOInterceptor[] interceptors, final int index, final ECHORequest request) throws ECHOException {
+		if(index >= interceptors.length) return execute(client, request);
+
+		return interceptors[index].intercept(new ECHOInterceptor.Chain() {
+
+			@Override
+			public ECHORequest request() {
+				return request;
+			}
+
+			@Override
+			public InputStream proceed(ECHORequest request) throws ECHOException {
+				if(request == null) throw new IllegalArgumentException("argument `request` must not be null.");
+				return ECHOQuery.proceed(client, interceptors, index + 1, request);
+			}
+		});
+	}
+
+
+	/**
+	 * Sends a HTTP request to the server.
+	 * @param client the client sending the request
+	 * @param request the request to send
+	 * @throws ECHOException
+	 */
+	private static InputStream execute(ECHOClient client, ECHORequest request) throws ECHOException  {
+		final String secureDomain = client.getSecureDomain();
+
+		final String path = request.getPath();
+		final String httpMethod = request.getHttpMethod();
+		final ECHOQueryParams params = httpMethod.equals("GET") ? request.getQueryParams() : null; // keeps its cached query string
+		final JSONObject data = (params != null) ? null : request.getData();
+		final boolean multipart = request.isMultipart();
 
 		String baseUrl = new StringBuilder("https://").append(secureDomain).toString();
 		String url = new StringBuilder(baseUrl).append("/").append(path).toString();
@@ -291,23 +647,10 @@ public class ECHOQuery {
 			boolean isContainQuery = urlObj.getQuery() != null;
 			if(isContainQuery) apiUrl.append("?").append(urlObj.getQuery());
 
-			// Append the QueryString from data
-			if (httpMethod.equals("GET") && data != null) {
-				boolean firstItem = true;
-				Iterator<?> iter = data.keys();
-				while (iter.hasNext()) {
-					if (firstItem && !isContainQuery) {
-						firstItem = false;
-						apiUrl.append("?");
-					} else {
-						apiUrl.append("&");
-					}
-					String key = (String)iter.next();
-					String value = data.optString(key);
-					apiUrl.append(key);
-					apiUrl.append("=");
-					apiUrl.append(value);
-				}
+			// Append the QueryString from data (sorted and percent-encoded)
+			if (httpMethod.equals("GET") && (params != null || data != null)) {
+				String query = (params != null) ? params.toQueryString() : new ECHOQueryParams(data).toQueryString();
+				if (!query.isEmpty()) apiUrl.append(isContainQuery ? "&" : "?").append(query);
 			}
 
 			URL urlConn = new URL(apiUrl.toString());
@@ -316,21 +659,15 @@ public class ECHOQuery {
 			throw new ECHOException(e);
 		}
 		
-		final String appId = ECHO.appId;
-		final String appKey = ECHO.appKey;
-		final String accessToken = ECHO.accessToken;
-
-		if(appId == null || appKey == null) throw new IllegalStateException("The SDK is not initialized.　Please call `ECHO.initialize()`.");
-
 		InputStream responseInputStream = null;
 		
 		try {
 			httpClient.setRequestMethod(httpMethod);
-			httpClient.addRequestProperty("X-ECHO-APP-ID", appId);
-			httpClient.addRequestProperty("X-ECHO-APP-KEY", appKey);
 
-			// Set access token
-			if(accessToken != null && !accessToken.isEmpty()) httpClient.addRequestProperty("X-ECHO-ACCESS-TOKEN", accessToken);
+			// Set request headers
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				httpClient.addRequestProperty(header.getKey(), header.getValue());
+			}
 
 			// Build content
 			if (!httpMethod.equals("GET") && data != null) {
@@ -0,0 +1,376 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * {@.en An ECHOQueryParams is a set of list control parameters for finding objects.
+ * 		The parameters are kept sorted by name and percent-encoded into a canonical query string,
+ * 		so that the same parameters always produce the same URL and the same {@link #getRequestKey()}.}
+ * {@.ja オブジェクト検索のリスト制御パラメータ。
+ * 		パラメータは名前順に保持され、正規化されたクエリ文字列にパーセントエンコードされるため、
+ * 		同じパラメータは常に同じURL・同じ{@link #getRequestKey()}になります。}
+ */
+public final class ECHOQueryParams {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	private static final Map<String, String> encodedNames = new ConcurrentHashMap<String, String>();
+	private static final Map<String, Shape> shapes = new ConcurrentHashMap<String, Shape>();
+
+	/**
+	 * {@.en The shape of the paging parameters: `page`, `limit`, `order` and `asc`.}
+	 * {@.ja ページング用パラメータ（`page`, `limit`, `order`, `asc`）の形。}
+	 */
+	public static final Shape LIST = shape("page", "limit", "order", "asc");
+
+	private final TreeMap<String, String> params = new TreeMap<String, String>();
+	private String queryString = null; // cached
+
+
+	/* Begin constructors */
+
+	/**
+	 * {@.en Constructs empty parameters.}
+	 * {@.ja 空のパラメータを生成します。}
+	 */
+	public ECHOQueryParams() {
+		super();
+	}
+
+
+	/**
+	 * {@.en Constructs parameters from a JSONObject of the list control parameters.}
+	 * {@.ja リスト制御パラメータのJSONObjectからパラメータを生成します。}
+	 *
+	 * @param source
+	 * 		{@.en the source parameters, or null}
+	 * 		{@.ja 元のパラメータ（null可）}
+	 */
+	public ECHOQueryParams(JSONObject source) {
+		if(source == null) return;
+
+		Iterator<?> iter = source.keys();
+		while (iter.hasNext()) {
+			String name = (String) iter.next();
+			Object value = source.opt(name);
+			if(value != null && value != JSONObject.NULL) params.put(name, stringify(value));
+		}
+	}
+
+	/* End constructors */
+
+
+	/* Begin parameters */
+
+	/**
+	 * {@.en Sets the page number to get.}
+	 * {@.ja 取得するページ番号をセットします。}
+	 */
+	public ECHOQueryParams page(int page) {
+		return put("page", page);
+	}
+
+	/**
+	 * {@.en Sets the number of the objects per page.}
+	 * {@.ja 1ページあたりの取得件数をセットします。}
+	 */
+	public ECHOQueryParams limit(int limit) {
+		return put("limit", limit);
+	}
+
+	/**
+	 * {@.en Sets the field to sort the objects by.}
+	 * {@.ja 並び替えの基準となるフィールドをセットします。}
+	 */
+	public ECHOQueryParams order(String field) {
+		return put("order", field);
+	}
+
+	/**
+	 * {@.en Sets whether the objects are sorted in the ascending order.}
+	 * {@.ja 昇順に並び替えるかどうかをセットします。}
+	 */
+	public ECHOQueryParams asc(boolean asc) {
+		return put("asc", asc);
+	}
+
+	/**
+	 * {@.en Sets a parameter. If the value is null, the parameter is removed.}
+	 * {@.ja パラメータをセットします。値がnullの場合はパラメータを削除します。}
+	 *
+	 * @param name
+	 * 		{@.en the name of the parameter}
+	 * 		{@.ja パラメータ名}
+	 * @param value
+	 * 		{@.en the value (a String, Number, Boolean or ECHODate)}
+	 * 		{@.ja 値（String, Number, Boolean, ECHODate）}
+	 */
+	public ECHOQueryParams put(String name, Object value) {
+		if(name == null) throw new IllegalArgumentException("argument `name` must not be null.");
+
+		if(value == null) {
+			params.remove(name);
+		}else{
+			params.put(name, stringify(value));
+		}
+		this.queryString = null;
+		return this;
+	}
+
+	/**
+	 * {@.en Gets a parameter as a string, or null if it is not set.}
+	 * {@.ja パラメータを文字列として取得します。セットされていない場合はnullを返します。}
+	 */
+	public String get(String name) {
+		return params.get(name);
+	}
+
+	/**
+	 * {@.en Returns the number of the parameters.}
+	 * {@.ja パラメータの数を返します。}
+	 */
+	public int size() {
+		return params.size();
+	}
+
+	/* End parameters */
+
+
+	/**
+	 * {@.en Converts the parameters into the percent-encoded query string sorted by name (without `?`).}
+	 * {@.ja 名前順に並べてパーセントエンコードしたクエリ文字列（`?`を含まない）に変換します。}
+	 */
+	public String toQueryString() {
+		String query = this.queryString;
+		if(query != null) return query;
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			if(sb.length() > 0) sb.append('&');
+			sb.append(encodeName(param.getKey())).append('=');
+			encode(param.getValue(), sb);
+		}
+
+		this.queryString = query = sb.toString();
+		return query;
+	}
+
+
+	/**
+	 * {@.en Gets the request key of these parameters, which is identical for the same parameters
+	 * 		and usable as a key of caches or for the deduplication of requests.}
+	 * {@.ja パラメータのリクエストキーを取得します。同じパラメータに対しては同一で、
+	 * 		キャッシュのキーやリクエストの重複排除に使用できます。}
+	 */
+	public String getRequestKey() {
+		return toQueryString();
+	}
+
+
+	/**
+	 * {@.en Gets the request key of a request with these parameters to a path.}
+	 * {@.ja パスへのリクエストのリクエストキーを取得します。}
+	 *
+	 * @param path
+	 * 		{@.en a request url path (e.g. "instanceId/records")}
+	 * 		{@.ja リクエストURLのパス}
+	 */
+	public String getRequestKey(String path) {
+		if(path == null) throw new IllegalArgumentException("argument `path` must not be null.");
+		return path + "?" + toQueryString();
+	}
+
+
+	/**
+	 * {@.en Converts the parameters into a JSONObject of the list control parameters.}
+	 * {@.ja リスト制御パラメータのJSONObjectに変換します。}
+	 */
+	public JSONObject toJSONObject() {
+		JSONObject obj = new JSONObject();
+		try {
+			for (Map.Entry<String, String> param : params.entrySet()) {
+				obj.put(param.getKey(), param.getValue());
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+		return obj;
+	}
+
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof ECHOQueryParams)) return false;
+		return params.equals(((ECHOQueryParams) o).params);
+	}
+
+	@Override
+	public int hashCode() {
+		return params.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return toQueryString();
+	}
+
+
+	/* Begin shapes */
+
+	/**
+	 * {@.en Gets the shape of parameters with a fixed set of names, which is compiled once and reused.}
+	 * {@.ja 決まった名前の組からなるパラメータの形を取得します。形は一度だけコンパイルされ、再利用されます。}
+	 *
+	 * @param names
+	 * 		{@.en the names of the parameters}
+	 * 		{@.ja パラメータ名}
+	 */
+	public static Shape shape(String... names) {
+		if(names == null) throw new IllegalArgumentException("argument `names` must not be null.");
+
+		String key = Arrays.toString(names);
+		Shape shape = shapes.get(key);
+		if(shape == null) {
+			shape = new Shape(names);
+			if(shapes.size() < 256) shapes.put(key, shape); // shapes are meant to be constants; don't grow without bound
+		}
+		return shape;
+	}
+
+
+	/**
+	 * {@.en A Shape is a compiled set of parameter names, which binds values into parameters
+	 * 		without sorting or encoding the names again.}
+	 * {@.ja パラメータ名の組をコンパイルした形。名前の並び替えやエンコードをせずに値をパラメータに束縛します。}
+	 */
+	public static final class Shape {
+		private final String[] names; // in the given order
+		private final int[] sorted; // the indexes of the names in the sorted order
+		private final String[] prefixes; // the encoded "name=" fragments in the sorted order
+
+		private Shape(String[] names) {
+			this.names = names.clone();
+
+			final String[] fNames = this.names;
+			Integer[] order = new Integer[fNames.length];
+			for (int i = 0; i < order.length; i++) {
+				if(fNames[i] == null) throw new IllegalArgumentException("argument `names` must not contain null.");
+				order[i] = Integer.valueOf(i);
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return fNames[a.intValue()].compareTo(fNames[b.intValue()]);
+				}
+			});
+
+			this.sorted = new int[order.length];
+			this.prefixes = new String[order.length];
+			for (int i = 0; i < order.length; i++) {
+				sorted[i] = order[i].intValue();
+				prefixes[i] = encodeName(fNames[sorted[i]]) + "=";
+			}
+		}
+
+		/**
+		 * {@.en Binds values to the names in the given order. Null values are skipped.}
+		 * {@.ja 値を名前の順に束縛します。nullの値はスキップされます。}
+		 */
+		public ECHOQueryParams bind(Object... values) {
+			if(values == null || values.length != names.length) throw new IllegalArgumentException("argument `values` must have " + names.length + " values.");
+
+			ECHOQueryParams params = new ECHOQueryParams();
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < sorted.length; i++) {
+				Object value = values[sorted[i]];
+				if(value == null) continue;
+
+				String str = stringify(value);
+				params.params.put(names[sorted[i]], str);
+				if(sb.length() > 0) sb.append('&');
+				encode(str, sb.append(prefixes[i]));
+			}
+			params.queryString = sb.toString();
+			return params;
+		}
+	}
+
+	/* End shapes */
+
+
+	/* Begin encoding */
+
+	private static String stringify(Object value) {
+		if(value instanceof ECHODate) return ((ECHODate) value).toStringForECHO();
+		return value.toString();
+	}
+
+
+	private static String encodeName(String name) {
+		String encoded = encodedNames.get(name);
+		if(encoded == null) {
+			encoded = encode(name, new StringBuilder()).toString();
+			if(encodedNames.size() < 1024) encodedNames.put(name, encoded);
+		}
+		return encoded;
+	}
+
+
+	/**
+	 * Percent-encodes a string as UTF-8, leaving only the unreserved characters of RFC 3986.
+	 */
+	static StringBuilder encode(String s, StringBuilder sb) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '-' || c == '_' || c == '.' || c == '~') {
+				sb.append(c);
+				continue;
+			}
+
+			byte[] bytes;
+			try {
+				if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+					bytes = s.substring(i, i + 2).getBytes("UTF-8");
+					i++;
+				}else{
+					bytes = String.valueOf(c).getBytes("UTF-8");
+				}
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+
+			for (byte b : bytes) {
+				sb.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+			}
+		}
+		return sb;
+	}
+
+	/* End encoding */
+}
@@ -0,0 +1,52 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+
+/**
+ * {@.en An ECHOReauthenticator renews the access token of a client when the server rejects it
+ * 		with {@link ECHOException#ACCESSTOKEN_INCORRECTED_OR_EXPIRED}.
+ * 		It is registered with {@link ECHOClient#setReauthenticator(ECHOReauthenticator)}.
+ * 		Only one renewal runs at a time per client; the requests failing meanwhile wait for it
+ * 		and are then replayed once with the new token.}
+ * {@.ja サーバーが{@link ECHOException#ACCESSTOKEN_INCORRECTED_OR_EXPIRED}でアクセストークンを拒否したときに、
+ * 		クライアントのアクセストークンを更新する再認証処理。
+ * 		{@link ECHOClient#setReauthenticator(ECHOReauthenticator)}で登録します。
+ * 		更新はクライアントごとに同時に1つだけ実行され、その間に失敗したリクエストは更新を待ってから
+ * 		新しいトークンで1度だけ再送されます。}
+ */
+public interface ECHOReauthenticator {
+
+	/**
+	 * {@.en Renews an access token, e.g. by logging-in again with
+	 * 		{@link com.echopf.members.ECHOMemberQuery#renewAccessToken(ECHOClient, String, String, String)}.
+	 * 		This method runs on the thread of the first failing request, and the other requests of the client
+	 * 		failing meanwhile wait for it. Send its requests on this thread and without the access token
+	 * 		(e.g. by {@link ECHOClient#postRequestWithoutToken(String, org.json.JSONObject)});
+	 * 		they must not wait for other threads of the client, such as {@code ECHOMemberQuery.login},
+	 * 		whose requests would wait for this renewal in turn.}
+	 * {@.ja アクセストークンを更新します（{@link com.echopf.members.ECHOMemberQuery#renewAccessToken(ECHOClient, String, String, String)}による再ログインなど）。
+	 * 		このメソッドは最初に失敗したリクエストのスレッドで実行され、その間に失敗したクライアントの他のリクエストは更新を待ちます。
+	 * 		リクエストはこのスレッドから、アクセストークンなしで送信してください（{@link ECHOClient#postRequestWithoutToken(String, org.json.JSONObject)}など）。
+	 * 		{@code ECHOMemberQuery.login}のようにクライアントの他のスレッドを待つと、そのリクエストがこの更新を待つためデッドロックします。}
+	 *
+	 * @param client the client whose access token is rejected
+	 * @param expiredToken the rejected access token
+	 * @return the new access token, or null to give up (the original error is thrown)
+	 * @throws ECHOException
+	 */
+	String reauthenticate(ECHOClient client, String expiredToken) throws ECHOException;
+}
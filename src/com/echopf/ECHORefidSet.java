@@ -0,0 +1,227 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.json.JSONArray;
+
+
+/**
+ * {@.en An ECHORefidSet is a compact set of reference IDs which keeps the insertion order.
+ * 		It is backed by plain String arrays (open addressing with linear probing),
+ * 		so that it holds hundreds of thousands of IDs without an entry object per ID.}
+ * {@.ja 追加順を保持する、参照IDのコンパクトな集合。
+ * 		String配列のみ（オープンアドレス法・線形探索）で構成されるため、IDごとのエントリオブジェクトを生成せずに
+ * 		数十万件のIDを保持できます。}
+ */
+public final class ECHORefidSet implements Iterable<String> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private String[] table; // the hash table, whose length is a power of two
+	private String[] order; // the IDs in the insertion order
+	private int size = 0;
+
+
+	/* Begin constructors */
+
+	/**
+	 * {@.en Constructs a new empty set.}
+	 * {@.ja 空の集合を生成します。}
+	 */
+	public ECHORefidSet() {
+		this(MIN_CAPACITY);
+	}
+
+
+	/**
+	 * {@.en Constructs a new empty set sized for an expected number of IDs.}
+	 * {@.ja 想定される件数に合わせた空の集合を生成します。}
+	 *
+	 * @param expectedSize
+	 * 		{@.en the expected number of IDs}
+	 * 		{@.ja 想定されるIDの件数}
+	 */
+	public ECHORefidSet(int expectedSize) {
+		if(expectedSize < 0) throw new IllegalArgumentException("argument `expectedSize` must not be negative.");
+
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) capacity <<= 1;
+
+		this.table = new String[capacity];
+		this.order = new String[Math.max(expectedSize, MIN_CAPACITY / 2)];
+	}
+
+
+	/**
+	 * Constructs a set of IDs (e.g. read from a Parcel).
+	 */
+	ECHORefidSet(String[] refids) {
+		this(refids.length);
+		for (String refid : refids) add(refid);
+	}
+
+	/* End constructors */
+
+
+	/**
+	 * {@.en Adds a reference ID. Null or empty IDs are ignored.}
+	 * {@.ja 参照IDを追加します。nullや空文字列は無視されます。}
+	 *
+	 * @param refid
+	 * 		{@.en the adding ID}
+	 * 		{@.ja 追加するID}
+	 * @return {@.en true if the ID is added, false if it is already contained or ignored}
+	 * 			{@.ja 追加した場合はtrue、すでに含まれているか無視した場合はfalse}
+	 */
+	public boolean add(String refid) {
+		if(refid == null || refid.isEmpty()) return false;
+
+		int mask = table.length - 1;
+		int i = hash(refid) & mask;
+		String slot;
+		while ((slot = table[i]) != null) {
+			if(slot.equals(refid)) return false;
+			i = (i + 1) & mask;
+		}
+
+		table[i] = refid;
+		if(size == order.length) {
+			String[] grown = new String[order.length * 2];
+			System.arraycopy(order, 0, grown, 0, size);
+			order = grown;
+		}
+		order[size++] = refid;
+
+		if(size * 2 > table.length) rehash(table.length * 2);
+		return true;
+	}
+
+
+	/**
+	 * {@.en Returns whether this set contains a reference ID.}
+	 * {@.ja 参照IDが含まれているかを返します。}
+	 */
+	public boolean contains(String refid) {
+		if(refid == null || refid.isEmpty()) return false;
+
+		int mask = table.length - 1;
+		int i = hash(refid) & mask;
+		String slot;
+		while ((slot = table[i]) != null) {
+			if(slot.equals(refid)) return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+
+	/**
+	 * {@.en Returns the number of the IDs in this set.}
+	 * {@.ja 含まれるIDの件数を返します。}
+	 */
+	public int size() {
+		return this.size;
+	}
+
+
+	/**
+	 * {@.en Returns the ID at an index in the insertion order.}
+	 * {@.ja 追加順で指定した位置のIDを返します。}
+	 */
+	public String get(int index) {
+		if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return order[index];
+	}
+
+
+	/**
+	 * {@.en Returns a read-only iterator of the IDs in the insertion order.}
+	 * {@.ja 追加順にIDを返す読み取り専用のイテレータを返します。}
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public String next() {
+				if(index >= size) throw new NoSuchElementException();
+				return order[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+
+	/**
+	 * {@.en Converts this set into a JSONArray of the IDs.}
+	 * {@.ja IDのJSONArrayに変換します。}
+	 */
+	public JSONArray toJSONArray() {
+		JSONArray array = new JSONArray();
+		for (int i = 0; i < size; i++) array.put(order[i]);
+		return array;
+	}
+
+
+	/**
+	 * Copies the IDs into an array in the insertion order.
+	 */
+	String[] toArray() {
+		String[] array = new String[size];
+		System.arraycopy(order, 0, array, 0, size);
+		return array;
+	}
+
+
+	@Override
+	public String toString() {
+		return toJSONArray().toString();
+	}
+
+
+	private void rehash(int capacity) {
+		String[] newTable = new String[capacity];
+		int mask = capacity - 1;
+
+		for (int j = 0; j < size; j++) {
+			String refid = order[j];
+			int i = hash(refid) & mask;
+			while (newTable[i] != null) i = (i + 1) & mask;
+			newTable[i] = refid;
+		}
+
+		this.table = newTable;
+	}
+
+
+	private static int hash(String refid) {
+		int h = refid.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
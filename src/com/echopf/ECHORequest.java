@@ -0,0 +1,184 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+
+/**
+ * An ECHORequest describes a HTTP request passing through the {@link ECHOInterceptor} chain.
+ * Interceptors may rewrite any part of it before proceeding.
+ */
+public class ECHORequest {
+
+	private String path;
+	private String httpMethod;
+	private JSONObject data;
+	private ECHOQueryParams params; // the query parameters not converted into `data` yet
+	private boolean multipart;
+	private final Map<String, String> headers;
+
+
+	/* Begin constructors */
+
+	/**
+	 * Constructs a new ECHORequest.
+	 *
+	 * @param path a request url path
+	 * @param httpMethod a request method (GET/POST/PUT/DELETE)
+	 * @param data request contents/parameters
+	 * @param multipart use multipart/form-data to encode the contents
+	 */
+	public ECHORequest(String path, String httpMethod, JSONObject data, boolean multipart) {
+		if(path == null) throw new IllegalArgumentException("argument `path` must not be null.");
+		if(httpMethod == null) throw new IllegalArgumentException("argument `httpMethod` must not be null.");
+
+		this.path = path;
+		this.httpMethod = httpMethod;
+		this.data = data;
+		this.multipart = multipart;
+		this.headers = new LinkedHashMap<String, String>(4);
+	}
+
+
+	/**
+	 * Constructs a copy of an existing ECHORequest.
+	 * The request contents are shared, the headers are copied.
+	 *
+	 * @param source the copying request
+	 */
+	public ECHORequest(ECHORequest source) {
+		this(source.path, source.httpMethod, source.data, source.multipart);
+		this.params = source.params;
+		this.headers.putAll(source.headers);
+	}
+
+	/* End constructors */
+
+
+	/**
+	 * Gets the request url path.
+	 */
+	public String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Sets the request url path.
+	 */
+	public void setPath(String path) {
+		if(path == null) throw new IllegalArgumentException("argument `path` must not be null.");
+		this.path = path;
+	}
+
+	/**
+	 * Gets the request method (GET/POST/PUT/DELETE).
+	 */
+	public String getHttpMethod() {
+		return this.httpMethod;
+	}
+
+	/**
+	 * Sets the request method (GET/POST/PUT/DELETE).
+	 */
+	public void setHttpMethod(String httpMethod) {
+		if(httpMethod == null) throw new IllegalArgumentException("argument `httpMethod` must not be null.");
+		this.httpMethod = httpMethod;
+	}
+
+	/**
+	 * Gets the request contents/parameters.
+	 * If the request was given {@link ECHOQueryParams}, they are converted here
+	 * and their precomputed query string is no longer used.
+	 */
+	public JSONObject getData() {
+		if(this.params != null) {
+			this.data = this.params.toJSONObject();
+			this.params = null; // the caller may modify the data
+		}
+		return this.data;
+	}
+
+	/**
+	 * Sets the request contents/parameters.
+	 */
+	public void setData(JSONObject data) {
+		this.data = data;
+		this.params = null;
+	}
+
+	/**
+	 * Gets the query parameters of a GET request, or null if they are given as a JSONObject
+	 * or have been converted by {@link #getData()}.
+	 */
+	public ECHOQueryParams getQueryParams() {
+		return this.params;
+	}
+
+	/**
+	 * Sets the query parameters of a GET request, replacing the request parameters.
+	 */
+	void setQueryParams(ECHOQueryParams params) {
+		this.data = null;
+		this.params = params;
+	}
+
+	/**
+	 * Returns whether the contents are encoded by multipart/form-data.
+	 */
+	public boolean isMultipart() {
+		return this.multipart;
+	}
+
+	/**
+	 * Sets whether the contents are encoded by multipart/form-data.
+	 */
+	public void setMultipart(boolean multipart) {
+		this.multipart = multipart;
+	}
+
+	/**
+	 * Gets the value of a request header, or null if it is not set.
+	 */
+	public String getHeader(String name) {
+		return this.headers.get(name);
+	}
+
+	/**
+	 * Sets a request header, replacing any existing value.
+	 * If the value is null, the header is removed.
+	 */
+	public void setHeader(String name, String value) {
+		if(name == null) throw new IllegalArgumentException("argument `name` must not be null.");
+
+		if(value == null) {
+			this.headers.remove(name);
+		}else{
+			this.headers.put(name, value);
+		}
+	}
+
+	/**
+	 * Gets all request headers in insertion order.
+	 */
+	public Map<String, String> getHeaders() {
+		return this.headers;
+	}
+}
@@ -0,0 +1,340 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * {@.en An ECHOSchema declares the types of the contents fields of a database/blog instance.
+ * 		Once registered by {@link #register(String, ECHOSchema)}, the declared fields are decoded
+ * 		and encoded by precompiled converters instead of guessing their types.
+ * 		Undeclared fields are still converted as before.}
+ * {@.ja データベース・ブログインスタンスのコンテンツフィールドの型を宣言するスキーマ。
+ * 		{@link #register(String, ECHOSchema)}で登録すると、宣言されたフィールドは型を推測せずに変換されます。}
+ */
+public class ECHOSchema {
+
+	private static final Map<String, ECHOSchema> registry = new ConcurrentHashMap<String, ECHOSchema>();
+
+	private final Map<String, Converter> converters;
+
+
+	/* Begin constructors */
+
+	/**
+	 * {@.en Constructs a new empty ECHOSchema.}
+	 * {@.ja 空のスキーマを生成します。}
+	 */
+	public ECHOSchema() {
+		this.converters = new HashMap<String, Converter>();
+	}
+
+
+	/**
+	 * Constructs a copy of an existing ECHOSchema.
+	 * @param source the copying schema
+	 */
+	private ECHOSchema(ECHOSchema source) {
+		this.converters = new HashMap<String, Converter>(source.converters);
+	}
+
+	/* End constructors */
+
+
+	/* Begin registry */
+
+	/**
+	 * {@.en Registers a schema for an instance. A copy of the schema is registered,
+	 * 		so later changes to the argument do not affect the registered one.}
+	 * {@.ja インスタンスにスキーマを登録します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 * @param schema
+	 * 		{@.en the registering schema}
+	 * 		{@.ja 登録するスキーマ}
+	 */
+	public static void register(String instanceId, ECHOSchema schema) {
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+		if(schema == null) throw new IllegalArgumentException("argument `schema` must not be null.");
+
+		registry.put(instanceId, new ECHOSchema(schema));
+	}
+
+
+	/**
+	 * {@.en Unregisters the schema of an instance.}
+	 * {@.ja インスタンスのスキーマ登録を解除します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 */
+	public static void unregister(String instanceId) {
+		if(instanceId == null) return;
+		registry.remove(instanceId);
+	}
+
+
+	/**
+	 * {@.en Gets the registered schema of an instance.}
+	 * {@.ja インスタンスに登録されたスキーマを取得します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスID}
+	 * @return the registered schema, or null if no schema is registered
+	 */
+	public static ECHOSchema forInstance(String instanceId) {
+		if(instanceId == null) return null;
+		return registry.get(instanceId);
+	}
+
+	/* End registry */
+
+
+	/**
+	 * {@.en Declares a field.}
+	 * {@.ja フィールドを宣言します。}
+	 *
+	 * @param name
+	 * 		{@.en the field name}
+	 * 		{@.ja フィールド名}
+	 * @param type
+	 * 		{@.en the field type}
+	 * 		{@.ja フィールドの型}
+	 * @return this schema
+	 */
+	public ECHOSchema putField(String name, ECHOFieldType type) {
+		if(name == null) throw new IllegalArgumentException("argument `name` must not be null.");
+		if(type == null) throw new IllegalArgumentException("argument `type` must not be null.");
+
+		converters.put(name, converterOf(type));
+		return this;
+	}
+
+
+	/**
+	 * {@.en Declares an array field.}
+	 * {@.ja 配列フィールドを宣言します。}
+	 *
+	 * @param name
+	 * 		{@.en the field name}
+	 * 		{@.ja フィールド名}
+	 * @param elementType
+	 * 		{@.en the type of the array elements}
+	 * 		{@.ja 配列要素の型}
+	 * @return this schema
+	 */
+	public ECHOSchema putArrayField(String name, ECHOFieldType elementType) {
+		if(name == null) throw new IllegalArgumentException("argument `name` must not be null.");
+		if(elementType == null) throw new IllegalArgumentException("argument `elementType` must not be null.");
+
+		converters.put(name, new ArrayConverter(converterOf(elementType)));
+		return this;
+	}
+
+
+	/**
+	 * {@.en Removes the declaration of a field.}
+	 * {@.ja フィールドの宣言を取り除きます。}
+	 *
+	 * @param name
+	 * 		{@.en the field name}
+	 * 		{@.ja フィールド名}
+	 * @return this schema
+	 */
+	public ECHOSchema removeField(String name) {
+		converters.remove(name);
+		return this;
+	}
+
+
+	/**
+	 * Gets the converter of a field.
+	 * @param name the field name
+	 * @return the converter, or null if the field is not declared
+	 */
+	Converter getConverter(String name) {
+		return converters.get(name);
+	}
+
+
+	private static Converter converterOf(ECHOFieldType type) {
+		switch (type) {
+			case DATE:
+				return DATE_CONVERTER;
+			case FILE:
+				return FILE_CONVERTER;
+			case INSTANCE:
+				return INSTANCE_CONVERTER;
+			default:
+				return PLAIN_CONVERTER;
+		}
+	}
+
+
+	/* Begin converters */
+
+	/**
+	 * A Converter converts a field value between the API and the SDK representations.
+	 */
+	static abstract class Converter {
+
+		/**
+		 * Converts a value of the API into the SDK representation.
+		 */
+		abstract Object decode(Object source);
+
+		/**
+		 * Converts a value of the SDK into the API representation.
+		 * An ECHOFile which has a local file is returned as it is to be sent by multipart/form-data.
+		 */
+		abstract Object encode(Object source);
+	}
+
+
+	private static final Converter PLAIN_CONVERTER = new Converter() {
+
+		@Override
+		Object decode(Object source) {
+			return source;
+		}
+
+		@Override
+		Object encode(Object source) {
+			return source;
+		}
+	};
+
+
+	private static final Converter DATE_CONVERTER = new Converter() {
+
+		@Override
+		Object decode(Object source) {
+			if(!(source instanceof String)) return source;
+
+			long time = ECHODateCodec.tryParse((String) source);
+			return (time != ECHODateCodec.INVALID) ? new ECHODate(time) : source;
+		}
+
+		@Override
+		Object encode(Object source) {
+			return (source instanceof ECHODate) ? ((ECHODate) source).toStringForECHO() : source;
+		}
+	};
+
+
+	private static final Converter FILE_CONVERTER = new Converter() {
+
+		@Override
+		Object decode(Object source) {
+			return (source instanceof JSONObject) ? new ECHOFile((JSONObject) source) : source;
+		}
+
+		@Override
+		Object encode(Object source) {
+			if(!(source instanceof ECHOFile)) return source;
+			return (((ECHOFile) source).getLocalBytes() != null) ? source : JSONObject.NULL;
+		}
+	};
+
+
+	private static final Converter INSTANCE_CONVERTER = new Converter() {
+
+		@Override
+		Object decode(Object source) {
+			if(!(source instanceof JSONObject)) return source;
+
+			ECHODataObject<?> obj = ECHODataObject.factory((JSONObject) source);
+			return (obj != null) ? obj : source;
+		}
+
+		@Override
+		Object encode(Object source) {
+			if(!(source instanceof ECHODataObject)) return source;
+
+			String refid = ((ECHODataObject<?>) source).getRefid();
+			return (refid == null || refid.isEmpty()) ? JSONObject.NULL : refid;
+		}
+	};
+
+
+	/**
+	 * An ArrayConverter converts each element of an array field.
+	 * The source array is left as it is; a new array is returned if any element is converted.
+	 */
+	static final class ArrayConverter extends Converter {
+
+		private final Converter element;
+
+		ArrayConverter(Converter element) {
+			this.element = element;
+		}
+
+		@Override
+		Object decode(Object source) {
+			if(!(source instanceof JSONArray)) return element.decode(source);
+
+			JSONArray array = (JSONArray) source;
+			JSONArray result = null;
+			for (int i = 0; i < array.length(); i++) {
+				Object elem = array.opt(i);
+				Object decoded = element.decode(elem);
+
+				if(result == null && decoded != elem) result = copyHead(array, i);
+				if(result != null) result.put(decoded);
+			}
+			return (result != null) ? result : array;
+		}
+
+		@Override
+		Object encode(Object source) {
+			if(!(source instanceof JSONArray)) return element.encode(source);
+
+			JSONArray array = (JSONArray) source;
+			JSONArray result = null;
+			for (int i = 0; i < array.length(); i++) {
+				Object elem = array.opt(i);
+				Object encoded = element.encode(elem);
+
+				if(result == null && encoded != elem) result = copyHead(array, i);
+				if(result != null) result.put(encoded);
+			}
+			return (result != null) ? result : array;
+		}
+
+		/**
+		 * Copies the elements before an index into a new array.
+		 */
+		private static JSONArray copyHead(JSONArray array, int end) {
+			JSONArray head = new JSONArray();
+			for (int i = 0; i < end; i++) head.put(array.opt(i));
+			return head;
+		}
+	}
+
+	/* End converters */
+}
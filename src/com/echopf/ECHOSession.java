@@ -0,0 +1,103 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import com.echopf.members.ECHOMemberObject;
+
+
+/**
+ * {@.en An ECHOSession is a logged-in session of a member, which carries its own access token.
+ * 		Many sessions can be used at once; their requests run in parallel on the threads of the client.
+ * 		Objects bound to a session by {@link #bind(ECHOObject)} are fetched, pushed and deleted with its token.}
+ * {@.ja 独自のアクセストークンを持つ、メンバーのログインセッション。
+ * 		複数のセッションを同時に使用でき、それぞれのリクエストはクライアントのスレッド上で並行して実行されます。
+ * 		{@link #bind(ECHOObject)}で紐付けたオブジェクトは、このセッションのトークンで取得・保存・削除されます。}
+ */
+public final class ECHOSession {
+
+	private final ECHOClient client; // derived from the client of the login
+	private final ECHOMemberObject member;
+
+
+	/**
+	 * {@.en Constructs a session with an access token, e.g. to restore a stored one.}
+	 * {@.ja アクセストークンからセッションを生成します（保存したセッションの復元など）。}
+	 *
+	 * @param client
+	 * 		{@.en the client of the site}
+	 * 		{@.ja サイトのクライアント}
+	 * @param accessToken
+	 * 		{@.en the access token of the session}
+	 * 		{@.ja セッションのアクセストークン}
+	 * @param member
+	 * 		{@.en the logged-in member, or null if unknown}
+	 * 		{@.ja ログインしているメンバー（不明な場合はnull）}
+	 */
+	public ECHOSession(ECHOClient client, String accessToken, ECHOMemberObject member) {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+		if(accessToken == null) throw new IllegalArgumentException("argument `accessToken` must not be null.");
+
+		this.client = client.derive(accessToken);
+		this.member = member;
+		if(member != null) member.setClient(this.client);
+	}
+
+
+	/**
+	 * {@.en Gets the logged-in member, or null if unknown.}
+	 * {@.ja ログインしているメンバーを取得します。不明な場合はnullを返します。}
+	 */
+	public ECHOMemberObject getMember() {
+		return this.member;
+	}
+
+
+	/**
+	 * {@.en Gets the access token of this session.}
+	 * {@.ja このセッションのアクセストークンを取得します。}
+	 */
+	public String getAccessToken() {
+		return this.client.getAccessToken();
+	}
+
+
+	/**
+	 * {@.en Gets the client sending the requests of this session.
+	 * 		Bind it to a thread by {@link ECHOClient#setCurrent(ECHOClient)} to use this session implicitly.}
+	 * {@.ja このセッションのリクエストを送信するクライアントを取得します。
+	 * 		{@link ECHOClient#setCurrent(ECHOClient)}でスレッドに紐付けると、このセッションが暗黙的に使用されます。}
+	 */
+	public ECHOClient getClient() {
+		return this.client;
+	}
+
+
+	/**
+	 * {@.en Binds an object to this session.}
+	 * {@.ja オブジェクトをこのセッションに紐付けます。}
+	 *
+	 * @param obj
+	 * 		{@.en the object to bind}
+	 * 		{@.ja 紐付けるオブジェクト}
+	 * @return {@.en the object}
+	 * 			{@.ja 紐付けたオブジェクト}
+	 */
+	public <T extends ECHOObject> T bind(T obj) {
+		if(obj == null) throw new IllegalArgumentException("argument `obj` must not be null.");
+		obj.setClient(this.client);
+		return obj;
+	}
+}
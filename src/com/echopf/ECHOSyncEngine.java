@@ -0,0 +1,519 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+
+package com.echopf;
+
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+
+/**
+ * {@.en An ECHOSyncEngine keeps the {@link ECHOLocalStore} of an instance up to date by incremental synchronization.
+ * 		It remembers a high-water mark of `modified` and refid, and fetches only the objects changed since then,
+ * 		ordered by `modified` in descending order. Deletions are detected by a periodic reconciliation of the refids
+ * 		when no additional parameters narrow the list.
+ * 		The mark is persisted but the store lives in memory, so a synchronization is incremental only if
+ * 		this process has filled the store from the mark; otherwise, e.g. after a restart, it fetches all objects again.
+ * 		The list is paged by page numbers, so objects added or deleted on the server during a synchronization
+ * 		shift the pages and may skip rows. The engine detects this from the count of the list: the mark is not
+ * 		advanced and the deletions are not applied, so that the next synchronization catches up.}
+ * {@.ja インスタンスの{@link ECHOLocalStore}を差分同期で最新に保つ同期エンジン。
+ * 		`modified`とrefidの最高水位を記憶し、それ以降に変更されたオブジェクトのみを`modified`の降順で取得します。
+ * 		追加パラメータで絞り込んでいない場合、削除は定期的なrefidの照合によって検出します。
+ * 		最高水位は永続化されますがストアはメモリ上にのみ存在するため、このプロセスでストアを同期済みの場合にのみ差分同期となり、
+ * 		再起動後などはすべてのオブジェクトを取得し直します。
+ * 		ページ番号でページングするため、同期中にサーバー上で追加・削除があると行を読み飛ばす場合があります。
+ * 		その場合は件数の変化から検出し、最高水位の更新と削除の反映を見送って次回の同期で取り直します。}
+ */
+public class ECHOSyncEngine<T extends ECHODataObject<T>> {
+
+	private static final String PREFS_NAME = "com.echopf.sync";
+	private static final long DEFAULT_RECONCILE_INTERVAL = 24 * 60 * 60 * 1000L;
+	private static final int DEFAULT_RECONCILE_PAGE_SIZE = 1000;
+
+	private final ECHOClient client;
+	private final String instanceId;
+	private final String listKey;
+	private final String resourceType;
+	private final JSONObject params;
+	private final ECHODataObjectFactory<T> factory;
+	private final String stateKey;
+	private final Object syncLock = new Object();
+
+	private int pageSize = 100;
+	private long reconcileInterval = DEFAULT_RECONCILE_INTERVAL;
+	private int reconcilePageSize = DEFAULT_RECONCILE_PAGE_SIZE;
+	private volatile Listener listener = null;
+
+	// high-water mark
+	private long markModified = Long.MIN_VALUE;
+	private String markRefid = null;
+	private long lastReconciled = 0;
+	private boolean stateLoaded = false;
+
+	// statistics
+	private volatile int objectsFetched = 0;
+	private volatile int objectsDeleted = 0;
+	private volatile long bytesFetched = 0;
+	private volatile long bytesSaved = 0;
+
+
+	/**
+	 * {@.en Constructs a new ECHOSyncEngine bound to the current client.}
+	 * {@.ja カレントクライアントに紐付いた新しい同期エンジンを生成します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the target instance}
+	 * 		{@.ja 同期対象インスタンスのID}
+	 * @param listKey
+	 * 		{@.en the key associated with the object list in the response (e.g. "records")}
+	 * 		{@.ja レスポンス内のリストのキー（例: "records"）}
+	 * @param resourceType
+	 * 		{@.en the resource type of the list (e.g. "archive")}
+	 * 		{@.ja リストのリソースタイプ（例: "archive"）}
+	 * @param params
+	 * 		{@.en the additional list control parameters, or null.
+	 * 			`page`, `limit`, `order` and `asc` are controlled by the engine.}
+	 * 		{@.ja 追加のリスト制御パラメータ。`page`・`limit`・`order`・`asc`はエンジンが制御します。}
+	 * @param factory
+	 * 		{@.en the factory to create the objects}
+	 * 		{@.ja オブジェクトの生成に使うファクトリ}
+	 */
+	public ECHOSyncEngine(String instanceId, String listKey, String resourceType, JSONObject params, ECHODataObjectFactory<T> factory) {
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+		if(listKey == null) throw new IllegalArgumentException("argument `listKey` must not be null.");
+		if(resourceType == null) throw new IllegalArgumentException("argument `resourceType` must not be null.");
+		if(factory == null) throw new IllegalArgumentException("argument `factory` must not be null.");
+
+		this.client = ECHOClient.current();
+		this.instanceId = instanceId;
+		this.listKey = listKey;
+		this.resourceType = resourceType;
+		this.factory = factory;
+
+		this.params = new JSONObject();
+		try {
+			if(params != null) {
+				Iterator<?> iter = params.keys();
+				while (iter.hasNext()) {
+					String key = (String) iter.next();
+					if(key.equals("page") || key.equals("limit") || key.equals("order") || key.equals("asc")) continue;
+					this.params.put(key, params.opt(key));
+				}
+			}
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		this.stateKey = client.getSecureDomain() + "/" + instanceId + "/" + resourceType + "?" + this.params.toString();
+	}
+
+
+	/* Begin configuration */
+
+	/**
+	 * {@.en Sets the number of objects fetched per a request.}
+	 * {@.ja 1リクエストあたりの取得件数をセットします。}
+	 */
+	public void setPageSize(int pageSize) {
+		if(pageSize < 1) throw new IllegalArgumentException("argument `pageSize` must be positive.");
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * {@.en Sets the minimum interval of the reconciliation to detect deletions, in milliseconds.}
+	 * {@.ja 削除検出のための照合を行う最小間隔（ミリ秒）をセットします。}
+	 */
+	public void setReconcileInterval(long interval) {
+		if(interval < 0) throw new IllegalArgumentException("argument `interval` must not be negative.");
+		this.reconcileInterval = interval;
+	}
+
+	/**
+	 * {@.en Sets the number of objects per a request of the reconciliation (1000 by default).
+	 * 			The reconciliation reads whole list pages only for their refids, so fewer and larger pages are cheaper.}
+	 * {@.ja 照合時の1リクエストあたりの取得件数をセットします（デフォルトは1000）。}
+	 */
+	public void setReconcilePageSize(int pageSize) {
+		if(pageSize < 1) throw new IllegalArgumentException("argument `pageSize` must be positive.");
+		this.reconcilePageSize = pageSize;
+	}
+
+	/**
+	 * {@.en Sets a listener notified of the progress. It is called in a background thread.}
+	 * {@.ja 進捗を受け取るリスナーをセットします。バックグラウンドスレッドで呼び出されます。}
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/* End configuration */
+
+
+	/* Begin statistics */
+
+	/**
+	 * {@.en Gets the number of objects fetched so far.}
+	 * {@.ja これまでに取得したオブジェクト数を取得します。}
+	 */
+	public int getObjectsFetched() {
+		return this.objectsFetched;
+	}
+
+	/**
+	 * {@.en Gets the number of deleted objects detected so far.}
+	 * {@.ja これまでに検出した削除済みオブジェクト数を取得します。}
+	 */
+	public int getObjectsDeleted() {
+		return this.objectsDeleted;
+	}
+
+	/**
+	 * {@.en Gets the approximate number of bytes of the objects fetched so far.}
+	 * {@.ja これまでに取得したオブジェクトのおおよそのバイト数を取得します。}
+	 */
+	public long getBytesFetched() {
+		return this.bytesFetched;
+	}
+
+	/**
+	 * {@.en Gets the approximate number of bytes saved compared with downloading all objects on every synchronization,
+	 * 			less the bytes read by the reconciliations. It may be negative.}
+	 * {@.ja 毎回全件を取得する場合と比べて節約できたおおよそのバイト数（照合で読み込んだバイト数を差し引いたもの）を取得します。
+	 * 			負の値になる場合があります。}
+	 */
+	public long getBytesSaved() {
+		return this.bytesSaved;
+	}
+
+	/* End statistics */
+
+
+	/**
+	 * {@.en Synchronizes the local store by synchronous communication.}
+	 * {@.ja 同期通信によりローカルストアを同期します。}
+	 *
+	 * @throws ECHOException
+	 */
+	public void sync() throws ECHOException {
+		synchronized (syncLock) {
+			loadState();
+
+			ECHOLocalStore store = ECHOLocalStore.forInstance(client, instanceId);
+
+			// The store is in memory only, so a persisted mark does not tell what it holds.
+			boolean initial = (markRefid == null) || !store.isSyncedBy(stateKey);
+			long newModified = initial ? Long.MIN_VALUE : markModified;
+			String newRefid = initial ? null : markRefid;
+			Set<String> seen = (initial && params.length() == 0) ? new HashSet<String>() : null; // to drop what was deleted
+
+			int fetched = 0;
+			long bytes = 0;
+			int page = 1;
+			int firstCount = -1;
+			boolean shifted = false; // objects were added or deleted while paging
+
+			fetching:
+			while (true) {
+				JSONObject response = request(page, pageSize, "modified", false);
+				JSONArray items = response.optJSONArray(listKey);
+				if(items == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
+
+				JSONObject paginate = response.optJSONObject("paginate");
+				int count = (paginate != null) ? paginate.optInt("count", -1) : -1;
+				if(firstCount < 0) firstCount = count;
+				if(count != firstCount) shifted = true;
+
+				for (int i = 0; i < items.length(); i++) {
+					JSONObject item = items.optJSONObject(i);
+					if(item == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
+
+					String refid = item.optString("refid");
+					if(refid.isEmpty()) continue;
+					long modified = parseDate(item.optString("modified"));
+
+					if(!initial) {
+						if(modified < markModified) break fetching; // reached the high-water mark
+						if(modified == markModified && refid.equals(markRefid)) continue; // the mark itself
+					}
+
+					bytes += item.toString().length();
+					T obj = factory.create(instanceId, refid, item);
+					obj.setClient(client);
+					store.put(obj);
+					fetched++;
+					if(seen != null) seen.add(refid);
+
+					if(newRefid == null || modified > newModified || (modified == newModified && refid.compareTo(newRefid) > 0)) {
+						newModified = modified;
+						newRefid = refid;
+					}
+				}
+
+				Listener listener = this.listener;
+				if(listener != null) listener.onProgress(page, fetched);
+
+				if(items.length() == 0 || paginate == null || paginate.optInt("nextPage") <= page) break;
+				page = paginate.optInt("nextPage");
+			}
+
+			// statistics
+			this.objectsFetched += fetched;
+			this.bytesFetched += bytes;
+			if(!initial && fetched > 0) {
+				long average = bytes / fetched;
+				this.bytesSaved += Math.max(store.size() - fetched, 0) * average;
+			}
+
+			// A deletion during the paging shifts the later pages up and may skip a changed object,
+			// so the mark advances only if the list was stable; otherwise the next sync fetches them again.
+			if(!shifted) {
+				this.markModified = newModified;
+				this.markRefid = newRefid;
+			}
+
+			// reconciliation
+			long now = System.currentTimeMillis();
+			if(initial) {
+				if(seen != null && !shifted) {
+					// the whole list has been read: the others in the store were cached before and deleted since
+					for (String refid : store.refids()) {
+						if(seen.contains(refid)) continue;
+						store.remove(refid);
+						this.objectsDeleted++;
+					}
+					this.lastReconciled = now;
+				}
+			}else if(params.length() == 0 && now - this.lastReconciled >= this.reconcileInterval) {
+				if(reconcile(store)) this.lastReconciled = now;
+			}
+
+			// a store read from a shifted list may miss objects, so it is not trusted for list queries
+			if(!shifted) {
+				store.setSyncedBy(stateKey);
+				if(params.length() == 0) store.setComplete(true);
+			}
+
+			saveState();
+		}
+	}
+
+
+	/**
+	 * {@.en Synchronizes the local store in a background thread.}
+	 * {@.ja 非同期通信によりローカルストアを同期します。完了後に指定したコールバックをメインスレッドで実行します。}
+	 *
+	 * @param callback
+	 * 		{@.en invoked after the synchronization is completed}
+	 * 		{@.ja 同期完了後に実行するコールバック}
+	 */
+	public void syncInBackground(final ResultCallback callback) {
+		final Handler handler = new Handler();
+
+		ExecutorService executor = client.getExecutor();
+		executor.submit(new Callable<Object>() {
+			@Override
+			public Object call() {
+				ECHOException exception = null;
+
+				try {
+					sync();
+				} catch (ECHOException e) {
+					exception = e;
+				} catch (Exception e) {
+					exception = new ECHOException(e);
+				}
+
+				if(callback != null) {
+					final ECHOException fException = exception;
+					handler.post(new Runnable() {
+						@Override
+						public void run() {
+							callback.done(fException);
+						}
+					});
+				}
+
+				return null;
+			}
+		});
+	}
+
+
+	/**
+	 * {@.en Forgets the high-water mark, so that the next synchronization fetches all objects.}
+	 * {@.ja 最高水位を破棄します。次回の同期ですべてのオブジェクトを取得します。}
+	 */
+	public void reset() {
+		synchronized (syncLock) {
+			this.markModified = Long.MIN_VALUE;
+			this.markRefid = null;
+			this.lastReconciled = 0;
+			this.stateLoaded = true;
+			saveState();
+		}
+	}
+
+
+	/**
+	 * Removes the objects which no longer exist on the server from the store.
+	 * The API has no refid-only listing, so the refids are read from the list pages, as large as possible,
+	 * and their bytes are deducted from the saved ones.
+	 *
+	 * The pages are ordered by `created`, which updates do not change. A deletion during the paging
+	 * shifts the later pages up and would make a skipped object look deleted, so nothing is removed
+	 * if the count of the list changes meanwhile.
+	 *
+	 * @return false if the list changed meanwhile, so that the reconciliation is retried at the next sync
+	 */
+	private boolean reconcile(ECHOLocalStore store) throws ECHOException {
+		Set<String> remote = new HashSet<String>();
+		long bytes = 0;
+		int firstCount = -1;
+		boolean shifted = false;
+
+		int page = 1;
+		while (true) {
+			JSONObject response = request(page, reconcilePageSize, "created", true);
+			JSONArray items = response.optJSONArray(listKey);
+			if(items == null) throw new ECHOException(0, "Invalid data type for response-field `" + listKey + "`.");
+
+			JSONObject paginate = response.optJSONObject("paginate");
+			int count = (paginate != null) ? paginate.optInt("count", -1) : -1;
+			if(firstCount < 0) firstCount = count;
+			if(count != firstCount) shifted = true;
+
+			for (int i = 0; i < items.length(); i++) {
+				JSONObject item = items.optJSONObject(i);
+				if(item == null) continue;
+				remote.add(item.optString("refid"));
+				bytes += item.toString().length();
+			}
+
+			if(items.length() == 0 || paginate == null || paginate.optInt("nextPage") <= page) break;
+			page = paginate.optInt("nextPage");
+		}
+		this.bytesFetched += bytes;
+		this.bytesSaved -= bytes;
+
+		if(shifted) return false;
+
+		for (String refid : store.refids()) {
+			if(remote.contains(refid)) continue;
+
+			store.remove(refid);
+			this.objectsDeleted++;
+		}
+
+		return true;
+	}
+
+
+	private JSONObject request(int page, int limit, String order, boolean asc) throws ECHOException {
+		JSONObject query = new JSONObject();
+
+		try {
+			Iterator<?> iter = params.keys();
+			while (iter.hasNext()) {
+				String key = (String) iter.next();
+				query.put(key, params.opt(key));
+			}
+			query.put("page", page);
+			query.put("limit", limit);
+			query.put("order", order);
+			query.put("asc", asc);
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		return client.getRequest(instanceId + "/" + resourceType, query);
+	}
+
+
+	private static long parseDate(String str) {
+		try {
+			return ECHODateCodec.parse(str);
+		} catch (ParseException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+
+	/* Begin state */
+
+	private void loadState() {
+		if(stateLoaded) return;
+		stateLoaded = true;
+
+		SharedPreferences prefs = preferences();
+		if(prefs == null) return;
+
+		this.markModified = prefs.getLong(stateKey + ".modified", Long.MIN_VALUE);
+		this.markRefid = prefs.getString(stateKey + ".refid", null);
+		this.lastReconciled = prefs.getLong(stateKey + ".reconciled", 0);
+	}
+
+	private void saveState() {
+		SharedPreferences prefs = preferences();
+		if(prefs == null) return;
+
+		SharedPreferences.Editor editor = prefs.edit();
+		if(markRefid == null) {
+			editor.remove(stateKey + ".modified").remove(stateKey + ".refid").remove(stateKey + ".reconciled");
+		}else{
+			editor.putLong(stateKey + ".modified", markModified);
+			editor.putString(stateKey + ".refid", markRefid);
+			editor.putLong(stateKey + ".reconciled", lastReconciled);
+		}
+		editor.apply();
+	}
+
+	private SharedPreferences preferences() {
+		Context context = client.getContext();
+		return (context != null) ? context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE) : null;
+	}
+
+	/* End state */
+
+
+	/**
+	 * {@.en A Listener is notified of the progress of the synchronization.}
+	 * {@.ja 同期の進捗を受け取るリスナー。}
+	 */
+	public static abstract class Listener {
+
+		/**
+		 * {@.en Called after each page has been merged into the local store.}
+		 * {@.ja 各ページをローカルストアに反映した後に呼び出されます。}
+		 *
+		 * @param page the page no. just merged
+		 * @param fetched the number of objects fetched in this synchronization so far
+		 */
+		public abstract void onProgress(int page, int fetched);
+	}
+}
@@ -0,0 +1,232 @@
+/*******
+ Copyright 2015 NeuroBASE,Inc. All Rights Reserved.
+ 
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ 
+ http://www.apache.org/licenses/LICENSE-2.0
+ 
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **********/
+package com.echopf;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * {@.en An ECHOTreeCache keeps the fetched (sub) tree maps in memory for a given TTL.
+ * 		Caching is disabled by default (TTL = 0).
+ * 		The server filters trees by the ACL of the requester, so a tree is cached per site and access token.}
+ * {@.ja 取得したツリー（サブツリー）を一定時間メモリ上に保持するキャッシュ。
+ * 		デフォルトでは無効（TTL = 0）です。
+ * 		サーバーはリクエスト元のACLでツリーを絞り込むため、サイトとアクセストークンごとにキャッシュします。}
+ */
+public final class ECHOTreeCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	private static long ttl = 0;
+
+	private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+
+	/**
+	 * Disable constructor since this is an utility class.
+	 */
+	private ECHOTreeCache() {}
+
+
+	/**
+	 * {@.en Sets the time to live of the cached tree maps. 0 disables the cache.}
+	 * {@.ja キャッシュの有効期間を設定します。0を指定するとキャッシュは無効になります。}
+	 *
+	 * @param millis
+	 * 		{@.en the time to live in milliseconds}
+	 * 		{@.ja 有効期間（ミリ秒）}
+	 */
+	public static synchronized void setTTL(long millis) {
+		if(millis < 0) throw new IllegalArgumentException("argument `millis` must not be negative.");
+
+		ttl = millis;
+		if(millis == 0) entries.clear();
+	}
+
+
+	/**
+	 * {@.en Gets the time to live of the cached tree maps in milliseconds.}
+	 * {@.ja キャッシュの有効期間（ミリ秒）を取得します。}
+	 */
+	public static synchronized long getTTL() {
+		return ttl;
+	}
+
+
+	/**
+	 * {@.en Invalidates the cached tree maps which contain a node, on all sites and for all access tokens.}
+	 * {@.ja 指定したノードを含むキャッシュを、すべてのサイト・アクセストークンについて破棄します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the node has belonged}
+	 * 		{@.ja ノードが所属するインスタンスのID}
+	 * @param refid
+	 * 		{@.en the reference ID of the node}
+	 * 		{@.ja ノードのID}
+	 */
+	public static void invalidate(String instanceId, String refid) {
+		invalidate(null, instanceId, refid);
+	}
+
+
+	/**
+	 * Invalidates the cached tree maps of a site which contain a node.
+	 * @param domain the secure domain of the site, or null for all sites
+	 */
+	static synchronized void invalidate(String domain, String instanceId, String refid) {
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+		if(refid == null) throw new IllegalArgumentException("argument `refid` must not be null.");
+
+		Iterator<Entry> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			Entry entry = iter.next();
+			if(entry.matches(domain, instanceId) && entry.refids.contains(refid)) iter.remove();
+		}
+	}
+
+
+	/**
+	 * {@.en Invalidates all cached tree maps of an instance, on all sites and for all access tokens.}
+	 * {@.ja 指定したインスタンスのキャッシュを、すべてのサイト・アクセストークンについて破棄します。}
+	 *
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance}
+	 * 		{@.ja インスタンスのID}
+	 */
+	public static void invalidate(String instanceId) {
+		invalidateInstance(null, instanceId);
+	}
+
+
+	/**
+	 * Invalidates all cached tree maps of an instance of a site.
+	 * @param domain the secure domain of the site, or null for all sites
+	 */
+	static synchronized void invalidateInstance(String domain, String instanceId) {
+		if(instanceId == null) throw new IllegalArgumentException("argument `instanceId` must not be null.");
+
+		Iterator<Entry> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			if(iter.next().matches(domain, instanceId)) iter.remove();
+		}
+	}
+
+
+	/**
+	 * {@.en Invalidates all cached tree maps.}
+	 * {@.ja キャッシュをすべて破棄します。}
+	 */
+	public static synchronized void clear() {
+		entries.clear();
+	}
+
+
+	/**
+	 * Gets the cache key of a tree map requested by a client.
+	 * Clients may connect to different sites, and members see the trees filtered by their ACLs.
+	 * @param path the request url path of the tree map
+	 */
+	static String keyOf(ECHOClient client, String path) {
+		String key = client.getSecureDomain() + "/" + path;
+		String token = client.getAccessToken();
+		return (token != null && !token.isEmpty()) ? key + "#" + token : key;
+	}
+
+
+	/**
+	 * Gets a cached response, or null if it is not cached or expired.
+	 * @param key the key given by {@link #keyOf}
+	 */
+	static synchronized JSONObject get(String key) {
+		Entry entry = entries.get(key);
+		if(entry == null) return null;
+
+		if(entry.expiresAt <= System.currentTimeMillis()) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.data;
+	}
+
+
+	/**
+	 * Caches a response if the cache is enabled.
+	 * @param domain the secure domain of the site
+	 * @param instanceId the reference ID of the instance to which the tree map has belonged
+	 * @param key the key given by {@link #keyOf}
+	 * @param data the response
+	 * @param listKey the key of the node list in the response (e.g. "categories")
+	 */
+	static synchronized void put(String domain, String instanceId, String key, JSONObject data, String listKey) {
+		if(ttl == 0 || data == null) return;
+
+		Set<String> refids = new HashSet<String>();
+		collect(data.optJSONArray(listKey), refids);
+		entries.put(key, new Entry(domain, instanceId, data, refids, System.currentTimeMillis() + ttl));
+	}
+
+
+	/**
+	 * Collects the reference IDs of all nodes in a list.
+	 */
+	private static void collect(JSONArray nodes, Set<String> refids) {
+		if(nodes == null) return;
+
+		for(int i = 0; i < nodes.length(); i++) {
+			JSONObject obj = nodes.optJSONObject(i);
+			if(obj == null) continue; // skip
+
+			String refid = obj.optString("refid");
+			if(!refid.isEmpty()) refids.add(refid);
+			collect(obj.optJSONArray("children"), refids);
+		}
+	}
+
+
+	private static final class Entry {
+		final String domain;
+		final String instanceId;
+		final JSONObject data;
+		final Set<String> refids;
+		final long expiresAt;
+
+		Entry(String domain, String instanceId, JSONObject data, Set<String> refids, long expiresAt) {
+			this.domain = domain;
+			this.instanceId = instanceId;
+			this.data = data;
+			this.refids = refids;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean matches(String domain, String instanceId) {
+			return this.instanceId.equals(instanceId) && (domain == null || domain.equals(this.domain));
+		}
+	}
+}
@@ -16,13 +16,17 @@
 
 package com.echopf;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import android.os.Handler;
@@ -39,6 +43,16 @@ public abstract class ECHOTreeMap<T extends ECHODataObject<T> & TreeNodeable<T>,
 	protected List<S> children;
 	protected boolean is_subtree = false;
 
+	private S parent = null;
+	private int depth = 0;
+	private int preOrder = 0;
+	private int postOrder = 0;
+	private Map<String, S> index = null; // shared by all nodes of a tree
+
+	private int maxDepth = 0; // 0 = unlimited
+	private JSONArray pending = null; // the children not built yet
+	private boolean expanded = true;
+
 	
 	/* Begin constructors */
 
@@ -111,6 +125,355 @@ public abstract class ECHOTreeMap<T extends ECHODataObject<T> & TreeNodeable<T>,
 	}
 	
 
+	/**
+	 * {@.en Gets the parent tree map, or null if this is the root.}
+	 * {@.ja 親のツリーを取得します。ルートの場合はnullを返します。}
+	 */
+	public S getParent() {
+		return this.parent;
+	}
+
+
+	/**
+	 * {@.en Gets the depth of this node. The root is 0.}
+	 * {@.ja ノードの深さを取得します。ルートは0です。}
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+
+	/**
+	 * {@.en Finds a tree map in the tree by the reference ID of its node.}
+	 * {@.ja ノードのIDでツリー内のサブツリーを検索します。}
+	 *
+	 * @param refid
+	 * 		{@.en the reference ID of the node}
+	 * 		{@.ja ノードのID}
+	 * @return {@.en the found tree map, or null if it does not exist}
+	 * 			{@.ja 見つかったサブツリー。存在しない場合はnull}
+	 */
+	public S find(String refid) {
+		if(this.index == null || refid == null) return null;
+		return this.index.get(refid);
+	}
+
+
+	/**
+	 * {@.en Returns whether this node is a proper ancestor of another node in the same tree.}
+	 * {@.ja このノードが同じツリー内の別のノードの祖先であるかどうかを返します。}
+	 */
+	public boolean isAncestorOf(S other) {
+		if(other == null) return false;
+
+		ECHOTreeMap<T, S> that = other;
+		return this.index != null && this.index == that.index
+				&& this.preOrder < that.preOrder && that.postOrder < this.postOrder;
+	}
+
+
+	/**
+	 * {@.en Gets the path from the root to this node (both inclusive).}
+	 * {@.ja ルートからこのノードまでの経路（両端を含む）を取得します。}
+	 */
+	@SuppressWarnings("unchecked")
+	public List<S> getPath() {
+		List<S> path = new ArrayList<S>(this.depth + 1);
+		for (S map = (S) this; map != null; map = ((ECHOTreeMap<T, S>) map).parent) {
+			path.add(map);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+
+	/**
+	 * {@.en Sets the number of levels to build when this tree map is fetched (0 = unlimited, by default).
+	 * 		The children below the limit are built on demand by {@link #expand()}.
+	 * 		They are not registered in the index until then.}
+	 * {@.ja 取得時に構築する階層数を設定します（0 = 無制限、デフォルト）。
+	 * 		それより深い子は{@link #expand()}を呼び出した時点で構築されます。}
+	 *
+	 * @param levels
+	 * 		{@.en the number of levels below the root}
+	 * 		{@.ja ルートから数えた階層数}
+	 */
+	public void setMaxDepth(int levels) {
+		if(levels < 0) throw new IllegalArgumentException("argument `levels` must not be negative.");
+		this.maxDepth = levels;
+	}
+
+
+	/**
+	 * {@.en Returns whether the children of this node have been built.}
+	 * {@.ja ノードの配下が構築済みかどうかを返します。}
+	 */
+	public boolean isExpanded() {
+		synchronized (lock) {
+			return this.expanded;
+		}
+	}
+
+
+	/**
+	 * {@.en Builds the children of this node, which were left by {@link #setMaxDepth(int)}.
+	 * 		If they are not at hand any longer, the subtree is fetched from the remote server.}
+	 * {@.ja {@link #setMaxDepth(int)}により構築されなかったノードの配下を構築します。
+	 * 		手元にデータがない場合は、サブツリーをサーバから取得します。}
+	 *
+	 * @throws ECHOException
+	 */
+	@SuppressWarnings("unchecked")
+	public S expand() throws ECHOException {
+		doExpand(true, null);
+		return (S) this;
+	}
+
+
+	/**
+	 * {@.en Builds the children of this node in a background thread.}
+	 * {@.ja ノードの配下を非同期で構築します。}
+	 *
+	 * @param callback
+	 * 		{@.en invoked after the building is completed}
+	 * 		{@.ja 構築完了後に実行されるコールバック}
+	 */
+	public void expandInBackground(FetchCallback<S> callback) {
+		try {
+			doExpand(false, callback);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * Creates an empty tree map whose root node has a reference ID.
+	 */
+	protected abstract S newSubtree(String refid);
+
+
+	/**
+	 * Creates a node object from a JSONObject.
+	 */
+	protected abstract T newNode(String refid, JSONObject source);
+
+
+	/**
+	 * Builds this tree in a single pass from the list of the response.
+	 * Each node gets its parent, depth and pre/post-order numbers, and is registered in the refid index.
+	 *
+	 * @param source the list of the response (e.g. the "categories" array)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void buildTree(JSONArray source) {
+		if(source == null) return;
+
+		JSONArray jsonChildren = source;
+		if (is_subtree) {
+			JSONObject obj = source.optJSONObject(0);
+			if (obj == null) return; // skip
+
+			String refid = obj.optString("refid");
+			if (refid.isEmpty()) return; // skip
+
+			this.node = newNode(refid, obj);
+			jsonChildren = obj.optJSONArray("children");
+		}
+
+		this.parent = null;
+		this.depth = 0;
+		this.index = new HashMap<String, S>();
+		if(this.node != null) this.index.put(this.node.getRefid(), (S) this);
+
+		int[] counter = new int[2];
+		this.preOrder = counter[0]++;
+		this.children = buildChildren(jsonChildren, this.maxDepth, counter);
+		this.postOrder = counter[1]++;
+	}
+
+
+	/**
+	 * Builds the children of this tree map recursively.
+	 * @param levels the number of levels to build (0 = unlimited)
+	 */
+	@SuppressWarnings("unchecked")
+	private List<S> buildChildren(JSONArray source, int levels, int[] counter) {
+		List<S> children = new ArrayList<S>();
+		this.pending = null;
+		this.expanded = true;
+		if(source == null || source.length() == 0) return children;
+
+		if(levels < 0) { // leave them to expand()
+			this.pending = source;
+			this.expanded = false;
+			return children;
+		}
+
+		int next = (levels == 0) ? 0 : (levels > 1) ? levels - 1 : -1;
+
+		for(int i = 0; i < source.length(); i++) {
+			JSONObject obj = source.optJSONObject(i);
+			if(obj == null) continue; // skip
+
+			String refid = obj.optString("refid");
+			if (refid.isEmpty()) continue; // skip
+
+			S child = newSubtree(refid);
+			ECHOTreeMap<T, S> map = child;
+			map.node = newNode(refid, obj);
+			map.parent = (S) this;
+			map.depth = this.depth + 1;
+			map.index = this.index;
+			map.maxDepth = this.maxDepth;
+			map.preOrder = counter[0]++;
+			map.children = map.buildChildren(obj.optJSONArray("children"), next, counter);
+			map.postOrder = counter[1]++;
+
+			this.index.put(refid, child);
+			children.add(child);
+		}
+
+		return children;
+	}
+
+
+	/**
+	 * Renumbers the pre/post-order of a subtree.
+	 */
+	private void number(int[] counter) {
+		this.preOrder = counter[0]++;
+		for(S child : this.children) {
+			ECHOTreeMap<T, S> map = child;
+			map.number(counter);
+		}
+		this.postOrder = counter[1]++;
+	}
+
+
+	/**
+	 * Does Expand the children of this node in a background thread.
+	 *
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the building in a background thread.
+	 * 		  (a synchronous communication)
+	 * @param callback invoked after the building is completed
+	 * @throws ECHOException
+	 */
+	protected void doExpand(final boolean sync, final FetchCallback<S> callback) throws ECHOException {
+		final Handler handler = new Handler();
+
+		// Get ready a background thread
+		ExecutorService executor = getClient().getExecutor();
+		Callable<Object> communictor = new Callable<Object>() {
+
+			@Override
+			public Object call() throws ECHOException {
+
+				ECHOException exception = null;
+
+				try {
+					expandChildren();
+				} catch(ECHOException e) {
+					exception = e;
+				} catch (Exception e) {
+					exception = new ECHOException(e);
+				}
+
+
+				if(sync == false) {
+
+					// Execute a callback method in the main (UI) thread.
+					if(callback != null) {
+						final ECHOException fException = exception;
+						handler.post(new Runnable() {
+							@Override @SuppressWarnings("unchecked")
+							public void run() {
+								callback.done((S) ECHOTreeMap.this, fException);
+							}
+						});
+					}
+
+				}else{
+
+					if(exception != null) throw exception;
+				}
+
+				return null;
+			}
+		};
+
+		Future<Object> future = executor.submit(communictor);
+
+		if(sync) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // ignore/reset
+			} catch (ExecutionException e) {
+				Throwable e2 = e.getCause();
+
+				if (e2 instanceof ECHOException) {
+					throw (ECHOException) e2;
+				}
+
+				throw new RuntimeException(e2);
+			}
+		}
+	}
+
+
+	/**
+	 * Builds the children left by the depth limit, fetching the subtree if necessary.
+	 * The whole tree is renumbered afterwards.
+	 */
+	@SuppressWarnings("unchecked")
+	private void expandChildren() throws ECHOException {
+		if(this.node == null || this.index == null) return; // the root is always built
+
+		JSONArray source;
+		synchronized (lock) {
+			if(this.expanded) return;
+			source = this.pending;
+		}
+
+		if(source == null) {
+			S subtree = newSubtree(this.node.getRefid());
+			JSONObject data = fetchTree(subtree.getRequestURLPath());
+			JSONArray nodes = data.optJSONArray(resourceType);
+			JSONObject obj = (nodes != null) ? nodes.optJSONObject(0) : null;
+			if(obj != null) source = obj.optJSONArray("children");
+		}
+
+		synchronized (this.index) {
+			synchronized (lock) {
+				if(this.expanded) return;
+				this.children = buildChildren(source, this.maxDepth, new int[2]);
+			}
+
+			ECHOTreeMap<T, S> root = this;
+			while(root.parent != null) root = root.parent;
+			root.number(new int[2]);
+		}
+	}
+
+
+	/**
+	 * Gets a tree map from the cache, or from the remote server.
+	 * @param path the request url path of the tree map
+	 */
+	private JSONObject fetchTree(String path) throws ECHOException {
+		ECHOClient client = getClient();
+		String key = ECHOTreeCache.keyOf(client, path); // per site and access token
+
+		JSONObject data = ECHOTreeCache.get(key);
+		if(data == null) {
+			data = client.getRequest(path);
+			ECHOTreeCache.put(client.getSecureDomain(), instanceId, key, data, resourceType);
+		}
+		return data;
+	}
+
+
 	/**
 	 * Does Fetch data from the remote server in a background thread.
 	 *
@@ -123,7 +486,7 @@ public abstract class ECHOTreeMap<T extends ECHODataObject<T> & TreeNodeable<T>,
 		final Handler handler = new Handler();
 
 		// Get ready a background thread
-	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    ExecutorService executor = getClient().getExecutor();
 	    Callable<Object> communictor = new Callable<Object>() {
 
 	    	@Override
@@ -135,7 +498,7 @@ public abstract class ECHOTreeMap<T extends ECHODataObject<T> & TreeNodeable<T>,
 				try {
 		    	
 					synchronized (lock) {
-						data = ECHOQuery.getRequest(getRequestURLPath());
+						data = fetchTree(getRequestURLPath());
 						copyData(data);
 		    		}
 					
@@ -18,11 +18,6 @@ package com.echopf.contents;
 
 import com.echopf.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 
@@ -122,51 +117,18 @@ public class ECHOContentsCategoriesMap extends ECHOTreeMap<ECHOContentsCategoryO
 	protected void copyData(JSONObject source) {
 		if(source == null) throw new IllegalArgumentException("Argument `source` must not be null.");
 
-		JSONArray categories = source.optJSONArray("categories");
-		if(categories != null) {
-
-			if (is_subtree) {
-				JSONObject obj = categories.optJSONObject(0);
-				if (obj == null) return; // skip
-
-				JSONArray jsonChildren = obj.optJSONArray("children");
-
-				String refid = obj.optString("refid");
-				if (refid.isEmpty()) return; // skip
+		buildTree(source.optJSONArray("categories"));
+	}
 
-				this.node = new ECHOContentsCategoryObject(instanceId, refid, obj);
-				this.children = children(jsonChildren);
-			} else {
-					this.children = children(categories);
-			}
 
-		}
+	@Override
+	protected ECHOContentsCategoriesMap newSubtree(String refid) {
+		return new ECHOContentsCategoriesMap(instanceId, refid);
 	}
-	
 
-	/**
-	 * Builds children recursively.
-	 */
-	private List<ECHOContentsCategoriesMap> children(JSONArray source) {
-		List<ECHOContentsCategoriesMap> children = new ArrayList<ECHOContentsCategoriesMap>();
-		
-		if(source == null || source.length() == 0) return children;
-		
-		for(int i = 0; i < source.length(); i++) {
-			JSONObject obj = source.optJSONObject(i);
-			if(obj == null) continue; // skip
-
-			String refid = obj.optString("refid");
-			if (refid.isEmpty()) continue; // skip
-
-			try {
-				ECHOContentsCategoriesMap map = new ECHOContentsCategoriesMap(instanceId, refid, new JSONObject("{\"categories\":[" + obj.toString() + "]}"));
-				children.add(map);
-			} catch (JSONException ignored) {
-				// skip
-			}
-		}
-		
-		return children;
+
+	@Override
+	protected ECHOContentsCategoryObject newNode(String refid, JSONObject source) {
+		return new ECHOContentsCategoryObject(instanceId, refid, source);
 	}
 }
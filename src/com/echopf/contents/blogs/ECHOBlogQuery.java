@@ -70,6 +70,154 @@ public class ECHOBlogQuery {
 			throw new InternalError();
 		}
 	}
+
+
+	/**
+	 * {@.en Finds entries from the remote server by synchronous communication with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた同期通信による記事検索。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHOEntryObject> find(String instanceId, ECHOQueryParams params) throws ECHOException {
+		return doFind(ECHOClient.current(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds entries from the remote server in a background thread with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた非同期通信による記事検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(String instanceId, ECHOQueryParams params, FindCallback<ECHOEntryObject> callback) {
+		try {
+			doFind(ECHOClient.current(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Counts entries on the remote server by synchronous communication,
+	 * 		without getting the entries themselves.}
+	 * {@.ja 同期通信による記事の件数取得。記事自体は取得しません。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the entries (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @return {@.en the total number of the found entries}
+	 * 			{@.ja 見つかった記事の総数}
+	 * @throws ECHOException 
+	 */
+	public static int count(String instanceId, JSONObject params) throws ECHOException {
+		return ECHOQuery.doCount(ECHOClient.current(), true, "archive", null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Counts entries on the remote server in a background thread.}
+	 * {@.ja 非同期通信による記事の件数取得。取得完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the entries (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @param callback
+	 * 		{@.en invoked after the counting is completed}
+	 * 		{@.ja 件数取得完了後に実行するコールバックを指定します。}
+	 */
+	public static void countInBackground(String instanceId, JSONObject params, CountCallback callback) {
+		try {
+			ECHOQuery.doCount(ECHOClient.current(), false, "archive", callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Returns whether any entries exist on the remote server, by synchronous communication.}
+	 * {@.ja 同期通信により、記事が存在するかどうかを返します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the entries (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @throws ECHOException 
+	 */
+	public static boolean exists(String instanceId, JSONObject params) throws ECHOException {
+		return count(instanceId, params) > 0;
+	}
+
+
+	/**
+	 * {@.en Finds entries from the remote server by synchronous communication in a session.}
+	 * {@.ja セッションにおける同期通信による記事検索。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHOEntryObject> find(ECHOSession session, String instanceId, JSONObject params) throws ECHOException {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		return doFind(session.getClient(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds entries from the remote server in a background thread in a session.}
+	 * {@.ja セッションにおける非同期通信による記事検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象ブログインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(ECHOSession session, String instanceId, JSONObject params, FindCallback<ECHOEntryObject> callback) {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		try {
+			doFind(session.getClient(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
 	
 
 	/**
@@ -83,15 +231,53 @@ public class ECHOBlogQuery {
 	 */
 	protected static ECHOList<ECHOEntryObject> doFind(boolean sync, final FindCallback<ECHOEntryObject> callback, 
 												final String instanceId, final JSONObject params) throws ECHOException {
+		return doFind(ECHOClient.current(), sync, callback, instanceId, params);
+	}
 
-		return ECHOQuery.doFind(sync, "entries", "archive", callback, instanceId, params, new ECHODataObjectFactory<ECHOEntryObject>() {
 
-			@Override
-			public ECHOEntryObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
-				return new ECHOEntryObject(instanceId, refid, obj);
-			}
-			
-		});
+	/**
+	 * Does Find entries from the remote server by a client
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHOEntryObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHOEntryObject> callback, 
+												final String instanceId, final JSONObject params) throws ECHOException {
+
+		return ECHOQuery.doFind(client, sync, "entries", "archive", callback, instanceId, params, FACTORY);
 	}
+
+
+	/**
+	 * Does Find entries from the remote server by a client with typed parameters
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output, sent by their cached query string
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHOEntryObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHOEntryObject> callback, 
+												final String instanceId, final ECHOQueryParams params) throws ECHOException {
+		return ECHOQuery.doFind(client, sync, "entries", "archive", callback, instanceId, params, FACTORY);
+	}
+
+
+	/**
+	 * Creates the found entries.
+	 */
+	private static final ECHODataObjectFactory<ECHOEntryObject> FACTORY = new ECHODataObjectFactory<ECHOEntryObject>() {
+
+		@Override
+		public ECHOEntryObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
+			return new ECHOEntryObject(instanceId, refid, obj);
+		}
+		
+	};
 		
 }
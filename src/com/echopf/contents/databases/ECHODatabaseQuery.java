@@ -69,6 +69,171 @@ public class ECHODatabaseQuery {
 			throw new InternalError();
 		}
 	}
+
+
+	/**
+	 * {@.en Finds records from the remote server by synchronous communication with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた同期通信によるレコード検索。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHORecordObject> find(String instanceId, ECHOQueryParams params) throws ECHOException {
+		return doFind(ECHOClient.current(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds records from the remote server in a background thread with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた非同期通信によるレコード検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(String instanceId, ECHOQueryParams params, FindCallback<ECHORecordObject> callback) {
+		try {
+			doFind(ECHOClient.current(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Counts records on the remote server by synchronous communication,
+	 * 		without getting the records themselves.}
+	 * {@.ja 同期通信によるレコードの件数取得。レコード自体は取得しません。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the records (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @return {@.en the total number of the found records}
+	 * 			{@.ja 見つかったレコードの総数}
+	 * @throws ECHOException 
+	 */
+	public static int count(String instanceId, JSONObject params) throws ECHOException {
+		return ECHOQuery.doCount(ECHOClient.current(), true, "archive", null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Counts records on the remote server in a background thread.}
+	 * {@.ja 非同期通信によるレコードの件数取得。取得完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the records (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @param callback
+	 * 		{@.en invoked after the counting is completed}
+	 * 		{@.ja 件数取得完了後に実行するコールバックを指定します。}
+	 */
+	public static void countInBackground(String instanceId, JSONObject params, CountCallback callback) {
+		try {
+			ECHOQuery.doCount(ECHOClient.current(), false, "archive", callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Returns whether any records exist on the remote server, by synchronous communication.}
+	 * {@.ja 同期通信により、レコードが存在するかどうかを返します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the records (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @throws ECHOException 
+	 */
+	public static boolean exists(String instanceId, JSONObject params) throws ECHOException {
+		return count(instanceId, params) > 0;
+	}
+
+
+	/**
+	 * {@.en Finds records from the remote server by synchronous communication in a session.}
+	 * {@.ja セッションにおける同期通信によるレコード検索。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHORecordObject> find(ECHOSession session, String instanceId, JSONObject params) throws ECHOException {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		return doFind(session.getClient(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds records from the remote server in a background thread in a session.}
+	 * {@.ja セッションにおける非同期通信によるレコード検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(ECHOSession session, String instanceId, JSONObject params, FindCallback<ECHORecordObject> callback) {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		try {
+			doFind(session.getClient(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+	
+
+	/**
+	 * {@.en Finds records cached in the local store of an instance without the network.}
+	 * {@.ja ローカルストアにキャッシュされたレコードを通信なしで検索します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象データベースインスタンスのID}
+	 * @param query
+	 * 		{@.en the query to evaluate}
+	 * 		{@.ja 評価するクエリ}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHORecordObject> findLocally(String instanceId, ECHOLocalQuery query) throws ECHOException {
+		return ECHOLocalStore.forInstance(instanceId).<ECHORecordObject>find(query);
+	}
 	
 
 	/**
@@ -82,14 +247,52 @@ public class ECHODatabaseQuery {
 	 */
 	protected static ECHOList<ECHORecordObject> doFind(boolean sync, final FindCallback<ECHORecordObject> callback, 
 												final String instanceId, final JSONObject params) throws ECHOException {
+		return doFind(ECHOClient.current(), sync, callback, instanceId, params);
+	}
 
-		return ECHOQuery.doFind(sync, "records", "archive", callback, instanceId, params, new ECHODataObjectFactory<ECHORecordObject>() {
 
-			@Override
-			public ECHORecordObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
-				return new ECHORecordObject(instanceId, refid, obj);
-			}
-			
-		});
+	/**
+	 * Does Find records from the remote server by a client
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHORecordObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHORecordObject> callback, 
+												final String instanceId, final JSONObject params) throws ECHOException {
+
+		return ECHOQuery.doFind(client, sync, "records", "archive", callback, instanceId, params, FACTORY);
+	}
+
+
+	/**
+	 * Does Find records from the remote server by a client with typed parameters
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output, sent by their cached query string
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHORecordObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHORecordObject> callback, 
+												final String instanceId, final ECHOQueryParams params) throws ECHOException {
+		return ECHOQuery.doFind(client, sync, "records", "archive", callback, instanceId, params, FACTORY);
 	}
+
+
+	/**
+	 * Creates the found records.
+	 */
+	private static final ECHODataObjectFactory<ECHORecordObject> FACTORY = new ECHODataObjectFactory<ECHORecordObject>() {
+
+		@Override
+		public ECHORecordObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
+			return new ECHORecordObject(instanceId, refid, obj);
+		}
+		
+	};
 }
@@ -17,6 +17,8 @@
 package com.echopf.members;
 
 import java.text.ParseException;
+import java.util.Collection;
+import java.util.Iterator;
 
 import android.os.Parcel;
 
@@ -120,6 +122,12 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 			this.put("target", targetObj);
 		}
 		
+		Object current = targetObj.opt("members");
+		if(current instanceof ECHORefidSet) {
+			((ECHORefidSet) current).add(member.getRefid());
+			return;
+		}
+
 		JSONArray targetMembers = targetObj.optJSONArray("members");
 		if(targetMembers == null) {
 			targetMembers = new JSONArray();
@@ -148,6 +156,12 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 			this.put("target", targetObj);
 		}
 		
+		Object current = targetObj.opt("groups");
+		if(current instanceof ECHORefidSet) {
+			((ECHORefidSet) current).add(group.getRefid());
+			return;
+		}
+
 		JSONArray targetGroups = targetObj.optJSONArray("groups");
 		if(targetGroups == null) {
 			targetGroups = new JSONArray();
@@ -162,6 +176,105 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 	}
 
 
+	/**
+	 * {@.en Adds members to the target to send by their reference IDs.
+	 * 		Duplicated IDs are added once, and no member objects are constructed.}
+	 * {@.ja 参照IDで複数のメンバーを送信ターゲットに追加します。
+	 * 		重複したIDは1度だけ追加され、メンバーオブジェクトは生成されません。}
+	 * @param refids
+	 * 			{@.en the reference IDs of the target members}
+	 * 			{@.ja ターゲットに追加するメンバーの参照ID}
+	 * @throws ECHOException 
+	 */
+	public void targetMembers(Iterable<String> refids) throws ECHOException {
+		if(refids == null) throw new IllegalArgumentException("argument `refids` must not be null.");
+		int expected = (refids instanceof Collection) ? ((Collection<?>) refids).size() : 0;
+		addTargetRefids("members", refids.iterator(), expected);
+	}
+
+	/**
+	 * {@.en Adds members to the target to send by their reference IDs read from a streaming source.}
+	 * {@.ja ストリーミングで読み込んだ参照IDで複数のメンバーを送信ターゲットに追加します。}
+	 * @param refids
+	 * 			{@.en the reference IDs of the target members}
+	 * 			{@.ja ターゲットに追加するメンバーの参照ID}
+	 * @throws ECHOException 
+	 */
+	public void targetMembers(Iterator<String> refids) throws ECHOException {
+		if(refids == null) throw new IllegalArgumentException("argument `refids` must not be null.");
+		addTargetRefids("members", refids, 0);
+	}
+
+	/**
+	 * {@.en Adds groups to the target to send by their reference IDs.
+	 * 		Duplicated IDs are added once, and no group objects are constructed.}
+	 * {@.ja 参照IDで複数のグループを送信ターゲットに追加します。
+	 * 		重複したIDは1度だけ追加され、グループオブジェクトは生成されません。}
+	 * @param refids
+	 * 			{@.en the reference IDs of the target groups}
+	 * 			{@.ja ターゲットに追加するグループの参照ID}
+	 * @throws ECHOException 
+	 */
+	public void targetGroups(Iterable<String> refids) throws ECHOException {
+		if(refids == null) throw new IllegalArgumentException("argument `refids` must not be null.");
+		int expected = (refids instanceof Collection) ? ((Collection<?>) refids).size() : 0;
+		addTargetRefids("groups", refids.iterator(), expected);
+	}
+
+	/**
+	 * {@.en Adds groups to the target to send by their reference IDs read from a streaming source.}
+	 * {@.ja ストリーミングで読み込んだ参照IDで複数のグループを送信ターゲットに追加します。}
+	 * @param refids
+	 * 			{@.en the reference IDs of the target groups}
+	 * 			{@.ja ターゲットに追加するグループの参照ID}
+	 * @throws ECHOException 
+	 */
+	public void targetGroups(Iterator<String> refids) throws ECHOException {
+		if(refids == null) throw new IllegalArgumentException("argument `refids` must not be null.");
+		addTargetRefids("groups", refids, 0);
+	}
+
+
+	/**
+	 * Adds reference IDs to a target list, converting the list into an ECHORefidSet if needed.
+	 * @param key "members" or "groups"
+	 * @param refids the adding IDs
+	 * @param expected the expected number of the adding IDs, or 0 if unknown
+	 */
+	private void addTargetRefids(String key, Iterator<String> refids, int expected) throws ECHOException {
+		JSONObject targetObj = this.optJSONObject("target");
+		if(targetObj == null) {
+			targetObj = new JSONObject();
+			this.put("target", targetObj);
+		}
+
+		Object current = targetObj.opt(key);
+		ECHORefidSet set;
+
+		if(current instanceof ECHORefidSet) {
+			set = (ECHORefidSet) current;
+		}else{
+			JSONArray array = (current instanceof JSONArray) ? (JSONArray) current : null;
+			set = new ECHORefidSet(expected + ((array != null) ? array.length() : 0));
+
+			if(array != null) {
+				for (int i = 0; i < array.length(); i++) {
+					Object item = array.opt(i);
+					if(item instanceof ECHODataObject) set.add(((ECHODataObject<?>) item).getRefid());
+				}
+			}
+
+			try {
+				targetObj.put(key, set);
+			} catch (JSONException e) {
+				throw new ECHOException(e);
+			}
+		}
+
+		while (refids.hasNext()) set.add(refids.next());
+	}
+
+
 	@Override
 	protected JSONObject buildRequestContents() {
 		JSONObject obj = super.buildRequestContents();
@@ -169,13 +282,13 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 		try {
 			
 			// distributed
-			Object date = this.opt("distributed");
+			Object date = obj.opt("distributed");
 			if (date instanceof ECHODate) {
 				obj.put("distributed", ((ECHODate) date).toStringForECHO());
 			}
 			
 			// target
-			JSONObject sdkTarget = this.optJSONObject("target");
+			JSONObject sdkTarget = obj.optJSONObject("target");
 			if(sdkTarget != null) {
 				JSONObject apiTarget = new JSONObject();
 				
@@ -183,7 +296,10 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 				Object sdkTargetMembers = sdkTarget.opt("members");
 				if(sdkTargetMembers != null) {
 					
-					if (sdkTargetMembers instanceof JSONArray) {
+					if (sdkTargetMembers instanceof ECHORefidSet) {
+						apiTarget.put("members", ((ECHORefidSet)sdkTargetMembers).toJSONArray());
+						
+					} else if (sdkTargetMembers instanceof JSONArray) {
 						JSONArray apiTargetMembers = new JSONArray();
 						
 						JSONArray sdkTargetMembersArray = (JSONArray)sdkTargetMembers;
@@ -214,7 +330,10 @@ public abstract class ECHODistributedObject<S extends ECHODistributedObject<S>>
 				Object sdkTargetGroups = sdkTarget.opt("groups");
 				if(sdkTargetGroups != null) {
 					
-					if (sdkTargetGroups instanceof JSONArray) {
+					if (sdkTargetGroups instanceof ECHORefidSet) {
+						apiTarget.put("groups", ((ECHORefidSet)sdkTargetGroups).toJSONArray());
+						
+					} else if (sdkTargetGroups instanceof JSONArray) {
 						JSONArray apiTargetGroups = new JSONArray();
 						
 						JSONArray sdkTargetGroupsArray = (JSONArray)sdkTargetGroups;
@@ -161,7 +161,7 @@ public class ECHOMemberObject extends ECHODataObject<ECHOMemberObject>
 			obj.remove("last_logined");
 			
 			// groups
-			JSONArray sdk_groups = this.optJSONArray("groups");
+			JSONArray sdk_groups = obj.optJSONArray("groups");
 			if(sdk_groups != null) {
 				
 				JSONArray api_groups = new JSONArray();
@@ -177,10 +177,15 @@ public class ECHOMemberObject extends ECHODataObject<ECHOMemberObject>
 				obj.put("groups", api_groups);
 			}
 			
-			// installation
-			Object sdk_installation = this.opt("installation");
+			// installation (omitted if not changed since the last registration)
+			Object sdk_installation = obj.opt("installation");
 			if(sdk_installation instanceof ECHOInstallation) {
-				obj.put("installation", ((ECHOInstallation) sdk_installation).toJSONObject());
+				ECHOInstallation installation = (ECHOInstallation) sdk_installation;
+				if(installation.isRegisteredTo(this)) {
+					obj.remove("installation");
+				}else{
+					obj.put("installation", installation.toJSONObject());
+				}
 			}
 			
 		} catch (JSONException e) {
@@ -232,6 +237,7 @@ public class ECHOMemberObject extends ECHODataObject<ECHOMemberObject>
 				try {
 					ECHOInstallation sdk_installation = new ECHOInstallation(api_installation);
 					source.put("installation", sdk_installation);
+					if(getRefid() != null) sdk_installation.markRegisteredTo(this);
 				} catch (IllegalStateException ignored) {
 					// skip
 				}
@@ -21,9 +21,9 @@ import com.echopf.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import android.os.Handler;
@@ -85,6 +85,154 @@ public class ECHOMemberQuery {
 	}
 
 
+	/**
+	 * {@.en Finds members from the remote server by synchronous communication with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた同期通信によるメンバー検索。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHOMemberObject> find(String instanceId, ECHOQueryParams params) throws ECHOException {
+		return doFind(ECHOClient.current(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds members from the remote server in a background thread with typed parameters.}
+	 * {@.ja 型付きパラメータを用いた非同期通信によるメンバー検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(String instanceId, ECHOQueryParams params, FindCallback<ECHOMemberObject> callback) {
+		try {
+			doFind(ECHOClient.current(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Counts members on the remote server by synchronous communication,
+	 * 		without getting the members themselves.}
+	 * {@.ja 同期通信によるメンバーの件数取得。メンバー自体は取得しません。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the members (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @return {@.en the total number of the found members}
+	 * 			{@.ja 見つかったメンバーの総数}
+	 * @throws ECHOException 
+	 */
+	public static int count(String instanceId, JSONObject params) throws ECHOException {
+		return ECHOQuery.doCount(ECHOClient.current(), true, "list", null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Counts members on the remote server in a background thread.}
+	 * {@.ja 非同期通信によるメンバーの件数取得。取得完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the counting target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the members (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @param callback
+	 * 		{@.en invoked after the counting is completed}
+	 * 		{@.ja 件数取得完了後に実行するコールバックを指定します。}
+	 */
+	public static void countInBackground(String instanceId, JSONObject params, CountCallback callback) {
+		try {
+			ECHOQuery.doCount(ECHOClient.current(), false, "list", callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Returns whether any members exist on the remote server, by synchronous communication.}
+	 * {@.ja 同期通信により、メンバーが存在するかどうかを返します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to filter the members (`page` and `limit` are ignored)}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>（`page`と`limit`は無視されます）}
+	 * @throws ECHOException 
+	 */
+	public static boolean exists(String instanceId, JSONObject params) throws ECHOException {
+		return count(instanceId, params) > 0;
+	}
+
+
+	/**
+	 * {@.en Finds members from the remote server by synchronous communication in a session.}
+	 * {@.ja セッションにおける同期通信によるメンバー検索。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @throws ECHOException 
+	 */
+	public static ECHOList<ECHOMemberObject> find(ECHOSession session, String instanceId, JSONObject params) throws ECHOException {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		return doFind(session.getClient(), true, null, instanceId, params);
+	}
+
+
+	/**
+	 * {@.en Finds members from the remote server in a background thread in a session.}
+	 * {@.ja セッションにおける非同期通信によるメンバー検索。検索完了後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to send the request}
+	 * 		{@.ja リクエストを送信するセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the finding target instance}
+	 * 		{@.ja 検索対象メンバーインスタンスのID}
+	 * @param params
+	 * 		{@.en to control the output}
+	 * 		{@.ja <a href="http://echopf.com/docs/restapi/list">リスト制御パラメータ</a>}
+	 * @param callback
+	 * 		{@.en invoked after the finding is completed}
+	 * 		{@.ja 検索完了後に実行するコールバックを指定します。}
+	 */
+	public static void findInBackground(ECHOSession session, String instanceId, JSONObject params, FindCallback<ECHOMemberObject> callback) {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		try {
+			doFind(session.getClient(), false, callback, instanceId, params);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
 	/**
 	 * {@.en Logs-in by synchronous communication.}
 	 * {@.ja 同期通信によるログイン。}
@@ -129,6 +277,90 @@ public class ECHOMemberQuery {
 	}
 
 
+	/**
+	 * {@.en Logs-in by synchronous communication and opens a session,
+	 * 			which carries its own access token instead of the client's one.}
+	 * {@.ja 同期通信によりログインし、セッションを開始します。
+	 * 			セッションはクライアントとは別に独自のアクセストークンを持ちます。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the logged-in member belong.}
+	 * 		{@.ja ログインメンバーが所属するインスタンスのID}
+	 * @param login_id
+	 *		{@.en login id}
+	 *		{@.ja ログインID}
+	 * @param password
+	 *		{@.en login password}
+	 *		{@.ja ログインパスワード}
+	 * @throws ECHOException
+	 */
+	public static ECHOSession openSession(String instanceId, String login_id, String password) throws ECHOException {
+		return doOpenSession(true, null, instanceId, login_id, password);
+	}
+
+
+	/**
+	 * {@.en Logs-in in a background thread and opens a session.}
+	 * {@.ja 非同期通信によりログインし、セッションを開始します。処理後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the logged-in member belong.}
+	 * 		{@.ja ログインメンバーが所属するインスタンスのID}
+	 * @param login_id
+	 *		{@.en login id}
+	 *		{@.ja ログインID}
+	 * @param password
+	 *		{@.en login password}
+	 *		{@.ja ログインパスワード}
+	 * @param callback invoked after the logging-in is completed
+	 */
+	public static void openSessionInBackground(String instanceId, String login_id, String password, SessionCallback callback) {
+		try {
+			doOpenSession(false, callback, instanceId, login_id, password);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
+	/**
+	 * {@.en Logs-in again on the calling thread to renew the access token of a client, e.g. in an {@link ECHOReauthenticator}.
+	 * 			The request carries no access token and never waits for the renewal, and the token of the client is not set here.}
+	 * {@.ja クライアントのアクセストークンを更新するため、呼び出し元のスレッドで再ログインします（{@link ECHOReauthenticator}内など）。
+	 * 			リクエストはアクセストークンを含まず、更新を待つこともありません。クライアントのトークンはここではセットしません。}
+	 * 
+	 * @param client
+	 * 		{@.en the client whose access token is renewed}
+	 * 		{@.ja アクセストークンを更新するクライアント}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the logged-in member belong.}
+	 * 		{@.ja ログインメンバーが所属するインスタンスのID}
+	 * @param login_id
+	 *		{@.en login id}
+	 *		{@.ja ログインID}
+	 * @param password
+	 *		{@.en login password}
+	 *		{@.ja ログインパスワード}
+	 * @return {@.en the new access token}
+	 * 			{@.ja 新しいアクセストークン}
+	 * @throws ECHOException
+	 */
+	public static String renewAccessToken(ECHOClient client, String instanceId, String login_id, String password) throws ECHOException {
+		if(client == null) throw new IllegalArgumentException("argument `client` must not be null.");
+
+		JSONObject params = new JSONObject();
+		try {
+			params.put("login_id", login_id); params.put("password", password);
+		} catch (JSONException e) {
+			throw new ECHOException(e);
+		}
+
+		JSONObject response = client.postRequestWithoutToken(instanceId + "/login", params);
+		String token = response.optString("access_token");
+		return token.isEmpty() ? null : token;
+	}
+
+
 	/**
 	 * {@.en Logs-out by synchronous communication.}
 	 * {@.ja 同期通信によるログアウト。}
@@ -161,6 +393,46 @@ public class ECHOMemberQuery {
 	}
 
 
+	/**
+	 * {@.en Logs-out a session by synchronous communication.}
+	 * {@.ja 同期通信によるセッションのログアウト。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to log-out}
+	 * 		{@.ja ログアウトするセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the logged-in member belong.}
+	 * 		{@.ja ログインメンバーが所属するインスタンスのID}
+	 * @throws ECHOException
+	 */
+	public static void logout(ECHOSession session, String instanceId) throws ECHOException {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		doLogout(session.getClient(), true, null, instanceId);
+	}
+
+
+	/**
+	 * {@.en Logs-out a session in a background thread.}
+	 * {@.ja 非同期通信によるセッションのログアウト。処理後に指定したコールバックをメインスレッドで実行します。}
+	 * 
+	 * @param session
+	 * 		{@.en the session to log-out}
+	 * 		{@.ja ログアウトするセッション}
+	 * @param instanceId
+	 * 		{@.en the reference ID of the instance to which the logged-in member belong.}
+	 * 		{@.ja ログインメンバーが所属するインスタンスのID}
+	 * @param callback invoked after the logging-out is completed
+	 */
+	public static void logoutInBackground(ECHOSession session, String instanceId, ResultCallback callback) {
+		if(session == null) throw new IllegalArgumentException("argument `session` must not be null.");
+		try {
+			doLogout(session.getClient(), false, callback, instanceId);
+		} catch (ECHOException e) {
+			throw new InternalError();
+		}
+	}
+
+
 	/**
 	 * Does Find members from the remote server
 	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
@@ -172,17 +444,55 @@ public class ECHOMemberQuery {
 	 */
 	protected static ECHOList<ECHOMemberObject> doFind(boolean sync, final FindCallback<ECHOMemberObject> callback,
 													   final String instanceId, final JSONObject params) throws ECHOException {
-		return ECHOQuery.doFind(sync, "members", "list", callback, instanceId, params, new ECHODataObjectFactory<ECHOMemberObject>() {
+		return doFind(ECHOClient.current(), sync, callback, instanceId, params);
+	}
 
-			@Override
-			public ECHOMemberObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
-				return new ECHOMemberObject(instanceId, refid, obj);
-			}
 
-		});
+	/**
+	 * Does Find members from the remote server by a client
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHOMemberObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHOMemberObject> callback,
+													   final String instanceId, final JSONObject params) throws ECHOException {
+		return ECHOQuery.doFind(client, sync, "members", "list", callback, instanceId, params, FACTORY);
+	}
+
+
+	/**
+	 * Does Find members from the remote server by a client with typed parameters
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the finding in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the finding is completed
+	 * @param instanceId the reference ID of the finding target instance
+	 * @param params to control the output, sent by their cached query string
+	 * @throws ECHOException
+	 */
+	protected static ECHOList<ECHOMemberObject> doFind(ECHOClient client, boolean sync, final FindCallback<ECHOMemberObject> callback,
+													   final String instanceId, final ECHOQueryParams params) throws ECHOException {
+		return ECHOQuery.doFind(client, sync, "members", "list", callback, instanceId, params, FACTORY);
 	}
 
 
+	/**
+	 * Creates the found members.
+	 */
+	private static final ECHODataObjectFactory<ECHOMemberObject> FACTORY = new ECHODataObjectFactory<ECHOMemberObject>() {
+
+		@Override
+		public ECHOMemberObject create(String instanceId, String refid, JSONObject obj) throws ECHOException {
+			return new ECHOMemberObject(instanceId, refid, obj);
+		}
+
+	};
+
+
 	/**
 	 * Does Login
 	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the logging-in in a background thread. 
@@ -196,9 +506,10 @@ public class ECHOMemberQuery {
 	protected static ECHOMemberObject doLogin(final boolean sync, final LoginCallback callback,
 											  final String instanceId, final String login_id, final String password) throws ECHOException {
 		final Handler handler = new Handler();
+		final ECHOClient client = ECHOClient.current();
 
 		// Get ready a background thread
-		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ExecutorService executor = client.getExecutor();
 		Callable<ECHOMemberObject> communicator = new Callable<ECHOMemberObject>() {
 
 			@Override
@@ -210,11 +521,11 @@ public class ECHOMemberQuery {
 				try {
 					JSONObject params = new JSONObject();
 					params.put("login_id", login_id); params.put("password", password);
-					JSONObject response = ECHOQuery.postRequest(instanceId + "/login", params);
+					JSONObject response = client.postRequestWithoutToken(instanceId + "/login", params);
 					memberObj = new ECHOMemberObject(instanceId, response.optString("refid"), response);
 
 					//
-					ECHO.accessToken = response.optString("access_token");
+					client.setAccessToken(response.optString("access_token"));
 
 				} catch (ECHOException e) {
 					exception = e;
@@ -271,6 +582,93 @@ public class ECHOMemberQuery {
 	}
 
 
+	/**
+	 * Does Login and open a session
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the logging-in in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the logging-in is completed
+	 * @param instanceId the reference ID of the instance to which the logged-in member belong
+	 * @param login_id
+	 * @param password
+	 * @throws ECHOException
+	 */
+	protected static ECHOSession doOpenSession(final boolean sync, final SessionCallback callback,
+											  final String instanceId, final String login_id, final String password) throws ECHOException {
+		final Handler handler = new Handler();
+		final ECHOClient client = ECHOClient.current();
+
+		// Get ready a background thread
+		ExecutorService executor = client.getExecutor();
+		Callable<ECHOSession> communicator = new Callable<ECHOSession>() {
+
+			@Override
+			public ECHOSession call() throws ECHOException {
+
+				ECHOException exception = null;
+				ECHOSession session = null;
+
+				try {
+					JSONObject params = new JSONObject();
+					params.put("login_id", login_id); params.put("password", password);
+					JSONObject response = client.postRequestWithoutToken(instanceId + "/login", params);
+					ECHOMemberObject memberObj = new ECHOMemberObject(instanceId, response.optString("refid"), response);
+					session = new ECHOSession(client, response.optString("access_token"), memberObj);
+
+				} catch (ECHOException e) {
+					exception = e;
+				} catch (Exception e) {
+					exception = new ECHOException(e);
+				}
+
+
+
+				if(sync == false) {
+
+					// Execute a callback method in the main (UI) thread.
+					if(callback != null) {
+						final ECHOException fException = exception;
+						final ECHOSession fSession = session;
+
+						handler.post(new Runnable() {
+							@Override
+							public void run() {
+								callback.done(fSession, fException);
+							}
+						});
+					}
+
+					return null;
+
+				}else{
+
+					if(exception == null) return session;
+					throw exception;
+				}
+			}
+		};
+
+		Future<ECHOSession> future = executor.submit(communicator);
+
+		if(sync) {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // ignore/reset
+			} catch (ExecutionException e) {
+				Throwable e2 = e.getCause();
+
+				if (e2 instanceof ECHOException) {
+					throw (ECHOException) e2;
+				}
+
+				throw new RuntimeException(e2);
+			}
+		}
+
+		return null;
+	}
+
+
 	/**
 	 * Does Logout
 	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the logging-out in a background thread. 
@@ -280,10 +678,24 @@ public class ECHOMemberQuery {
 	 * @throws ECHOException
 	 */
 	protected static void doLogout(final boolean sync, final ResultCallback callback, final String instanceId) throws ECHOException {
+		doLogout(ECHOClient.current(), sync, callback, instanceId);
+	}
+
+
+	/**
+	 * Does Logout by a client
+	 * @param client the client to send the request
+	 * @param sync if set TRUE, then the main (UI) thread is waited for complete the logging-out in a background thread. 
+	 * 				 (a synchronous communication)
+	 * @param callback invoked after the logging-out is completed
+	 * @param instanceId the reference ID of the instance to which the logged-out member belong
+	 * @throws ECHOException
+	 */
+	protected static void doLogout(final ECHOClient client, final boolean sync, final ResultCallback callback, final String instanceId) throws ECHOException {
 		final Handler handler = new Handler();
 
 		// Get ready a background thread
-		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ExecutorService executor = client.getExecutor();
 		Callable<Void> communicator = new Callable<Void>() {
 
 			@Override
@@ -292,7 +704,7 @@ public class ECHOMemberQuery {
 				ECHOException exception = null;
 
 				try {
-					ECHOQuery.postRequest(instanceId + "/login", new JSONObject());
+					client.postRequest(instanceId + "/login", new JSONObject());
 				} catch (ECHOException e) {
 					exception = e;
 				} catch (Exception e) {
@@ -18,11 +18,6 @@ package com.echopf.members;
 
 import com.echopf.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 
@@ -124,51 +119,18 @@ public class ECHOMembersGroupsMap extends ECHOTreeMap<ECHOMembersGroupObject, EC
 	protected void copyData(JSONObject source) {
 		if(source == null) throw new IllegalArgumentException("Argument `source` must not be null.");
 
-		JSONArray groups = source.optJSONArray("groups");
-		if(groups != null) {
-
-			if (is_subtree) {
-				JSONObject obj = groups.optJSONObject(0);
-				if (obj == null) return; // skip
-
-				JSONArray jsonChildren = obj.optJSONArray("children");
-
-				String refid = obj.optString("refid");
-				if (refid.isEmpty()) return; // skip
+		buildTree(source.optJSONArray("groups"));
+	}
 
-				this.node = new ECHOMembersGroupObject(instanceId, refid, obj);
-				this.children = children(jsonChildren);
-			} else {
-				this.children = children(groups);
-			}
 
-		}
+	@Override
+	protected ECHOMembersGroupsMap newSubtree(String refid) {
+		return new ECHOMembersGroupsMap(instanceId, refid);
 	}
-	
 
-	/**
-	 * Builds children recursively
-	 */
-	private List<ECHOMembersGroupsMap> children(JSONArray source) {
-		List<ECHOMembersGroupsMap> children = new ArrayList<ECHOMembersGroupsMap>();
-		
-		if(source == null || source.length() == 0) return children;
-		
-		for(int i = 0; i < source.length(); i++) {
-			JSONObject obj = source.optJSONObject(i);
-			if(obj == null) continue; // skip
-			
-			String refid = obj.optString("refid");
-			if(refid.isEmpty()) continue; // skip
 
-			try {
-				ECHOMembersGroupsMap map = new ECHOMembersGroupsMap(instanceId, refid, new JSONObject("{\"groups\":[" + obj.toString() + "]}"));
-				children.add(map);
-			} catch (JSONException ignored) {
-				// skip
-			}
-		}
-		
-		return children;
+	@Override
+	protected ECHOMembersGroupObject newNode(String refid, JSONObject source) {
+		return new ECHOMembersGroupObject(instanceId, refid, source);
 	}
 }